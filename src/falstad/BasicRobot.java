@@ -159,9 +159,8 @@ public class BasicRobot implements Robot {
 		cells = maze.getMazeConfiguration().getMazecells();
 		int posX = maze.getCurrentPosition()[0];
 		int posY = maze.getCurrentPosition()[1];
-		int[] dir = currentDirection.getDirection();
-		int x = dir[0];
-		int y = dir[1];
+		int x = currentDirection.dx();
+		int y = currentDirection.dy();
 		int temp;
 		if(direction == Direction.BACKWARD){
 			x = -x;
@@ -208,6 +207,15 @@ public class BasicRobot implements Robot {
 		return maze;
 	}
 	
+	/**
+	 * Drivers wait between operations only if the controller animates the robot,
+	 * otherwise the robot runs at full speed and the frame scheduler limits redraws.
+	 */
+	@Override
+	public Clock getClock() {
+		return (null != maze && !maze.isAnimated()) ? Clock.NONE : Clock.SYSTEM;
+	}
+	
 	@Override
 	public int[] getCurrentPosition() throws Exception
 		{ return maze.getCurrentPosition(); }
@@ -0,0 +1,26 @@
+package falstad;
+
+/**
+ * This interface provides the notion of time for robots and their drivers.
+ * Drivers pause between operations such that a user can follow the robot on screen,
+ * a simulation without a screen uses a clock that does not wait at all.
+ *
+ * Collaborators: Robot, RobotDriver
+ */
+public interface Clock {
+	/**
+	 * Clock that waits in real time, for robots on screen
+	 */
+	public static final Clock SYSTEM = millis -> Thread.sleep(millis) ;
+	/**
+	 * Clock that does not wait, for simulations
+	 */
+	public static final Clock NONE = millis -> { } ;
+
+	/**
+	 * Waits for the given time.
+	 * @param millis time in milliseconds
+	 * @throws InterruptedException if the thread is interrupted while waiting
+	 */
+	void sleep(long millis) throws InterruptedException ;
+}
@@ -14,6 +14,7 @@ public class Constants {
 	public static final int MAP_UNIT = 128;
 	public static final int VIEW_OFFSET = MAP_UNIT/8;
 	public static final int STEP_SIZE = MAP_UNIT/4;
+	public static final int FRAMES_PER_SECOND = 60; // upper bound for redraws of the screen, see FrameScheduler
 	// Skill-level 
 	// The user picks a skill level between 0 - 9, a-f 
 	// The following arrays transform this into corresponding dimensions (x,y) for the resulting maze as well as the number of rooms and parts
@@ -8,11 +8,14 @@ import generation.BSPBranch;
 import generation.BSPLeaf;
 import generation.BSPNode;
 import generation.CardinalDirection;
-import generation.Cells;
 import generation.MazeBuilder;
 import generation.Seg;
+import generation.SeenCells;
 import generation.Wall;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.ArrayList;
+import java.util.BitSet;
 
 // memo: update to get into version 116 again
 /**
@@ -32,9 +35,11 @@ public class FirstPersonDrawer extends DefaultViewer {
 	private int map_unit = 128;
 	private int step_size = map_unit/4;
 	// map scale may be adjusted by user input, controlled in MazeController
-	private Cells seencells ; // cells whose walls are currently visible
+	private SeenCells seencells ; // cells whose walls are currently visible
 	// node is determined in MazeBuilder when creating the maze, helps to decide visibility
 	private BSPNode bsp_root ;
+	// ids of segments that have been drawn at least once, owned by the MazeController as the tree may be shared
+	private BitSet seenSegments ;
 	
 	// angle, used in rotations
 	private int angle = 0 ;  // set in redraw_play
@@ -56,6 +61,11 @@ public class FirstPersonDrawer extends DefaultViewer {
 	// set of ranges
 	private RangeSet rset ; // set in redraw_play
 	
+	// scratch space that is reused for each frame such that drawing does not allocate memory
+	private final RangePair rp = new RangePair(0, 0, 0, 0) ; // used in boundingBoxIsVisible and drawSegment
+	private final int[] xps = new int[4] ; // x coordinates of polygon in drawSegment
+	private final int[] yps = new int[4] ; // y coordinates of polygon in drawSegment
+	
 	// debug stuff
 	private boolean deepdebug = false;
 	private boolean all_visible = false;
@@ -64,6 +74,8 @@ public class FirstPersonDrawer extends DefaultViewer {
 	private int drawrect_ct ;
 	private int drawrect_late_ct ;
 	private int drawrect_segment_ct ;
+	private long alloc_bytes_ct ; // bytes allocated by the last call of redraw, -1 if not supported by JVM
+	private static final ThreadMXBean threadBean = ManagementFactory.getThreadMXBean() ; // to measure alloc_bytes_ct
 	private int nesting = 0;
 	
 	/**
@@ -73,15 +85,17 @@ public class FirstPersonDrawer extends DefaultViewer {
 	 * @param map_unit
 	 * @param step_size
 	 * @param seencells
+	 * @param seenSegments ids of segments that have been seen, see Seg.getId
 	 * @param bsp_root
 	 */
-	public FirstPersonDrawer(int width, int height, int map_unit, int step_size, Cells seencells, BSPNode bsp_root) {
+	public FirstPersonDrawer(int width, int height, int map_unit, int step_size, SeenCells seencells, BitSet seenSegments, BSPNode bsp_root) {
 		// store given parameter values
 		view_width = width ;
 		view_height = height ;
 		this.map_unit = map_unit ;
 		this.step_size = step_size ;
 		this.seencells = seencells ;
+		this.seenSegments = seenSegments ;
 		this.bsp_root = bsp_root ; 
 		// constants and derived values
 		angle = 0 ; // angle for initial setting of direction is 0 == East, hidden constraint across classes
@@ -131,8 +145,40 @@ public class FirstPersonDrawer extends DefaultViewer {
 		// debug: reset counters
 		traverse_node_ct = traverse_ssector_ct =
 			drawrect_ct = drawrect_late_ct = drawrect_segment_ct = 0;
+		final long bytes0 = getAllocatedBytes() ;
 		//
 		drawAllVisibleSectors(bsp_root);
+		alloc_bytes_ct = (bytes0 < 0) ? -1 : getAllocatedBytes() - bytes0 ;
+	}
+	/**
+	 * Provides the number of bytes that the last frame allocated on the heap for drawing the walls,
+	 * including the drawing operations of the graphics object. 
+	 * Once colors and the set of seen segments have been set up, the drawer itself does not allocate memory.
+	 * @return number of bytes, -1 if the JVM can not measure allocations
+	 */
+	public long getAllocatedBytesOfLastFrame() {
+		return alloc_bytes_ct ;
+	}
+	/**
+	 * @return number of nodes of the tree of BSPNodes visited for the last frame, a debug counter
+	 */
+	public int getTraversedNodeCount() {
+		return traverse_node_ct ;
+	}
+	/**
+	 * @return number of polygons filled for the last frame, a debug counter
+	 */
+	public int getFilledPolygonCount() {
+		return drawrect_segment_ct ;
+	}
+	/**
+	 * Gives the number of bytes allocated by the current thread so far.
+	 * @return number of bytes, -1 if not supported
+	 */
+	private static long getAllocatedBytes() {
+		if (threadBean instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean) threadBean).getThreadAllocatedBytes(Thread.currentThread().getId()) ;
+		return -1 ;
 	}
 
 
@@ -247,7 +293,7 @@ public class FirstPersonDrawer extends DefaultViewer {
 		int rp2x = -viewd_unscale(view_dy*p2x-view_dx*p2y);
 		int rp2z = -viewd_unscale(view_dx*p2x+view_dy*p2y);
 		
-		RangePair rp = new RangePair(rp1x, rp1z, rp2x, rp2z);
+		rp.set(rp1x, rp1z, rp2x, rp2z);
 		if (!clip3d(rp))
 			return false;
 		int x1 = rp.x1*zscale/rp.z1+(view_width/2);
@@ -258,8 +304,7 @@ public class FirstPersonDrawer extends DefaultViewer {
 			x2 = xj;
 		}
 		// constraint: x1 <= x2
-		int[] p = {x1, x2};
-		return (rset.intersect(p));
+		return (rset.intersect(x1, x2));
 	}
 
 	/**
@@ -295,7 +340,7 @@ public class FirstPersonDrawer extends DefaultViewer {
 	/**
 	 * Draws segment on screen via graphics attribute gc
 	 * Helper method for traverse_ssector
-	 * @param seg whose seen attribute may be set to true
+	 * @param seg that is added to the set of seen segments if drawn
 	 */
 	private void drawSegment(Seg seg) {
 		int ox1 = seg.getStartPositionX();
@@ -324,7 +369,7 @@ public class FirstPersonDrawer extends DefaultViewer {
 		x2 = -viewd_unscale(view_dy*ox2-view_dx*y2);
 		z2 = -viewd_unscale(view_dx*ox2+view_dy*y2);
 
-		RangePair rp = new RangePair(x1, z1, x2, z2);
+		rp.set(x1, z1, x2, z2);
 		if (!clip3d(rp))
 			return;
 
@@ -338,7 +383,7 @@ public class FirstPersonDrawer extends DefaultViewer {
 			return;
 		int x1i = x1;
 		int xd = x2-x1;
-		gc.setColor(seg.getRGB()[0], seg.getRGB()[1]);
+		gc.setColor(seg.getColor(), seg.getCaseNumber());
 		boolean drawn = false;
 		drawrect_late_ct++; // debug, counter
 		// loop variable is x1i, upper limit x2 is fixed
@@ -346,17 +391,19 @@ public class FirstPersonDrawer extends DefaultViewer {
 			// check if there is an intersection, 
 			// if there is none proceed exit the loop, 
 			// if there is one, get it as (x1i,x2i)
-			int[] p = {x1i, x2};
-			if (!rset.intersect(p))
+			if (!rset.intersect(x1i, x2))
 				break;
-			x1i = p[0];
-			int x2i = p[1];
+			x1i = rset.getIntersectionMin();
+			int x2i = rset.getIntersectionMax();
 			// let's work on the intersection (x1i,x2i)
-			int[] xps = { x1i, x1i, x2i+1, x2i+1 };
-			int[] yps = { y11+(x1i-x1)*(y21-y11)/xd,
-					y12+(x1i-x1)*(y22-y12)/xd+1,
-					y22+(x2i-x2)*(y22-y12)/xd+1,
-					y21+(x2i-x2)*(y21-y11)/xd };
+			xps[0] = x1i;
+			xps[1] = x1i;
+			xps[2] = x2i+1;
+			xps[3] = x2i+1;
+			yps[0] = y11+(x1i-x1)*(y21-y11)/xd;
+			yps[1] = y12+(x1i-x1)*(y22-y12)/xd+1;
+			yps[2] = y22+(x2i-x2)*(y22-y12)/xd+1;
+			yps[3] = y21+(x2i-x2)*(y21-y11)/xd;
 			// debug
 			//System.out.println("polygon-x: " + xps[0] + ", " + xps[1] + ", " + xps[2] + ", " + xps[3]) ;
 			//System.out.println("polygon-y: " + yps[0] + ", " + yps[1] + ", " + yps[2] + ", " + yps[3]) ;
@@ -374,8 +421,8 @@ public class FirstPersonDrawer extends DefaultViewer {
 			x1i = x2i+1;
 			drawrect_segment_ct++; // debug, counter
 		}
-		if (drawn && !seg.isSeen()) {
-			seg.setSeen(true); // updates the segment
+		if (drawn && !seenSegments.get(seg.getId())) { // segment is read only, see MazeCache
+			seenSegments.set(seg.getId());
 			udpateSeenCellsForSegment(seg); // updates seencells
 		}
 	}
@@ -524,7 +571,14 @@ public class FirstPersonDrawer extends DefaultViewer {
 	 */
 	class RangePair {
 	    public int x1, z1, x2, z2;
+	    private final FloatPair fp = new FloatPair(0, 1); // scratch space for clip3d
 	    RangePair(int xx1, int zz1, int xx2, int zz2) {
+		set(xx1, zz1, xx2, zz2);
+	    }
+	    /**
+	     * Sets all values such that an object can be reused
+	     */
+	    void set(int xx1, int zz1, int xx2, int zz2) {
 		x1 = xx1;
 		z1 = zz1;
 		x2 = xx2;
@@ -546,7 +600,8 @@ public class FirstPersonDrawer extends DefaultViewer {
                 return false;
             final int dx = x2-x1;
             final int dz = z2-z1;
-            FloatPair fp = new FloatPair(0, 1);
+            fp.p1 = 0;
+            fp.p2 = 1;
             if (!clipt(-dx-dz, x1+z1, fp))
                 return false;
             if (!clipt( dx-dz,-x1+z1, fp))
@@ -0,0 +1,141 @@
+package falstad;
+
+import falstad.Constants.StateGUI;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * This class decouples drawing the screen from changes of the game state in the MazeController.
+ * The controller requests a frame with a snapshot of the view parameters whenever its state changes,
+ * a background thread draws the latest requested frame at most at a fixed frame rate.
+ * Requests that arrive while a frame is pending replace it, so a robot that moves faster than
+ * the frame rate only causes the latest state to be drawn.
+ * Frames are not drawn while the panel is not showing on screen, e.g. if the game runs without a window,
+ * the last request is kept and drawn once the panel shows up.
+ *
+ * All drawing with viewers happens on the thread of this class, so viewers and the buffer graphics
+ * are used by a single thread.
+ */
+public class FrameScheduler implements Runnable {
+	/**
+	 * Snapshot of the parameters of Viewer.redraw, immutable such that it can be handed to the drawing thread.
+	 */
+	static final class Frame {
+		final StateGUI state ;
+		final int px, py ; // position
+		final int viewdx, viewdy ; // view direction
+		final int walkStep ;
+		final int angle ;
+
+		Frame(StateGUI state, int px, int py, int viewdx, int viewdy, int walkStep, int angle) {
+			this.state = state ;
+			this.px = px ;
+			this.py = py ;
+			this.viewdx = viewdx ;
+			this.viewdy = viewdy ;
+			this.walkStep = walkStep ;
+			this.angle = angle ;
+		}
+	}
+
+	private final MazeController controller ; // draws frames, see MazeController.drawFrame
+	private final MazePanel panel ;
+	private final long frameNanos ; // minimum time between two frames
+	private final AtomicReference<Frame> pending = new AtomicReference<Frame>() ; // latest requested frame, null if none
+	private volatile Thread thread ;
+	// statistics
+	private final AtomicLong requested = new AtomicLong() ;
+	private volatile long drawn ; // only updated by the drawing thread
+
+	/**
+	 * Constructor, call start to begin drawing.
+	 * @param controller that draws a frame with its viewers
+	 * @param panel to check if anybody is watching
+	 * @param framesPerSecond upper bound for the number of frames per second
+	 * @precondition 0 < framesPerSecond
+	 */
+	public FrameScheduler(MazeController controller, MazePanel panel, int framesPerSecond) {
+		this.controller = controller ;
+		this.panel = panel ;
+		this.frameNanos = TimeUnit.SECONDS.toNanos(1) / framesPerSecond ;
+	}
+	/**
+	 * Starts the drawing thread, does nothing if it is already running
+	 */
+	public synchronized void start() {
+		if (null != thread)
+			return ;
+		thread = new Thread(this, "FrameScheduler") ;
+		thread.setDaemon(true) ; // does not keep the application alive
+		thread.start() ;
+	}
+	/**
+	 * Stops the drawing thread, pending frames are dropped
+	 */
+	public synchronized void stop() {
+		Thread t = thread ;
+		thread = null ;
+		if (null != t) {
+			t.interrupt() ;
+			LockSupport.unpark(t) ;
+		}
+	}
+	/**
+	 * Requests a frame, replaces a frame that has been requested before but not yet drawn.
+	 * Returns immediately.
+	 * @param frame snapshot of the view parameters
+	 */
+	void request(Frame frame) {
+		requested.incrementAndGet() ;
+		pending.set(frame) ;
+		Thread t = thread ;
+		if (null != t)
+			LockSupport.unpark(t) ;
+	}
+	/**
+	 * @return number of frames requested so far
+	 */
+	public long getRequestedFrames() {
+		return requested.get() ;
+	}
+	/**
+	 * @return number of frames drawn so far, the difference to getRequestedFrames are skipped frames
+	 */
+	public long getDrawnFrames() {
+		return drawn ;
+	}
+	/**
+	 * Draws pending frames till the scheduler is stopped
+	 */
+	@Override
+	public void run() {
+		long next = System.nanoTime() ;
+		while (Thread.currentThread() == thread) {
+			// wait for a request, wake up once per frame to check if the panel shows up
+			if (null == pending.get() || !panel.isShowing()) {
+				LockSupport.parkNanos(this, frameNanos) ;
+				continue ;
+			}
+			// keep the frame rate
+			final long wait = next - System.nanoTime() ;
+			if (wait > 0) {
+				LockSupport.parkNanos(this, wait) ;
+				continue ; // checks again as parkNanos may return early
+			}
+			Frame frame = pending.getAndSet(null) ;
+			if (null == frame)
+				continue ;
+			try {
+				controller.drawFrame(frame) ;
+			}
+			catch (RuntimeException e) { // keep drawing later frames
+				e.printStackTrace() ;
+			}
+			drawn++ ;
+			next = System.nanoTime() + frameNanos ;
+		}
+	}
+}
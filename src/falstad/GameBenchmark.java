@@ -0,0 +1,355 @@
+package falstad;
+
+import generation.MazeConfiguration;
+import generation.MazeFactory;
+import generation.Order;
+import generation.SeenCells;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * This class collects small benchmarks for drawing the first person view and for robot drivers,
+ * benchmarks for the maze generation code are in generation.MazeBenchmark.
+ * It is not used by the application itself, it is run from the command line
+ * with the name of a benchmark as its first argument, e.g.
+ * java falstad.GameBenchmark fps
+ *
+ * Measurements are simple wall clock measurements with a few warm up rounds
+ * for the just in time compiler, good enough to compare alternative implementations
+ * against each other on the same machine.
+ */
+public class GameBenchmark {
+
+	static final int WARMUP = 5 ; // number of rounds that are not measured
+	static final int ROUNDS = 20 ; // number of rounds that are measured
+
+	public static void main(String[] args) {
+		String benchmark = (args.length > 0) ? args[0] : "" ;
+		switch (benchmark) {
+		case "rangeset" :
+			benchmarkRangeSet((args.length > 1) ? Integer.parseInt(args[1]) : 5) ;
+			break ;
+		case "fps" :
+			benchmarkFramesPerSecond((args.length > 1) ? Integer.parseInt(args[1]) : 15) ;
+			break ;
+		case "robots" :
+			benchmarkRobots((args.length > 1) ? Integer.parseInt(args[1]) : 5, (args.length > 2) ? Integer.parseInt(args[2]) : 10000) ;
+			break ;
+		default:
+			System.out.println("Usage: java falstad.GameBenchmark rangeset [skill]|fps [skill]|robots [skill episodes]") ;
+		}
+	}
+
+	/**
+	 * Orders a maze of the given skill level from a MazeFactory and waits for it
+	 * @param builder algorithm to generate the maze with
+	 * @param skill level of the maze
+	 * @return maze configuration with cells, distances and tree of BSPNodes
+	 */
+	static MazeConfiguration orderMaze(Order.Builder builder, int skill) {
+		final BenchmarkOrder order = new BenchmarkOrder(builder, skill) ;
+		MazeFactory factory = new MazeFactory(true) ;
+		factory.order(order) ;
+		factory.waitTillDelivered() ;
+		return order.maze ;
+	}
+	/**
+	 * Order that keeps the delivered maze and ignores progress, used for benchmarks
+	 */
+	private static class BenchmarkOrder implements Order {
+		private final Builder builder ;
+		private final int skill ;
+		private volatile MazeConfiguration maze ;
+
+		BenchmarkOrder(Builder builder, int skill) {
+			this.builder = builder ;
+			this.skill = skill ;
+		}
+		@Override
+		public int getSkillLevel() {
+			return skill ;
+		}
+		@Override
+		public Builder getBuilder() {
+			return builder ;
+		}
+		@Override
+		public boolean isPerfect() {
+			return false ;
+		}
+		@Override
+		public void deliver(MazeConfiguration mazeConfig) {
+			maze = mazeConfig ;
+		}
+		@Override
+		public void updateProgress(int percentage) {
+			// nothing to do
+		}
+	}
+	/**
+	 * Gives the number of bytes allocated by the current thread so far.
+	 * @return number of bytes or -1 if the JVM does not support the measurement
+	 */
+	static long getAllocatedBytes() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean() ;
+		if (bean instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId()) ;
+		return -1 ;
+	}
+
+	////////////////////////////// Range sets /////////////////////////////////////
+	/**
+	 * Replays the operations of the FirstPersonDrawer on its RangeSet for the frames seen on the path
+	 * from the starting position to the exit of a maze of the given skill level.
+	 * Operations are recorded once with a drawer that draws on a panel without an image,
+	 * then replayed on a single RangeSet that is reused for all frames as in the game.
+	 * Reports time and allocated bytes per frame and checks that the replay gives the same results.
+	 * @param skill level of the maze
+	 */
+	static void benchmarkRangeSet(int skill) {
+		MazeConfiguration maze = orderMaze(Order.Builder.DFS, skill) ;
+		// record a frame for each position on the path to the exit, looking at the next position
+		MazePanel panel = new MazePanel() {
+			@Override
+			public void setColor(int color) {
+				// nothing to draw on
+			}
+			@Override
+			public void setColor(int color, int caseNum) {
+				// nothing to draw on
+			}
+			@Override
+			public void fillRect(int x, int y, int width, int height) {
+				// nothing to draw on
+			}
+			@Override
+			public void fillPolygon(int[] xps, int[] yps, int n) {
+				// nothing to draw on
+			}
+		} ;
+		FirstPersonDrawer drawer = new FirstPersonDrawer(Constants.VIEW_WIDTH, Constants.VIEW_HEIGHT, Constants.MAP_UNIT,
+				Constants.STEP_SIZE, new SeenCells(maze.getWidth()+1, maze.getHeight()+1), new BitSet(), maze.getRootnode()) ;
+		RecordingRangeSet recorder = new RecordingRangeSet() ;
+		int frames = 0 ;
+		final int[][] path = getPathToExit(maze) ;
+		for (int i = 0; i + 1 < path.length; i++) {
+			final int dx = path[i+1][0] - path[i][0] ;
+			final int dy = path[i+1][1] - path[i][1] ;
+			drawer.redraw(panel, Constants.StateGUI.STATE_PLAY, path[i][0], path[i][1], dx << 16, dy << 16, 0, Constants.VIEW_OFFSET, recorder, getAngle(dx, dy)) ;
+			frames++ ;
+		}
+		final int[] ops = Arrays.copyOf(recorder.ops, recorder.length) ;
+		// replay
+		RangeSet rset = new RangeSet() ;
+		final int factor = 10 ; // a replay of all frames is quick, so use more rounds than usual
+		long time = 0 ;
+		long bytes = 0 ;
+		long sum = 0 ;
+		for (int round = 0; round < factor*(WARMUP + ROUNDS); round++) {
+			long bytes0 = getAllocatedBytes() ;
+			long t0 = System.nanoTime() ;
+			sum = replay(ops, rset) ;
+			if (round >= factor*WARMUP) {
+				time += System.nanoTime() - t0 ;
+				bytes += getAllocatedBytes() - bytes0 ;
+			}
+		}
+		System.out.printf("RangeSet skill %d (%dx%d): %d frames, %d operations, %.2f us/frame, %d bytes/frame, same results: %b%n",
+				skill, maze.getWidth(), maze.getHeight(), frames, ops.length/3, time/1e3/(factor*ROUNDS)/frames,
+				bytes/(factor*ROUNDS)/frames, sum == recorder.sum) ;
+	}
+	/**
+	 * Replays recorded operations on the given set
+	 * @return checksum over the results of all operations
+	 */
+	private static long replay(int[] ops, RangeSet rset) {
+		long sum = 0 ;
+		for (int i = 0; i < ops.length; i += 3) {
+			switch (ops[i]) {
+			case RecordingRangeSet.SET :
+				rset.set(ops[i+1], ops[i+2]) ;
+				break ;
+			case RecordingRangeSet.REMOVE :
+				rset.remove(ops[i+1], ops[i+2]) ;
+				break ;
+			case RecordingRangeSet.INTERSECT :
+				sum = RecordingRangeSet.update(sum, rset.intersect(ops[i+1], ops[i+2]), rset) ;
+				break ;
+			default :
+				sum = 31*sum + (rset.isEmpty() ? 1 : 2) ;
+			}
+		}
+		return sum ;
+	}
+	/**
+	 * Range set that records all operations with their arguments and a checksum over their results
+	 */
+	private static class RecordingRangeSet extends RangeSet {
+		static final int SET = 0 ;
+		static final int REMOVE = 1 ;
+		static final int INTERSECT = 2 ;
+		static final int IS_EMPTY = 3 ;
+
+		int[] ops = new int[3*1024] ; // triples of operation and two arguments
+		int length ;
+		long sum ;
+
+		private void record(int op, int a, int b) {
+			if (length == ops.length)
+				ops = Arrays.copyOf(ops, 2*length) ;
+			ops[length++] = op ;
+			ops[length++] = a ;
+			ops[length++] = b ;
+		}
+		static long update(long sum, boolean intersects, RangeSet rset) {
+			return intersects ? 31*(31*sum + rset.getIntersectionMin()) + rset.getIntersectionMax() : 31*sum + 3 ;
+		}
+		@Override
+		public boolean isEmpty() {
+			record(IS_EMPTY, 0, 0) ;
+			final boolean result = super.isEmpty() ;
+			sum = 31*sum + (result ? 1 : 2) ;
+			return result ;
+		}
+		@Override
+		public void set(int mn, int mx) {
+			record(SET, mn, mx) ;
+			super.set(mn, mx) ;
+		}
+		@Override
+		public void remove(int fx, int tx) {
+			record(REMOVE, fx, tx) ;
+			super.remove(fx, tx) ;
+		}
+		@Override
+		public boolean intersect(int min, int max) {
+			record(INTERSECT, min, max) ;
+			final boolean result = super.intersect(min, max) ;
+			sum = update(sum, result, this) ;
+			return result ;
+		}
+	}
+
+	////////////////////////////// First person view /////////////////////////////////////
+	/**
+	 * Renders the first person view on an OffscreenMazePanel while walking the path from the starting position
+	 * to the exit of a maze of the given skill level, with the intermediate frames of the MazeController
+	 * for each rotation and each step. The path is walked twice, the first walk warms up the just in time compiler.
+	 * Reports frames per second, nodes of the tree of BSPNodes traversed, polygons filled and bytes allocated
+	 * per frame, as well as a checksum over the pixels of all frames to recognize changes in rendering.
+	 * @param skill level of the maze
+	 */
+	static void benchmarkFramesPerSecond(int skill) {
+		MazeConfiguration maze = orderMaze(Order.Builder.DFS, skill) ;
+		final int[][] path = getPathToExit(maze) ;
+		OffscreenMazePanel panel = new OffscreenMazePanel() ;
+		final int[] pixels = new int[Constants.VIEW_WIDTH*Constants.VIEW_HEIGHT] ;
+		for (int walk = 0; walk < 2; walk++) {
+			// each walk starts from scratch as in a new game
+			FirstPersonDrawer drawer = new FirstPersonDrawer(Constants.VIEW_WIDTH, Constants.VIEW_HEIGHT, Constants.MAP_UNIT,
+					Constants.STEP_SIZE, new SeenCells(maze.getWidth()+1, maze.getHeight()+1), new BitSet(), maze.getRootnode()) ;
+			RangeSet rset = new RangeSet() ;
+			int frames = 0 ;
+			long nodes = 0 ;
+			long polygons = 0 ;
+			long bytes = 0 ;
+			long checksum = 0 ;
+			long time = 0 ;
+			int angle = 0 ; // east as in MazeController
+			for (int i = 0; i < path.length; i++) {
+				final int px = path[i][0] ;
+				final int py = path[i][1] ;
+				// frames of a rotation or two towards the next position, the exit is left towards the outside
+				final int target = (i + 1 < path.length) ? getAngle(path[i+1][0] - px, path[i+1][1] - py) : angle ;
+				final int turn = ((target - angle + 540) % 360) - 180 ; // -180 <= turn < 180
+				final int steps = 4*Math.abs(turn)/90 ;
+				// step 0 draws the view from the current position, further steps rotate, then walk
+				for (int step = 0; step <= steps + ((i + 1 < path.length) ? 4 : 0); step++) {
+					final int a = (step <= steps) ? (angle + ((steps == 0) ? 0 : turn*step/steps) + 360) % 360 : target ;
+					final int walkStep = (step <= steps) ? 0 : step - steps ;
+					final int viewdx = (int) (Math.cos(Math.toRadians(a))*(1<<16)) ;
+					final int viewdy = (int) (Math.sin(Math.toRadians(a))*(1<<16)) ;
+					long t0 = System.nanoTime() ;
+					drawer.redraw(panel, Constants.StateGUI.STATE_PLAY, px, py, viewdx, viewdy, walkStep, Constants.VIEW_OFFSET, rset, a) ;
+					time += System.nanoTime() - t0 ;
+					frames++ ;
+					nodes += drawer.getTraversedNodeCount() ;
+					polygons += drawer.getFilledPolygonCount() ;
+					bytes += drawer.getAllocatedBytesOfLastFrame() ;
+					panel.getImage().getRGB(0, 0, Constants.VIEW_WIDTH, Constants.VIEW_HEIGHT, pixels, 0, Constants.VIEW_WIDTH) ;
+					checksum = 31*checksum + Arrays.hashCode(pixels) ;
+				}
+				angle = target ;
+			}
+			if (walk == 0)
+				continue ;
+			System.out.printf("First person view skill %d (%dx%d): %d frames on a path of %d positions, %.1f frames/s, %.1f nodes/frame, %.1f polygons/frame, %d bytes/frame, checksum %x%n",
+					skill, maze.getWidth(), maze.getHeight(), frames, path.length, frames/(time/1e9), 
+					(double) nodes/frames, (double) polygons/frames, bytes/frames, checksum) ;
+		}
+	}
+	/**
+	 * Follows the distances from the starting position to the exit
+	 * @return positions from start to exit, both included
+	 */
+	private static int[][] getPathToExit(MazeConfiguration maze) {
+		final ArrayList<int[]> path = new ArrayList<int[]>() ;
+		final int[] start = maze.getStartingPosition() ;
+		maze.forEachPositionToExit(start[0], start[1], (x, y) -> path.add(new int[] {x, y})) ;
+		return path.toArray(new int[path.size()][]) ;
+	}
+	/**
+	 * @return angle in degrees for the given direction, east == 0 as in MazeController
+	 */
+	private static int getAngle(int dx, int dy) {
+		return (int) Math.round(Math.toDegrees(Math.atan2(dy, dx)) + 360) % 360 ;
+	}
+
+	////////////////////////////// Robot drivers /////////////////////////////////////
+	/**
+	 * Runs the Wizard, WallFollower and Pledge drivers with a SimulatedRobot on mazes of each builder
+	 * for the given skill level, episodes are distributed evenly over drivers and mazes.
+	 * Reports episodes per second, the share of episodes where the robot left the maze,
+	 * average energy consumption and path length for each driver.
+	 * @param skill level of the mazes
+	 * @param episodes number of episodes per driver
+	 */
+	static void benchmarkRobots(int skill, int episodes) {
+		ArrayList<MazeConfiguration> mazes = new ArrayList<MazeConfiguration>() ;
+		for (Order.Builder builder : Order.Builder.values())
+			mazes.add(orderMaze(builder, skill)) ;
+		final RobotDriver[] drivers = { new Wizard(), new WallFollower(), new Pledge() } ;
+		for (RobotDriver driver : drivers) {
+			int successes = 0 ;
+			double energy = 0 ;
+			long length = 0 ;
+			long time = 0 ;
+			for (int round = -WARMUP; round < episodes; round++) {
+				final MazeConfiguration maze = mazes.get(((round % mazes.size()) + mazes.size()) % mazes.size()) ;
+				final SimulatedRobot robot = new SimulatedRobot(maze) ;
+				long t0 = System.nanoTime() ;
+				driver.setRobot(robot) ;
+				driver.setDimensions(maze.getWidth(), maze.getHeight()) ;
+				driver.setDistance(maze.getMazedists()) ;
+				try {
+					driver.drive2Exit() ;
+				} catch (Exception e) {
+					e.printStackTrace() ;
+				}
+				if (round < 0)
+					continue ;
+				time += System.nanoTime() - t0 ;
+				if (robot.hasLeftMaze())
+					successes++ ;
+				energy += 3000 - robot.getBatteryLevel() ;
+				length += robot.getOdometerReading() ;
+			}
+			System.out.printf("%s skill %d: %d episodes on %d mazes, %.0f episodes/s, %.1f%% left the maze, %.1f energy, %.1f steps on average%n",
+					driver.getClass().getSimpleName(), skill, episodes, mazes.size(), episodes/(time/1e9),
+					100.0*successes/episodes, energy/episodes, (double) length/episodes) ;
+		}
+	}
+}
@@ -13,12 +13,14 @@ public class ManualDriver implements RobotDriver {
 	public BasicRobot robot;
 	public int width, height;
 	public Distance distance;
+	float initialBatteryLevel; // battery level when the robot was assigned, for the energy consumption
 	
 	public ManualDriver() {	}
 	
 	@Override
 	public void setRobot(Robot r) {
 		robot = (BasicRobot) r;
+		initialBatteryLevel = r.getBatteryLevel();
 	}
 
 	@Override
@@ -29,7 +31,7 @@ public class ManualDriver implements RobotDriver {
 
 	@Override
 	public float getEnergyConsumption() {
-		return ( 2500 - robot.getBatteryLevel() );
+		return ( initialBatteryLevel - robot.getBatteryLevel() );
 	}
 
 	@Override
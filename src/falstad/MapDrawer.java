@@ -5,8 +5,8 @@ package falstad;
 
 import falstad.Constants.StateGUI;
 import generation.CardinalDirection;
-import generation.Cells;
 import generation.MazeConfiguration;
+import generation.SeenCells;
 
 /**
  * This class encapsulates all functionality to draw a map of the overall maze, the set of visible walls, the solution.
@@ -35,7 +35,7 @@ public class MapDrawer extends DefaultViewer {
 	 * the FirstPersonDrawer that writes content into it. The MapDrawer only
 	 * reads content to decide which lines to draw and in which color.
 	 */
-	Cells seencells ; 
+	SeenCells seencells ; 
 
 	// contains all necessary information about current maze, i.e.
 	// cells: location of walls
@@ -55,7 +55,7 @@ public class MapDrawer extends DefaultViewer {
 	 * @param map_scale
 	 * @param c
 	 */
-	public MapDrawer(int width, int height, int map_unit, int step_size, Cells seencells, int map_scale, MazeController c){
+	public MapDrawer(int width, int height, int map_unit, int step_size, SeenCells seencells, int map_scale, MazeController c){
 		//System.out.println("MapDrawer: constructor called") ;
 		view_width = width ;
 		view_height = height ;
@@ -214,9 +214,12 @@ public class MapDrawer extends DefaultViewer {
 		// while we are more than 1 step away from the final position
 		while (distance > 1) {
 			// find neighbor closer to exit (with no wall in between)
-			int[] neighbor = mazeConfig.getNeighborCloserToExit(sx, sy) ;
-			if (null == neighbor)
+			// a direction is a lookup in a table and does not allocate memory, unlike a neighbor array
+			CardinalDirection cd = mazeConfig.getDirectionToExit(sx, sy) ;
+			if (null == cd)
 				return ; // error
+			final int neighborX = sx + cd.dx() ;
+			final int neighborY = sy + cd.dy() ;
 			// scale coordinates, original calculation:
 			// x-coordinates
 			// nx1     == sx*map_scale + offx + map_scale/2;
@@ -228,14 +231,15 @@ public class MapDrawer extends DefaultViewer {
 			int nx1 = sx*map_scale + offx + map_scale/2;
 			int ny1 = view_height-1-(sy*map_scale + offy) - map_scale/2;
 			// neighbor position coordinates
-			int nx2 = neighbor[0]*map_scale + offx + map_scale/2;
-			int ny2 = view_height-1-(neighbor[1]*map_scale + offy) - map_scale/2;
+			int nx2 = neighborX*map_scale + offx + map_scale/2;
+			int ny2 = view_height-1-(neighborY*map_scale + offy) - map_scale/2;
 			gc.drawLine(nx1, ny1, nx2, ny2);
 			
 			// update loop variables for current position (sx,sy) and distance d for next iteration
-			sx = neighbor[0];
-			sy = neighbor[1];
-			distance = mazeConfig.getDistanceToExit(sx, sy) ;
+			// each step on the solution reduces the distance by one
+			sx = neighborX;
+			sy = neighborY;
+			distance-- ;
 
 		}
 	}
@@ -6,6 +6,8 @@ package falstad;
 import generation.Order;
 
 import java.awt.event.KeyListener;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.File;
 
 import javax.swing.JComboBox;
@@ -65,7 +67,15 @@ public class MazeApplication extends JFrame {
 			init();
 			return;
 		}
-		// Case 3: a file
+		// Case 3: Kruskal
+		if ("Kruskal".equalsIgnoreCase(parameter))
+		{
+			System.out.println("MazeApplication: generating random maze with Kruskal's algorithm");
+			controller = new MazeController(Order.Builder.Kruskal);
+			init();
+			return;
+		}
+		// Case 4: a file
 		File f = new File(parameter) ;
 		if (f.exists() && f.canRead())
 		{
@@ -88,6 +98,13 @@ public class MazeApplication extends JFrame {
 		
 		kl = new SimpleKeyListener(this, controller) ;
 		addKeyListener(kl) ;
+		// the controller draws frames on a thread of its own, stop it with the window
+		addWindowListener(new WindowAdapter() {
+			@Override
+			public void windowClosing(WindowEvent e) {
+				controller.shutdown() ;
+			}
+		}) ;
 		
 		setSize(400, 400) ;
 		setVisible(true) ;
@@ -8,12 +8,15 @@ import generation.MazeConfiguration;
 import generation.MazeContainer;
 import generation.MazeFactory;
 import generation.Order;
+import generation.SeenCells;
 import falstad.RobotDriver;
 import falstad.WallFollower;
 import falstad.Wizard;
 import falstad.Pledge;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Iterator;
+import java.util.concurrent.CopyOnWriteArrayList;
 import javax.swing.JButton;
 import javax.swing.JPanel;
 
@@ -37,9 +40,15 @@ public class MazeController implements Order {
 	// This is normally the task of the model in the MVC pattern.
 	
 	// views is the list of registered viewers that get notified
-	final private ArrayList<Viewer> views = new ArrayList<Viewer>() ; 
+	// viewers draw on the thread of the frame scheduler, the list may be changed concurrently by the controller
+	final private CopyOnWriteArrayList<Viewer> views = new CopyOnWriteArrayList<Viewer>() ; 
 	// all viewers share access to the same graphics object, the panel, to draw on
 	protected MazePanel panel ; 
+	// draws the latest state at a fixed frame rate, set in init(), without it frames are drawn right away
+	private volatile FrameScheduler scheduler ; // read by robots on other threads, reset by shutdown
+	// true: walk and rotate show intermediate views and slow down for a smooth appearance
+	// false: walk and rotate update the state right away, e.g. for robots that run at full speed
+	private volatile boolean animated = true ; // read by robots on other threads, see BasicRobot.getClock
 	protected BasicRobot robot;
 	protected RobotDriver driver;
 
@@ -69,7 +78,8 @@ public class MazeController implements Order {
 	private int angle; // current viewing angle, east == 0 degrees
 	//static final int viewz = 50;    
 	private int walkStep; // counter for intermediate steps within a single step forward or backward
-	private Cells seencells; // a matrix with cells to memorize which cells are visible from the current point of view
+	private SeenCells seencells; // 2 bits per cell to memorize which walls are visible from the current point of view
+	private BitSet seenSegments; // ids of segments that have been drawn, kept here as the tree of BSPNodes may be shared
 	// the FirstPersonDrawer obtains this information and the MapDrawer uses it for highlighting currently visible walls on the map
 
 	// about the maze and its generation
@@ -154,6 +164,7 @@ public class MazeController implements Order {
 			setState(StateGUI.STATE_GENERATING);
 			rset = new RangeSet();
 			panel.initBufferImage() ;
+			startFrameScheduler() ;
 			addView(new MazeView(this)) ;
 			// push results into controller, imitating maze factory delivery
 			deliver(loadMazeConfigurationFromFile(filename));
@@ -166,10 +177,21 @@ public class MazeController implements Order {
 		state = StateGUI.STATE_TITLE;
 		rset = new RangeSet();
 		panel.initBufferImage() ;
+		startFrameScheduler() ;
 		addView(new MazeView(this)) ;
 		notifyViewerRedraw() ;
 	}
 	
+	/**
+	 * Starts drawing frames on a background thread, see FrameScheduler
+	 */
+	private void startFrameScheduler() {
+		if (null == scheduler) {
+			scheduler = new FrameScheduler(this, panel, Constants.FRAMES_PER_SECOND) ;
+			scheduler.start() ;
+		}
+	}
+	
 	public MazeConfiguration getMazeConfiguration() {
 		return mazeConfig ;
 	}
@@ -243,7 +265,7 @@ public class MazeController implements Order {
 		// register views for the new maze
 		// reset map_scale in mapdrawer to a value of 10
 		addView(new FirstPersonDrawer(Constants.VIEW_WIDTH,Constants.VIEW_HEIGHT, Constants.MAP_UNIT,
-				Constants.STEP_SIZE, seencells, mazeConfig.getRootnode())) ;
+				Constants.STEP_SIZE, seencells, seenSegments, mazeConfig.getRootnode())) ;
 		
 		// order of registration matters, code executed in order of appearance!
 		addView(new MapDrawer(Constants.VIEW_WIDTH,Constants.VIEW_HEIGHT,Constants.MAP_UNIT,
@@ -292,21 +314,29 @@ public class MazeController implements Order {
 	 */
 	private void cleanViews() {
 		// go through views and remove viewers as needed
-		Iterator<Viewer> it = views.iterator() ;
-		while (it.hasNext())
-		{
-			Viewer v = it.next() ;
-			if ((v instanceof FirstPersonDrawer)||(v instanceof MapDrawer))
-			{
-				it.remove() ;
-			}
-		}
-
+		// the list does not support removal with an iterator, as it may be traversed concurrently
+		views.removeIf(v -> (v instanceof FirstPersonDrawer)||(v instanceof MapDrawer)) ;
 	}
 	/**
-	 * Notify all registered viewers to redraw their graphics
+	 * Notify all registered viewers to redraw their graphics.
+	 * Requests a frame with the current state from the frame scheduler that draws it later,
+	 * several requests within the time for a single frame result in a single frame with the latest state.
+	 * Without a scheduler, the frame is drawn right away if the panel is on screen.
 	 */
 	protected void notifyViewerRedraw() {
+		FrameScheduler.Frame frame = new FrameScheduler.Frame(state, px, py, viewdx, viewdy, walkStep, angle) ;
+		final FrameScheduler s = scheduler ;
+		if (null != s)
+			s.request(frame) ;
+		else if (panel.isShowing())
+			drawFrame(frame) ;
+	}
+	/**
+	 * Draws a frame with all registered viewers and updates the screen.
+	 * Called by the frame scheduler on its thread.
+	 * @param frame parameters for the viewers
+	 */
+	void drawFrame(FrameScheduler.Frame frame) {
 		// go through views and notify each one
 		Iterator<Viewer> it = views.iterator() ;
 		while (it.hasNext())
@@ -317,12 +347,36 @@ public class MazeController implements Order {
 				System.out.println("Maze.notifierViewerRedraw: can't get graphics object to draw on, skipping redraw operation") ;
 			}
 			else {
-			 v.redraw(panel, state, px, py, viewdx, viewdy, walkStep, Constants.VIEW_OFFSET, rset, angle) ;
+			 v.redraw(panel, frame.state, frame.px, frame.py, frame.viewdx, frame.viewdy, frame.walkStep, Constants.VIEW_OFFSET, rset, frame.angle) ;
 			}	
 		}
 		// update the screen with the buffer graphics
 		panel.update() ;
 	}
+	/**
+	 * Stops the thread that draws frames, to be called once the controller is not used anymore,
+	 * e.g. when the window of the application closes. Afterwards frames are drawn right away.
+	 */
+	public void shutdown() {
+		final FrameScheduler s = scheduler ;
+		scheduler = null ;
+		if (null != s)
+			s.stop() ;
+	}
+	/**
+	 * Selects if walk and rotate show intermediate views with a delay for a smooth appearance,
+	 * or update the state right away. 
+	 * @param animated true for a user at the keyboard, false for robots that run at full speed
+	 */
+	public void setAnimated(boolean animated) {
+		this.animated = animated ;
+	}
+	/**
+	 * @return true if walk and rotate show intermediate views with a delay, false otherwise
+	 */
+	boolean isAnimated() {
+		return animated ;
+	}
 	/** 
 	 * Notify all registered viewers to increment the map scale
 	 */
@@ -334,8 +388,7 @@ public class MazeController implements Order {
 			Viewer v = it.next() ;
 			v.incrementMapScale() ;
 		}
-		// update the screen with the buffer graphics
-		panel.update() ;
+		// the screen is updated with the next frame
 	}
 	/** 
 	 * Notify all registered viewers to decrement the map scale
@@ -348,8 +401,7 @@ public class MazeController implements Order {
 			Viewer v = it.next() ;
 			v.decrementMapScale() ;
 		}
-		// update the screen with the buffer graphics
-		panel.update() ;
+		// the screen is updated with the next frame
 	}
 	////////////////////////////// get methods ///////////////////////////////////////////////////////////////
 	boolean isInMapMode() { 
@@ -427,10 +479,13 @@ public class MazeController implements Order {
 		return !mazeConfig.hasWall(px, py, cd);
 	}
 	/**
-	 * Redraw and wait, used to obtain a smooth appearance for rotate and move operations
+	 * Redraw and wait, used to obtain a smooth appearance for rotate and move operations.
+	 * Only waits if animated, otherwise the request is merged with further requests by the frame scheduler.
 	 */
 	private void slowedDownRedraw() {
 		notifyViewerRedraw() ;
+		if (!animated)
+			return ;
 		try {
 			Thread.currentThread().sleep(25);
 		} catch (Exception e) { }
@@ -451,7 +506,7 @@ public class MazeController implements Order {
 	 */
 	synchronized public void rotate(int dir) {
 		final int originalAngle = angle;
-		final int steps = 4;
+		final int steps = animated ? 4 : 1; // without animation, go to the final angle right away
 
 		for (int i = 0; i != steps; i++) {
 			// add 1/4 of 90 degrees per step 
@@ -474,12 +529,16 @@ public class MazeController implements Order {
 		// it is used there for scaling steps
 		// so walkStep is implicitly used in slowedDownRedraw which triggers the redraw
 		// operation on all listed viewers
-		for (int step = 0; step != 4; step++) {
-			walkStep += dir;
-			slowedDownRedraw();
+		if (animated) {
+			for (int step = 0; step != 4; step++) {
+				walkStep += dir;
+				slowedDownRedraw();
+			}
 		}
 		setCurrentPosition(px + dir*dx, py + dir*dy) ;
 		walkStep = 0;
+		if (!animated)
+			notifyViewerRedraw();
 		logPosition();
 	}
 
@@ -709,7 +768,8 @@ public class MazeController implements Order {
 		showSolution = false ;
 		mapMode = false;
 		// init data structure for visible walls
-		seencells = new Cells(mazeConfig.getWidth()+1,mazeConfig.getHeight()+1) ;
+		seencells = new SeenCells(mazeConfig.getWidth()+1,mazeConfig.getHeight()+1) ;
+		seenSegments = new BitSet() ;
 		// obtain starting position
 		int[] start = mazeConfig.getStartingPosition() ;
 		setCurrentPosition(start[0],start[1]) ;
@@ -739,6 +799,8 @@ public class MazeController implements Order {
 			default:
 				break;
 		}
+		// only a user at the keyboard needs to see intermediate steps, robots run at full speed
+		setAnimated(driver instanceof ManualDriver);
 		robot = new BasicRobot();
 		robot.setMaze(this);
 		driver.setRobot(robot);
@@ -9,27 +9,36 @@ import generation.BSPNode;
 import generation.Cells;
 import generation.Distance;
 import generation.MazeConfiguration;
+import generation.MazeCache;
 import generation.MazeContainer;
 import generation.Seg;
 
-import java.io.File;
+import java.io.BufferedInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 /**
  * This class provides functionality to read the content of a Maze object from a file. 
- * File format is XML and produced with MazeFileWriter.
+ * File format is XML or binary and produced with MazeFileWriter, the format is recognized from the content of the file.
  * The class is a simple wrapper to make all fields of a Maze object accessible 
  * such that with the help of this class it is straightforward
  * to instantiate a MazeConfiguration object.
  * 
+ * Trees of BSPNodes and distances are shared across readers with the help of the MazeCache:
+ * if a maze with the same cells has been loaded before, the reader skips distances and tree in the file
+ * and delivers the cached ones, which must not be changed.
+ * 
  *
  */
 public class MazeFileReader {
@@ -44,13 +53,25 @@ public class MazeFileReader {
 	private int startx ;
 	private int starty ;
 	private BSPNode root ;
+	private Distance distance ; // wraps dists, cached object if tree and distances come from the cache
+	private final boolean useCache ;
 
 	/**
-	 * Constructor reads maze data from given file. The file format is an XML format produced by the MazeFileWriter class.
-	 *  
+	 * Constructor reads maze data from given file. The file format is an XML format or a binary format produced by the MazeFileWriter class.
+	 * Uses the MazeCache.
 	 * @param filename with data of a Maze object
 	 */
 	public MazeFileReader(String filename) {
+		this(filename, true) ;
+	}
+	/**
+	 * Constructor reads maze data from given file. The file format is an XML format or a binary format produced by the MazeFileWriter class.
+	 * @param filename with data of a Maze object
+	 * @param useCache if true, tree and distances are taken from and put into the MazeCache, 
+	 * if false, all data is read from file
+	 */
+	public MazeFileReader(String filename, boolean useCache) {
+		this.useCache = useCache ;
 		load(filename) ;
 	}
 
@@ -59,14 +80,14 @@ public class MazeFileReader {
 	 * @return maze configuration loaded from file
 	 */
 	MazeConfiguration getMazeConfiguration() {
-		MazeConfiguration mazeConfig = new MazeContainer() ;
+		MazeContainer mazeConfig = new MazeContainer() ;
 		mazeConfig.setHeight(getHeight());
 		mazeConfig.setWidth(getWidth());
 		mazeConfig.setMazecells(getCells());
-		Distance dists = new Distance(getDistances()) ;
-		mazeConfig.setMazedists(dists);
+		mazeConfig.setMazedists(distance);
 		mazeConfig.setRootnode(getRootNode());
 		mazeConfig.setStartingPosition(getStartX(), getStartY());
+		mazeConfig.buildNextHopTable();
 		return mazeConfig;
 	}
 	/////////////////// set of straightforward get methods //////////////
@@ -105,43 +126,275 @@ public class MazeFileReader {
 	private void load(String filename)
 	{
 		try{
+			if (isBinary(filename))
+				loadBinary(filename) ;
+			else
+				loadXML(filename) ;
+			if (null == distance && null != dists) { // read from file, not from cache
+				distance = new Distance(dists) ;
+				BSPNode.assignSegmentIds(root) ;
+				if (useCache && null != cells && null != root)
+					MazeCache.getInstance().put(cells, root, distance) ;
+			}
+		}
+		catch (Exception e) { // TODO: implement serious error handling
+			e.printStackTrace();
+		}
 
-			File fXmlFile = new File(filename);
-			DocumentBuilderFactory dbFactory = DocumentBuilderFactory.newInstance();
-			DocumentBuilder dBuilder = dbFactory.newDocumentBuilder();
-			Document doc = dBuilder.parse(fXmlFile);
-			doc.getDocumentElement().normalize();
-
-			NodeList nList = doc.getElementsByTagName("Maze");
-
-			for (int temp = 0 ; temp < nList.getLength() ; temp++) {
-
-				Node nNode = nList.item(temp);
-				if (nNode.getNodeType() == Node.ELEMENT_NODE) {
+	}
 
-					Element eElement = (Element) nNode;
+	/**
+	 * Tells if the given file starts with the magic number of the binary format
+	 * @param filename gives the input file
+	 * @return true if file is in binary format, false otherwise
+	 * @throws IOException
+	 */
+	private static boolean isBinary(String filename) throws IOException {
+		try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+			ByteBuffer magic = ByteBuffer.allocate(4) ;
+			while (magic.hasRemaining() && channel.read(magic) >= 0) {
+				// keep reading till buffer is full or file ends
+			}
+			return !magic.hasRemaining() && MazeFileWriter.BINARY_MAGIC == magic.getInt(0) ;
+		}
+	}
+	/**
+	 * Reads all attributes of a maze object from the given file in binary format, 
+	 * see MazeFileWriter for a description of the format.
+	 * @param filename gives the input file
+	 * @throws IOException if the file can not be read or has an unsupported version
+	 */
+	private void loadBinary(String filename) throws IOException {
+		ByteBuffer in ;
+		try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+			in = ByteBuffer.allocate((int) channel.size()) ;
+			while (in.hasRemaining() && channel.read(in) >= 0) {
+				// keep reading till buffer is full or file ends
+			}
+			in.flip() ;
+		}
+		// header
+		in.getInt() ; // magic number, checked in isBinary
+		final int version = in.getInt() ;
+		if (MazeFileWriter.BINARY_VERSION != version)
+			throw new IOException("MazeFileReader: unsupported version " + version + " of binary format in file " + filename) ;
+		width = in.getInt() ;
+		height = in.getInt() ;
+		rooms = in.getInt() ;
+		expected_partiters = in.getInt() ;
+		startx = in.getInt() ;
+		starty = in.getInt() ;
+		// cells
+		int[][] cellValue = new int[width][height] ;
+		for (int y = 0; y != height; y++)
+			for (int x = 0; x != width; x++)
+				cellValue[x][y] = in.getShort() & 0xffff ;
+		cells = new Cells(cellValue) ;
+		if (useCachedEntry())
+			return ; // skip distances and tree
+		// distances, delta encoded
+		dists = new int[width][height] ;
+		int previous = 0 ;
+		for (int y = 0; y != height; y++)
+			for (int x = 0; x != width; x++) {
+				previous += getVarint(in) ;
+				dists[x][y] = previous ;
+			}
+		// tree of BSPNodes
+		root = readBinaryBSPNode(in) ;
+	}
+	/**
+	 * Takes distances and tree of BSPNodes from the MazeCache if a maze with the current cells is in the cache
+	 * @return true if distances and tree have been set, false if they need to be read from file
+	 */
+	private boolean useCachedEntry() {
+		if (!useCache)
+			return false ;
+		MazeCache.Entry entry = MazeCache.getInstance().get(cells) ;
+		if (null == entry)
+			return false ;
+		distance = entry.getMazedists() ;
+		dists = distance.getDists() ;
+		root = entry.getRootnode() ;
+		return true ;
+	}
+	/**
+	 * Reads a BSP node and recursively its subtrees in pre-order from the binary format
+	 * @param in buffer to read from
+	 * @return a new BSPNode, fully initialized with all necessary data
+	 * @throws IOException if data is inconsistent
+	 */
+	private static BSPNode readBinaryBSPNode(ByteBuffer in) throws IOException {
+		final byte tag = in.get() ;
+		if (MazeFileWriter.BINARY_LEAF == tag) {
+			final int n = getVarint(in) ;
+			ArrayList<Seg> slist = new ArrayList<Seg>(n) ;
+			for (int i = 0 ; i < n ; i++) {
+				int x = getVarint(in) ;
+				int y = getVarint(in) ;
+				int dx = getVarint(in) ;
+				int dy = getVarint(in) ;
+				int dist = getVarint(in) ;
+				Seg seg = new Seg(x, y, dx, dy, dist, 0) ; // color is explicitly set below
+				int col = getVarint(in) ;
+				seg.setColor(col, getVarint(in)) ;
+				final byte flags = in.get() ;
+				seg.setPartition(0 != (flags & 1)) ;
+				seg.setSeen(0 != (flags & 2)) ;
+				slist.add(seg) ;
+			}
+			return new BSPLeaf(slist) ;
+		}
+		if (MazeFileWriter.BINARY_BRANCH != tag)
+			throw new IOException("MazeFileReader: unknown type of BSP node " + tag) ;
+		int x = getVarint(in) ;
+		int y = getVarint(in) ;
+		int dx = getVarint(in) ;
+		int dy = getVarint(in) ;
+		// read left branch before right branch
+		BSPNode l = readBinaryBSPNode(in) ;
+		BSPNode r = readBinaryBSPNode(in) ;
+		return new BSPBranch(x, y, dx, dy, l, r) ;
+	}
+	/**
+	 * Reads a signed value that is stored as a zigzag varint, see MazeFileWriter
+	 * @param in buffer to read from
+	 * @return value
+	 */
+	private static int getVarint(ByteBuffer in) {
+		int v = 0 ;
+		int shift = 0 ;
+		byte b ;
+		do {
+			b = in.get() ;
+			v |= (b & 0x7f) << shift ;
+			shift += 7 ;
+		} while (b < 0) ; // high bit set, another byte follows
+		return (v >>> 1) ^ -(v & 1) ; // undo zigzag mapping
+	}
 
-					width = getElementIntValue("sizeX", eElement);
-					height = getElementIntValue("sizeY", eElement);
-					rooms =  getElementIntValue("roomNum", eElement);
-					dists = new int[width][height];
-					expected_partiters = getElementIntValue("partiters", eElement);
-					cells = readCells(eElement);
-					// read array of distance values
-					readDistances(eElement);
-					// read start position
-					startx = getElementIntValue("startX", eElement);
-					starty = getElementIntValue("startY", eElement);
-					// read tree of BSPNodes
+	////////////////////////////////// XML format ////////////////////////////////////////
+	// The XML format is a flat sequence of elements below the Maze element, each carrying a single value. 
+	// The file is read with a StAX stream reader in a single pass: 
+	// fields of the maze, cells and distances are recognized by their element names, 
+	// the tree of BSPNodes is read by recursive descent as the MazeFileWriter stores its nodes in pre-order.
+	private XMLStreamReader xml ; // stream reader for the current file
+	private String elementName ; // name of the current element
+	private String elementText ; // text content of the current element
+	private boolean pushedBack ; // if true, the next call of nextElement delivers the current element again
+	
+	/**
+	 * Reads all attributes of a maze object from the given file in XML format
+	 * @param filename gives the input file
+	 * @throws IOException if the file can not be read
+	 * @throws XMLStreamException if the file content does not match the format
+	 */
+	private void loadXML(String filename) throws IOException, XMLStreamException {
+		XMLInputFactory factory = XMLInputFactory.newInstance() ;
+		// maze files do not need a DTD, so do not resolve any external content
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, false) ;
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false) ;
+		try (InputStream in = new BufferedInputStream(new FileInputStream(filename))) {
+			xml = factory.createXMLStreamReader(in) ;
+			pushedBack = false ;
+			int[][] cellValue = null ;
+			while (nextElement()) {
+				switch (elementName) {
+				case "sizeX" : 
+					width = getIntValue() ;
+					break ;
+				case "sizeY" :
+					height = getIntValue() ;
+					break ;
+				case "roomNum" : 
+					rooms = getIntValue() ;
+					break ;
+				case "partiters" :
+					expected_partiters = getIntValue() ;
+					break ;
+				case "startX" :
+					startx = getIntValue() ;
+					break ;
+				case "startY" :
+					starty = getIntValue() ;
+					break ;
+				case "xlBSPNode_0" :
+					// cells, distances and start position precede the tree in the file
+					if (null != cellValue) {
+						cells = new Cells(cellValue) ;
+						if (useCachedEntry())
+							return ; // skip the tree
+					}
+					// read tree of BSPNodes, starting with the current element
+					pushedBack = true ;
 					number = 0 ; // field used as an index, that is shared an updated across recursive readBSPNode calls
-					root = readBSPNode(eElement);
+					root = readBSPNode() ;
+					break ;
+				default :
+					// cells and distances are numbered column by column, requires that width and height have been set
+					if (elementName.startsWith("cell_")) {
+						if (null == cellValue)
+							cellValue = new int[width][height] ;
+						final int number = Integer.parseInt(elementName.substring(5)) ;
+						cellValue[number / height][number % height] = getIntValue() ;
+					}
+					else if (elementName.startsWith("dists_")) {
+						if (null == dists)
+							dists = new int[width][height] ;
+						final int number = Integer.parseInt(elementName.substring(6)) ;
+						dists[number / height][number % height] = getIntValue() ;
+					}
+					// ignore any other elements
 				}
 			}
+			if (null != cellValue && null == cells)
+				cells = new Cells(cellValue) ;
 		}
-		catch (Exception e) { // TODO: implement serious error handling
-			e.printStackTrace();
+		finally {
+			if (null != xml)
+				xml.close() ;
+			xml = null ;
 		}
-
+	}
+	/**
+	 * Advances to the next element below the Maze element and reads its name and text content.
+	 * @return true if there is a next element, false at the end of the document
+	 * @throws XMLStreamException
+	 */
+	private boolean nextElement() throws XMLStreamException {
+		if (pushedBack) {
+			pushedBack = false ;
+			return true ;
+		}
+		while (xml.hasNext()) {
+			if (XMLStreamConstants.START_ELEMENT == xml.next()) {
+				elementName = xml.getLocalName() ;
+				if ("Maze".equals(elementName))
+					continue ; // enclosing element, values are in its children
+				elementText = xml.getElementText() ; // moves to the end of the element
+				return true ;
+			}
+		}
+		return false ;
+	}
+	/**
+	 * Advances to the next element, which must carry the given name.
+	 * @param name of expected element
+	 * @return text content of the element
+	 * @throws XMLStreamException if the next element has a different name
+	 */
+	private String expectElement(String name) throws XMLStreamException {
+		if (!nextElement())
+			throw new XMLStreamException("MazeFileReader: expected element " + name + " but reached end of file") ;
+		if (!name.equals(elementName))
+			throw new XMLStreamException("MazeFileReader: expected element " + name + " but found " + elementName, xml.getLocation()) ;
+		return elementText.trim() ;
+	}
+	/**
+	 * @return integer value of the current element
+	 */
+	private int getIntValue() {
+		return Integer.parseInt(elementText.trim()) ;
 	}
 
 	// shared index number for nodes in the tree of BSPNodes, used as an additional return value for recursive calls
@@ -149,153 +402,78 @@ public class MazeFileReader {
 	// we need to keep track of the node number 
 	int number ;
 	/**
-	 * Reads data for a BSPNode from file for the given element
+	 * Reads data for a BSPNode from file, the next element needs to be the first one of this node.
 	 * 
 	 * The method recursively explores the left and right branches and builds a complete tree.
-	 * @param eElement element to read data from
 	 * @return a new BSPNode, fully initialized with all necessary data
+	 * @throws XMLStreamException if elements do not match the format
 	 */
-	private BSPNode readBSPNode(Element eElement) {
-		// read fields of BSBNode class
-		/* unused, as these values are recalculated in the BSPnode constructor
-		int xlLoad = getElementIntValue("xlBSPNode_"+number, eElement);
-		int ylLoad = getElementIntValue("ylBSPNode_"+number, eElement);
-		int xuLoad = getElementIntValue("xuBSPNode_"+number, eElement);
-		int yuLoad = getElementIntValue("yuBSPNode_"+number, eElement);
-		 */
+	private BSPNode readBSPNode() throws XMLStreamException {
 		int mynumber = number ; // keep track of own node number, as that the shared attribute number gets manipulated in recursive method calls
-		boolean isleafLoad= getElementBooleanValue("isleafBSPNode_"+mynumber, eElement);
+		// read fields of BSBNode class
+		// values are unused, as these values are recalculated in the BSPnode constructor
+		expectElement("xlBSPNode_"+mynumber);
+		expectElement("ylBSPNode_"+mynumber);
+		expectElement("xuBSPNode_"+mynumber);
+		expectElement("yuBSPNode_"+mynumber);
+		boolean isleafLoad = Boolean.parseBoolean(expectElement("isleafBSPNode_"+mynumber));
 		// laod data for leaf nodes and bsp branch nodes
 		if (isleafLoad)
 		{
 			// BSBLeaf, load segments
 			// note xl, yl, xu and yu are computed from the segments within the leaf constructor
 			// so there is no need to store those
-			ArrayList<Seg> slist = new ArrayList<Seg>() ;
-			int n = getElementIntValue("numSeg_" + mynumber, eElement); // get the total number of segments to load
-			//System.out.println("Trace: read Leaf " + mynumber + ", segments: " + n) ;
+			int n = Integer.parseInt(expectElement("numSeg_" + mynumber)); // get the total number of segments to load
+			ArrayList<Seg> slist = new ArrayList<Seg>(n) ;
 			for (int i = 0 ; i < n ; i++)
 			{
-				slist.add(readSegment(eElement, number, i)) ;
+				slist.add(readSegment(mynumber, i)) ;
 			}
 			return new BSPLeaf(slist) ;
 		}
 		else
 		{
 			//BSPBranch, load fields and left and right branches
-			int x = getElementIntValue("xBSPNode_"+mynumber, eElement);
-			int y = getElementIntValue("yBSPNode_"+mynumber, eElement);
-			int dx = getElementIntValue("dxBSPNode_"+mynumber, eElement); 
-			int dy = getElementIntValue("dyBSPNode_"+mynumber, eElement);
+			int x = Integer.parseInt(expectElement("xBSPNode_"+mynumber));
+			int y = Integer.parseInt(expectElement("yBSPNode_"+mynumber));
+			int dx = Integer.parseInt(expectElement("dxBSPNode_"+mynumber)); 
+			int dy = Integer.parseInt(expectElement("dyBSPNode_"+mynumber));
 			// read left branch before right branch, increment index number for next node to visit
 			number++ ;
-			BSPNode l = readBSPNode(eElement) ; // recursion updates index number for each element of the subtree
+			BSPNode l = readBSPNode() ; // recursion updates index number for each element of the subtree
 			number++ ; // increment index number for next node to visit
-			BSPNode r = readBSPNode(eElement) ;
+			BSPNode r = readBSPNode() ;
 			// other fields of BSBNode class need not be set, computed in constructor from branches
 			return new BSPBranch(x,y,dx,dy,l,r) ;
 		}
 	}
 	/**
-	 * Read a single segment from file
-	 * @param eElement element to read from 
+	 * Read a single segment from file, elements are expected in the order of Seg.storeSeg
 	 * @param number suffix with index number of BSPNode
 	 * @param i suffix with index of segment
 	 * @return new segment, fully initialized with all necessary data
+	 * @throws XMLStreamException if elements do not match the format
 	 */
-	private static Seg readSegment(Element eElement, int number, int i) {
-		// load segment attributes		
-		int dist = getElementIntValue("distSeg_" + number+ "_" + i, eElement);
-		int dx = getElementIntValue("dxSeg_" + number+ "_" + i, eElement);
-		int dy = getElementIntValue("dySeg_" + number+ "_" + i, eElement);
-		int x = getElementIntValue("xSeg_" + number+ "_" + i, eElement);
-		int y = getElementIntValue("ySeg_" + number+ "_" + i, eElement);	
+	private Seg readSegment(int number, int i) throws XMLStreamException {
+		// load segment attributes
+		final String suffix = number + "_" + i ;
+		int dist = Integer.parseInt(expectElement("distSeg_" + suffix));
+		int dx = Integer.parseInt(expectElement("dxSeg_" + suffix));
+		int dy = Integer.parseInt(expectElement("dySeg_" + suffix));
+		boolean partition = Boolean.parseBoolean(expectElement("partitionSeg_" + suffix));
+		boolean seen = Boolean.parseBoolean(expectElement("seenSeg_" + suffix));
+		int x = Integer.parseInt(expectElement("xSeg_" + suffix));
+		int y = Integer.parseInt(expectElement("ySeg_" + suffix));
+		int col = Integer.parseInt(expectElement("colSeg_" + suffix));
 		int cc = 0 ; // use this as a dummy for the constructor, the correct color is explicitly set below
 		Seg result = new Seg(x,y,dx,dy,dist,cc) ;
-		// get a few more attributes and set those explicitly
-		int col = getElementIntValue("colSeg_" + number+ "_" + i, eElement);
+		// set a few more attributes explicitly
 		result.setColor(col); 
-		result.setSeen(getElementBooleanValue("seenSeg_" + number+ "_" + i, eElement));
-		result.setPartition(getElementBooleanValue("partitionSeg_" + number+ "_" + i, eElement));
+		result.setSeen(seen);
+		result.setPartition(partition);
 		return result;
 	}
 
-	/**
-	 * Reads data for a two-dimensional array of distance values. 
-	 * Requires that fields width and height have been set. 
-	 * @param eElement to read data from
-	 */
-	private void readDistances(Element eElement) {
-		int number = 0 ;
-		for ( int x = 0; x != width; x++) {
-			for ( int y = 0; y != height; y++) {
-				dists[x][y] = getElementIntValue("dists"+ "_" + Integer.toString(number), eElement);
-				number++;
-			}
-		}
-	}
-
-	/**
-	 * Reads data for a cells object that contains values for walls. 
-	 * Requires that fields width and height have been set. 
-	 * @param eElement to read data from
-	 */
-	private Cells readCells(Element eElement) {
-		int [][]cellValue = new int[width][height] ;
-		int number = 0 ;
-
-		for ( int x = 0; x != width; x++) {
-			for ( int y = 0; y != height; y++) {
-				cellValue[x][y] = getElementIntValue("cell"+ "_" + Integer.toString(number), eElement);
-				number++;
-			}
-		}
-		return new Cells(cellValue);
-	}
-	
-	/**
-	 * Obtains an integer value from the given element for the given string
-	 * @param string identifier
-	 * @param parent element that holds data
-	 * @return
-	 */
-	public static int getElementIntValue(  String string, Element parent) {
-		return Integer
-				.parseInt(getElementStringValue( string, parent));
-	}
-
-	/**
-	 * Obtains an integer value from the given element for the given string
-	 * @param string identifier
-	 * @param parent element that holds data
-	 * @return
-	 */
-	public static boolean getElementBooleanValue(  String string, Element parent ) {
-		return Boolean
-				.valueOf(getElementStringValue(string, parent))
-				.booleanValue();
-	}
-
-	/**
-	 * Obtains an integer value from the given element for the given string
-	 * @param string identifier
-	 * @param parent element that holds data
-	 * @return
-	 */
-	public static String getElementStringValue( String string, Element parent) {
-		NodeList nl = parent.getElementsByTagName(string);
-		if (nl.getLength() == 0) {
-			return "";
-		}
-
-		Node n = nl.item(0).getFirstChild();
-		if (n == null) {
-			return "";
-		}
-
-		return n.getNodeValue();
-	}
-
 	/////////////////////////////////// internal methods used in testing /////////////////////////////////////////
 	// TODO: change these into equals and compare methods for the corresponding Maze and BSPNode classes
 	// TODO: create junit test class that is a subclass of MazeFileReader that takes this code and performs unit tests
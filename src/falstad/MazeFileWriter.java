@@ -4,10 +4,19 @@
 package falstad;
 
 
+import generation.BSPBranch;
+import generation.BSPLeaf;
 import generation.BSPNode;
 import generation.Cells;
+import generation.Seg;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -28,7 +37,21 @@ import org.w3c.dom.Element;
  * All methods are static. 
  * The XML format is a straightforward enumeration of elements and not particularly sophisticated. 
  * 
- *
+ * Alternatively, a maze can be stored in a compact binary format with storeBinary, 
+ * the MazeFileReader recognizes both formats. The binary format (version 1) is big-endian and consists of
+ * <ul>
+ * <li>a header: magic number "MAZB", version, width, height, rooms, expected partiters, start x, start y as ints,</li>
+ * <li>the cells: width*height values of 2 bytes each in row-major order (index y*width+x),</li>
+ * <li>the distances: width*height values in row-major order, each as a zigzag varint of 
+ * the difference to its predecessor (adjacent cells differ by small values, so most take a single byte),</li>
+ * <li>the BSP tree in pre-order: a byte 0 for a branch followed by x, y, dx, dy and its left and right subtree,
+ * a byte 1 for a leaf followed by the number of segments and for each segment x, y, dx, dy, distance, color, 
+ * case number and a byte with the partition (bit 0) and seen (bit 1) flags. 
+ * All these values are zigzag varints.</li>
+ * </ul>
+ * A zigzag varint stores an int in 7 bit groups, least significant group first, with the high bit
+ * of each byte telling if another byte follows. Signed values are mapped to unsigned ones first
+ * such that values of small magnitude take few bytes: 0, -1, 1, -2, ... become 0, 1, 2, 3, ...
  */
 public class MazeFileWriter {
 
@@ -142,4 +165,141 @@ public class MazeFileWriter {
 		e.appendChild(doc.createTextNode(Boolean.toString(value)) );
 		mazeXML.appendChild(e);
 	}
+
+	/////////////////////////////// binary format ///////////////////////////////////////
+	static final int BINARY_MAGIC = 0x4D415A42 ; // "MAZB"
+	static final int BINARY_VERSION = 1 ;
+	static final byte BINARY_BRANCH = 0 ; // tag for a branch node in the BSP tree
+	static final byte BINARY_LEAF = 1 ; // tag for a leaf node in the BSP tree
+	private static final int BINARY_BUFFER_SIZE = 1 << 16 ; // bytes that are written to the file channel at once
+
+	/**
+	 * Write maze content to a file in the binary format, same parameters as for store.
+	 * The content is encoded into a buffer of bounded size that is written to a file channel
+	 * whenever it is full, so no representation of the whole file is kept in memory.
+	 */
+	public static void storeBinary(String filename, int width, int height, int rooms, int expected_partiters, BSPNode root, Cells cells, int[][] dists, int startX, int startY)
+	{
+		try (FileChannel channel = FileChannel.open(Paths.get(filename), 
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			BinaryOutput out = new BinaryOutput(channel) ;
+			// header
+			out.putInt(BINARY_MAGIC) ;
+			out.putInt(BINARY_VERSION) ;
+			out.putInt(width) ;
+			out.putInt(height) ;
+			out.putInt(rooms) ;
+			out.putInt(expected_partiters) ;
+			out.putInt(startX) ;
+			out.putInt(startY) ;
+			// cells
+			for (int y = 0; y != height; y++) {
+				for (int x = 0; x != width; x++) {
+					final int value = cells.getValueOfCell(x, y) ;
+					assert (0 == (value & ~0xffff)) : "MazeFileWriter: cell value does not fit into 2 bytes: " + value ;
+					out.putShort((short) value) ;
+				}
+			}
+			// distances, delta encoded
+			int previous = 0 ;
+			for (int y = 0; y != height; y++) {
+				for (int x = 0; x != width; x++) {
+					out.putVarint(dists[x][y] - previous) ;
+					previous = dists[x][y] ;
+				}
+			}
+			// BSP nodes
+			if (null != root)
+				storeBinary(out, root) ;
+			else
+				System.out.println("MazeBuilderWriter.storeBinary: root node of BSP tree is null");
+			out.flush() ;
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+	/**
+	 * Store a BSP node and recursively its subtrees in pre-order
+	 * @param out to write to
+	 * @param node to store
+	 * @throws IOException
+	 */
+	private static void storeBinary(BinaryOutput out, BSPNode node) throws IOException {
+		if (node.isIsleaf()) {
+			out.putByte(BINARY_LEAF) ;
+			ArrayList<Seg> slist = ((BSPLeaf) node).getSlist() ;
+			out.putVarint(slist.size()) ;
+			for (Seg seg : slist) {
+				out.putVarint(seg.getStartPositionX()) ;
+				out.putVarint(seg.getStartPositionY()) ;
+				out.putVarint(seg.getExtensionX()) ;
+				out.putVarint(seg.getExtensionY()) ;
+				out.putVarint(seg.getDistance()) ;
+				out.putVarint(seg.getColor()) ;
+				out.putVarint(seg.getCaseNumber()) ;
+				out.putByte((byte) ((seg.isPartition() ? 1 : 0) | (seg.isSeen() ? 2 : 0))) ;
+			}
+		}
+		else {
+			out.putByte(BINARY_BRANCH) ;
+			BSPBranch branch = (BSPBranch) node ;
+			out.putVarint(branch.getX()) ;
+			out.putVarint(branch.getY()) ;
+			out.putVarint(branch.getDx()) ;
+			out.putVarint(branch.getDy()) ;
+			storeBinary(out, branch.getLeftBranch()) ;
+			storeBinary(out, branch.getRightBranch()) ;
+		}
+	}
+	/**
+	 * Encodes values into a buffer that is written to a file channel when full.
+	 */
+	private static class BinaryOutput {
+		private final FileChannel channel ;
+		private final ByteBuffer buffer = ByteBuffer.allocate(BINARY_BUFFER_SIZE) ;
+
+		BinaryOutput(FileChannel channel) {
+			this.channel = channel ;
+		}
+		/**
+		 * Makes sure that the buffer has room for the given number of bytes
+		 */
+		private void ensure(int bytes) throws IOException {
+			if (buffer.remaining() < bytes)
+				flush() ;
+		}
+		/**
+		 * Writes the content of the buffer to the channel
+		 */
+		void flush() throws IOException {
+			buffer.flip() ;
+			while (buffer.hasRemaining())
+				channel.write(buffer) ;
+			buffer.clear() ;
+		}
+		void putByte(byte value) throws IOException {
+			ensure(1) ;
+			buffer.put(value) ;
+		}
+		void putShort(short value) throws IOException {
+			ensure(2) ;
+			buffer.putShort(value) ;
+		}
+		void putInt(int value) throws IOException {
+			ensure(4) ;
+			buffer.putInt(value) ;
+		}
+		/**
+		 * Writes a signed value as a zigzag varint, takes 1 to 5 bytes.
+		 */
+		void putVarint(int value) throws IOException {
+			ensure(5) ;
+			int v = (value << 1) ^ (value >> 31) ; // zigzag: sign goes into lowest bit
+			while ((v & ~0x7f) != 0) {
+				buffer.put((byte) ((v & 0x7f) | 0x80)) ;
+				v >>>= 7 ;
+			}
+			buffer.put((byte) v) ;
+		}
+	}
 }
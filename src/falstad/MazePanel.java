@@ -31,6 +31,9 @@ public class MazePanel extends Panel  {
 	// graphics is stored to allow clients to draw on same graphics object repeatedly
 	// has benefits if color settings should be remembered for subsequent drawing operations
 	
+	// colors for segments by case number and color value, see setColor(int, int), created on first use
+	private static final Color[][] segmentColors = new Color[7][256] ;
+	
 	static int Black = 0;
 	static int White = 1;
 	static int Yellow = 2;
@@ -86,29 +89,47 @@ public class MazePanel extends Panel  {
 		}
 	}
 	
+	/**
+	 * Sets the color for a segment, see Seg.getColor and Seg.getCaseNumber.
+	 * Colors are created once and kept in a cache, as this method is called for every segment of every frame.
+	 * @param color value between 0 and 255
+	 * @param caseNum selects the color channels that are set to the given value
+	 */
 	public void setColor(int color, int caseNum) {
+		final int row = (0 <= caseNum && caseNum < 6) ? caseNum : 6 ; // all other cases use the same color
+		if (0 <= color && color < 256) {
+			Color c = segmentColors[row][color] ;
+			if (null == c) {
+				c = createSegmentColor(color, caseNum) ;
+				segmentColors[row][color] = c ;
+			}
+			graphics.setColor(c) ;
+		}
+		else
+			graphics.setColor(createSegmentColor(color, caseNum)) ; // invalid value, let Color report it
+	}
+	/**
+	 * Creates the color for a segment
+	 * @param color value between 0 and 255
+	 * @param caseNum selects the color channels that are set to the given value
+	 * @return new color
+	 */
+	private static Color createSegmentColor(int color, int caseNum) {
 		switch(caseNum) {
 		case 0:
-            graphics.setColor(new Color(color, 20, 20));
-            break;
+            return new Color(color, 20, 20);
         case 1:
-        	graphics.setColor(new Color(20, color, 20));
-            break;
+        	return new Color(20, color, 20);
         case 2:
-        	graphics.setColor(new Color(20, 20, color));
-            break;
+        	return new Color(20, 20, color);
         case 3:
-        	graphics.setColor(new Color(color, color, 20));
-            break;
+        	return new Color(color, color, 20);
         case 4:
-        	graphics.setColor(new Color(20, color, color));
-            break;
+        	return new Color(20, color, color);
         case 5:
-        	graphics.setColor(new Color(color, 20, color));
-            break;
+        	return new Color(color, 20, color);
         default:
-        	graphics.setColor(new Color(20, 20, 20));
-            break;
+        	return new Color(20, 20, 20);
         }
 	}
 	
@@ -172,12 +193,27 @@ public class MazePanel extends Panel  {
 	}
 
 	public void initBufferImage() {
-		bufferImage = createImage(Constants.VIEW_WIDTH, Constants.VIEW_HEIGHT);
+		bufferImage = createBufferImage();
 		if (null == bufferImage)
 		{
 			System.out.println("Error: creation of buffered image failed, presumedly container not displayable");
 		}
 	}
+	/**
+	 * Creates the image to draw on, called by initBufferImage.
+	 * The image of a panel is only available once the panel is displayable,
+	 * subclasses may provide an image that does not need a screen, see OffscreenMazePanel.
+	 * @return image, null if it can not be created
+	 */
+	protected Image createBufferImage() {
+		return createImage(Constants.VIEW_WIDTH, Constants.VIEW_HEIGHT);
+	}
+	/**
+	 * @return image to draw on, null if not yet initialized
+	 */
+	protected Image getBufferImage() {
+		return bufferImage;
+	}
 	/**
 	 * Obtains a graphics object that can be used for drawing.
 	 * The object internally stores the graphics object and will return the
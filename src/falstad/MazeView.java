@@ -29,7 +29,7 @@ public class MazeView extends DefaultViewer implements ActionListener {
 	private MazeController controller ;
 	
 	String[] drivers = {"Wizard", "WallFwr", "Pledge", "Manual"};
-	String[] generators = {"DFS", "Prim", "Eller"};
+	String[] generators = {"DFS", "Prim", "Eller", "Kruskal"};
 	String[] skill = {"0", "1", "2", "3", "4", "5", "6", "7", "8", "9", "10", "11", "12","13", "14", "15"};
 	
 
@@ -114,6 +114,9 @@ public class MazeView extends DefaultViewer implements ActionListener {
 					case 2:
 						MazeController.userBuilder = Builder.Eller;
 						break;
+					case 3:
+						MazeController.userBuilder = Builder.Kruskal;
+						break;
 					default:
 						break;
 				}
@@ -0,0 +1,61 @@
+package falstad;
+
+import java.awt.Graphics;
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+
+/**
+ * A MazePanel that draws on a BufferedImage instead of an image of the screen.
+ * The image is available right away, the panel need not be displayable,
+ * so drawers like the FirstPersonDrawer can render with java.awt.headless=true,
+ * e.g. for benchmarks or to compare rendered frames in regression tests.
+ *
+ * The panel is never shown on screen, update and paint do nothing.
+ */
+public class OffscreenMazePanel extends MazePanel {
+	private static final long serialVersionUID = 1L;
+	private final int width ;
+	private final int height ;
+
+	/**
+	 * Constructor for an image of the size of the view in the game
+	 */
+	public OffscreenMazePanel() {
+		this(Constants.VIEW_WIDTH, Constants.VIEW_HEIGHT) ;
+	}
+	/**
+	 * Constructor
+	 * @param width of image
+	 * @param height of image
+	 * @precondition 0 < width, 0 < height
+	 */
+	public OffscreenMazePanel(int width, int height) {
+		this.width = width ;
+		this.height = height ;
+		getBufferGraphics() ; // create image and graphics such that drawing can start right away
+	}
+	@Override
+	protected Image createBufferImage() {
+		return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB) ;
+	}
+	/**
+	 * @return image that this panel draws on
+	 */
+	public BufferedImage getImage() {
+		return (BufferedImage) getBufferImage() ;
+	}
+	/**
+	 * Nothing to do, the panel is not on screen
+	 */
+	@Override
+	public void update() {
+		// nothing to show
+	}
+	/**
+	 * Nothing to do, the panel is not on screen
+	 */
+	@Override
+	public void paint(Graphics g) {
+		// nothing to show
+	}
+}
@@ -8,37 +8,40 @@ import generation.Distance;
  * Pledge driver moves in a direction until it hits an obstacle
  * Uses Pledge's algorithm to traverse the obstacle and continue in main direction
  * 
- * Collaborators: MazeController, BasicRobot
+ * Collaborators: Robot, MazeController if the robot is on screen
  * @author scstew
  */
 
 public class Pledge implements RobotDriver {
 
-	BasicRobot robot;
+	Robot robot;
+	float initialBatteryLevel; // battery level when the robot was assigned, for the energy consumption
 	
 	public Pledge() { }
 	
 	@Override
 	public boolean drive2Exit() throws Exception {
-		robot.getController().showMaze = true;
-		robot.getController().mapMode = true;
+		if (null != robot.getController()) { // no map without a screen, e.g. for a SimulatedRobot
+			robot.getController().showMaze = true;
+			robot.getController().mapMode = true;
+		}
 		
 		int counter = 0;
 		
 		//Main movement
 		//Begin if sufficient battery level
-		while (!robot.isAtExit() && robot.getBatteryLevel() > 0) {
+		while (!robot.isAtExit() && robot.getBatteryLevel() > 0 && !robot.hasStopped()) {
 			//Default case: obstacle counter at zero and able to move forward
 			if (counter == 0 && robot.distanceToObstacle(Direction.FORWARD) != 0) {
 				robot.move(1, false);
-				Thread.sleep(50);
+				robot.getClock().sleep(50);
 			}
 			
 			//Obstacle counter at 0 but unable to move forward; turn left
 			else if (counter == 0 && robot.distanceToObstacle(Direction.FORWARD) == 0) {
 				robot.rotate(Turn.LEFT);
 				counter--;
-				Thread.sleep(50);
+				robot.getClock().sleep(50);
 			}
 			
 			//Obstacle counter is not 0 so rotate, update counter, and move appropriately
@@ -46,13 +49,13 @@ public class Pledge implements RobotDriver {
 				//Move forward if we can, because we must have just turned if the counter is not zero
 				if (robot.distanceToObstacle(Direction.FORWARD) != 0) {
 					robot.move(1, false);
-					Thread.sleep(50);
+					robot.getClock().sleep(50);
 					
 					//If we move forward and a right path opens up, turn right
 					if(robot.distanceToObstacle(Direction.RIGHT) != 0) {
 						robot.rotate(Turn.RIGHT);
 						counter++;
-						Thread.sleep(50);
+						robot.getClock().sleep(50);
 					}
 				}
 				
@@ -60,15 +63,12 @@ public class Pledge implements RobotDriver {
 				else {
 					robot.rotate(Turn.LEFT);
 					counter--;
-					Thread.sleep(50);
+					robot.getClock().sleep(50);
 				}
 			}
-			
-			//Print current counter to console for debugging
-			System.out.println(counter);
 		}
 		
-		if(!(robot.getBatteryLevel() > 0)) {
+		if(!(robot.getBatteryLevel() > 0) || robot.hasStopped()) {
 			return false;
 		}
 		
@@ -76,32 +76,33 @@ public class Pledge implements RobotDriver {
 		if (robot.canSeeExit(Direction.LEFT)) {
 			robot.rotate(Turn.LEFT);
 			robot.move(1, false);
-			Thread.sleep(50);
+			robot.getClock().sleep(50);
 		}
 		
 		else if (robot.canSeeExit(Direction.RIGHT)){
 			robot.rotate(Turn.RIGHT);
 			robot.move(1, false);
-			Thread.sleep(50);
+			robot.getClock().sleep(50);
 		}
 		
 		else if (robot.canSeeExit(Direction.FORWARD)){
 			robot.move(1, false);
-			Thread.sleep(50);
+			robot.getClock().sleep(50);
 		}
 		
 		else if (robot.canSeeExit(Direction.BACKWARD)){
 			robot.rotate(Turn.AROUND);
 			robot.move(1, false);
-			Thread.sleep(50);
+			robot.getClock().sleep(50);
 		}
 		
-		return false;
+		return true;
 	}
 	
 	@Override
 	public void setRobot(Robot r) {
-		robot = (BasicRobot) r;
+		robot = r;
+		initialBatteryLevel = r.getBatteryLevel();
 	}
 
 	
@@ -113,9 +114,13 @@ public class Pledge implements RobotDriver {
 	public void setDistance(Distance distance) { }
 	
 	@Override
-	public float getEnergyConsumption() { return 0;	}
+	public float getEnergyConsumption() {
+		return initialBatteryLevel - robot.getBatteryLevel();
+	}
 
 	@Override
-	public int getPathLength() { return 0; }
+	public int getPathLength() {
+		return robot.getOdometerReading();
+	}
 
 }
@@ -1,32 +1,45 @@
 package falstad;
 
-import java.util.Vector;
+import java.util.Arrays;
 
 /**
- * Class stores a set of ranges, i.e., intervals. 
- * Its single current user is the MazeController class. 
- * 
- * Note: remove and intersect methods operate on a set of elements, 
+ * Class stores a set of ranges, i.e., intervals.
+ * Its single current user is the FirstPersonDrawer class that keeps track of
+ * columns of the screen that are not yet covered by a wall.
+ *
+ * Note: remove and intersect methods operate on a set of elements,
  * however there is no method to add more than a single element to the set
- * as the set method removes all previous elements from the set. 
+ * as the set method removes all previous elements from the set.
  * This only way to increase the cardinality is to split an existing interval
  * into two by way of the remove method.
- * 
+ *
  * This implies that ranges are disjoint and sorted in increasing order.
  *
+ * Ranges are kept in two arrays of lower and upper bounds, such that both arrays are sorted
+ * and intersect and remove find the first relevant range by binary search.
+ * The arrays only grow, so a set that is reused for every frame does not allocate memory
+ * once it has reached the largest number of ranges needed.
+ * The class is not synchronized, a set is used by a single drawer.
+ *
  * This code is refactored code from Maze.java by Paul Falstad, www.falstad.com, Copyright (C) 1998, all rights reserved
  * Paul Falstad granted permission to modify and use code for teaching purposes.
  * Refactored by Peter Kemper
  */
 public class RangeSet {
-	
-	private Vector<RangeSetElement> ranges;
-	
+
+	private int[] mins ; // lower bounds of ranges in increasing order
+	private int[] maxes ; // upper bounds of ranges in increasing order
+	private int size ; // number of ranges
+	// bounds of the intersection found by the last successful call of intersect(min,max)
+	private int intersectionMin ;
+	private int intersectionMax ;
+
 	/**
 	 * Constructor
 	 */
 	public RangeSet() {
-		ranges = new Vector<RangeSetElement>();
+		mins = new int[16] ;
+		maxes = new int[16] ;
 	}
 
 	/**
@@ -34,7 +47,13 @@ public class RangeSet {
 	 * @return true if the set is empty, false otherwise
 	 */
 	public boolean isEmpty() {
-		return ranges.isEmpty();
+		return 0 == size ;
+	}
+	/**
+	 * @return number of ranges in the set
+	 */
+	public int size() {
+		return size ;
 	}
 
 	/**
@@ -43,8 +62,9 @@ public class RangeSet {
 	 * @param mx maximum value for new element
 	 */
 	public void set(int mn, int mx) {
-		ranges.removeAllElements();
-		ranges.addElement(new RangeSetElement(mn, mx));
+		mins[0] = mn ;
+		maxes[0] = mx ;
+		size = 1 ;
 	}
 
 	/**
@@ -60,77 +80,104 @@ public class RangeSet {
 			tx = fx;
 			fx = jj;
 		}
-		// check all elements of the set for an overlap with interval [fx,tx]
-		// assume that set is sorted in increasing order
-		for (int i = 0; i != ranges.size(); i++) {
-			RangeSetElement rse =
-				(RangeSetElement) ranges.elementAt(i);
-			if (rse.max < fx)
-				continue; // rse is below [fx,tx]
-			if (rse.min > tx)
-				return;   // rse is above [fx,tx]
-			if (fx <= rse.min) { 
-				if (rse.max <= tx) { // rse is inside [fx,tx]
-					ranges.removeElementAt(i--); // remove element, adjust index for iterating reduced set
-					continue;
-				}
-				rse.min = tx+1; // else, rse and [fx,tx] overlap, truncate intersection from rse from below
+		// first range that is not below [fx,tx]
+		int i = firstNotBelow(fx) ;
+		if (i == size || mins[i] > tx)
+			return; // no overlap
+		if (mins[i] < fx) {
+			if (maxes[i] > tx) {
+				// [fx,tx] lies inside the current interval
+				// split interval into two: [min,fx-1] and [tx+1,max]
+				insert(i, mins[i], fx-1) ;
+				mins[i+1] = tx+1 ;
 				return;
 			}
-			if (fx <= rse.max && tx >= rse.max) { // rse.min < fx <= rse.max <= tx
-				rse.max = fx-1; // rse and [fx,tx] overlap, truncate intersection from rse from above
-				continue;
-			}
-			// if all conditions fail, then [fx,tx] lies inside the current interval
-			// split interval into two: [rse.min,fx-1] and [tx+1,rse.max]
-			RangeSetElement nrse = new RangeSetElement(rse.min, fx-1);
-			ranges.insertElementAt(nrse, i);
-			rse.min = tx+1;
-			return;
+			maxes[i] = fx-1; // rse.min < fx <= rse.max <= tx, truncate intersection from above
+			i++ ;
 		}
+		// ranges i..j-1 are inside [fx,tx], range j, if any, ends above tx
+		int j = i ;
+		while (j < size && maxes[j] <= tx)
+			j++ ;
+		if (j < size && mins[j] <= tx)
+			mins[j] = tx+1; // range and [fx,tx] overlap, truncate intersection from below
+		if (j > i) { // remove ranges that are inside [fx,tx]
+			System.arraycopy(mins, j, mins, i, size-j) ;
+			System.arraycopy(maxes, j, maxes, i, size-j) ;
+			size -= j-i ;
+		}
+	}
+	/**
+	 * Tells if there is at least one interval that intersects with [min,max].
+	 * The intersection with the first such interval is available with getIntersectionMin and getIntersectionMax
+	 * until the next call of this method. The method does not allocate memory.
+	 * @param min lower bound of interval
+	 * @param max upper bound of interval
+	 * @return true if there is an intersection, false otherwise
+	 */
+	public boolean intersect(int min, int max) {
+		final int i = firstNotBelow(min) ;
+		if (i == size || mins[i] > max) // all intervals are below or the next one is above
+			return false;
+		intersectionMin = Math.max(min, mins[i]) ;
+		intersectionMax = Math.min(max, maxes[i]) ;
+		return true;
+	}
+	/**
+	 * @return lower bound of the intersection found by the last successful call of intersect(min,max)
+	 */
+	public int getIntersectionMin() {
+		return intersectionMin ;
+	}
+	/**
+	 * @return upper bound of the intersection found by the last successful call of intersect(min,max)
+	 */
+	public int getIntersectionMax() {
+		return intersectionMax ;
 	}
 	/**
-	 * Tells if there is at least one interval that intersects with [p.x,p.y]. It modifies attributes of p in case of an intersection. 
+	 * Tells if there is at least one interval that intersects with [p.x,p.y]. It modifies attributes of p in case of an intersection.
 	 * A point is used as a quick hack to communicate two integers and being able to return modified values in a boolean method.
 	 * @param p describes interval [p.x,p.y], its entries are modified to represent the intersection if there is one
 	 * @return true if there is an intersection, false otherwise
 	 */
 	public boolean intersect(int[] p) {
-		// "p" isn't (strictly speaking) a point, but I need to return two
-		// values here, and can't find a nicer way to do it.
-		int min = p[0];
-		int max = p[1];
-		// assume that set is sorted in increasing order
-		for (int i = 0; i != ranges.size(); i++) {
-			RangeSetElement rse = (RangeSetElement) ranges.elementAt(i);
-			if (rse.max < min) // current interval is below
-				continue; // this is a way to actually iterate over elements and skip
-			// so rse.max > min
-			if (rse.min > max) // current interval is above
-				return false;
-			// at this point: min < rse.max and rse.min < max 
-			if (rse.min > min) // current interval overlaps
-				p[0] = rse.min;
-			if (rse.max < max) // current interval is contained
-				p[1] = rse.max;
-			return true;
+		if (!intersect(p[0], p[1]))
+			return false;
+		p[0] = intersectionMin;
+		p[1] = intersectionMax;
+		return true;
+	}
+	/**
+	 * Finds the first interval whose upper bound is not below the given value by binary search.
+	 * Upper bounds are sorted as intervals are disjoint and sorted.
+	 * @param value to compare upper bounds with
+	 * @return index of interval, size if there is none
+	 */
+	private int firstNotBelow(int value) {
+		int lo = 0 ;
+		int hi = size ;
+		while (lo < hi) {
+			final int mid = (lo + hi) >>> 1 ;
+			if (maxes[mid] < value)
+				lo = mid + 1 ;
+			else
+				hi = mid ;
 		}
-		return false;
+		return lo ;
 	}
 	/**
-	 * Internal class to hold a pair of two elements
+	 * Inserts a new interval at the given position, grows arrays as needed
 	 */
-	class RangeSetElement {
-		public int min, max;
-
-		/**
-		 * Constructor
-		 * @param mn
-		 * @param mx
-		 */
-		RangeSetElement(int mn, int mx) {
-			min = mn;
-			max = mx;
+	private void insert(int i, int mn, int mx) {
+		if (size == mins.length) {
+			mins = Arrays.copyOf(mins, 2*size) ;
+			maxes = Arrays.copyOf(maxes, 2*size) ;
 		}
+		System.arraycopy(mins, i, mins, i+1, size-i) ;
+		System.arraycopy(maxes, i, maxes, i+1, size-i) ;
+		mins[i] = mn ;
+		maxes[i] = mx ;
+		size++ ;
 	}
 }
@@ -198,4 +198,10 @@ public interface Robot {
 	 */
 	boolean hasDistanceSensor(Direction direction) ;
 	MazeController getController();
+	/**
+	 * Provides the clock that drivers use to pause between operations.
+	 * A robot on screen waits in real time, a simulated robot need not wait at all.
+	 * @return clock of this robot
+	 */
+	Clock getClock();
 }
@@ -0,0 +1,257 @@
+package falstad;
+
+import generation.CardinalDirection;
+import generation.MazeConfiguration;
+
+/**
+ * Implements Robot directly on top of a maze configuration, without a MazeController and without graphics.
+ * It is meant to evaluate robot drivers on many mazes: operations only update the position,
+ * direction, battery and odometer of this robot, and the clock does not wait by default.
+ *
+ * Energy costs are the same as for the BasicRobot such that results are comparable:
+ * a rotation by 90 degrees costs 3, turning around costs 6, a step forward costs 5,
+ * each sensor operation costs 1. As for the BasicRobot, a step forward senses the distance
+ * in forward direction first and canSeeExit costs 1 in addition to its sensor operation.
+ *
+ * The robot starts at the starting position of the maze and faces east as in the MazeController.
+ * It leaves the maze if it moves forward at the exit in the direction of the opening,
+ * see hasLeftMaze, and does not move any further afterwards.
+ *
+ * Collaborators: MazeConfiguration, RobotDriver, Clock
+ */
+public class SimulatedRobot implements Robot {
+
+	static final float INITIAL_BATTERY_LEVEL = 3000 ;
+	static final float ENERGY_ROTATE = 3 ;
+	static final float ENERGY_STEP = 5 ;
+	static final float ENERGY_SENSE = 1 ;
+
+	private MazeController controller ; // null if operated without a controller
+	private MazeConfiguration maze ;
+	private final Clock clock ;
+	private int x ; // current position
+	private int y ;
+	private CardinalDirection currentDirection ;
+	private float batteryLevel ;
+	private int odometerReading ;
+	private boolean stopped ;
+	private boolean leftMaze ;
+
+	/**
+	 * Constructor for a robot that is operated without waiting
+	 * @param maze to operate in
+	 * @precondition null != maze
+	 */
+	public SimulatedRobot(MazeConfiguration maze) {
+		this(maze, Clock.NONE) ;
+	}
+	/**
+	 * Constructor
+	 * @param maze to operate in, null if setMaze provides it later
+	 * @param clock for drivers to wait between operations
+	 * @precondition null != clock
+	 */
+	public SimulatedRobot(MazeConfiguration maze, Clock clock) {
+		this.clock = clock ;
+		if (null != maze)
+			reset(maze) ;
+	}
+	/**
+	 * Puts the robot to the starting position of the given maze with a full battery
+	 * @param maze to operate in
+	 */
+	public void reset(MazeConfiguration maze) {
+		this.maze = maze ;
+		final int[] start = maze.getStartingPosition() ;
+		x = start[0] ;
+		y = start[1] ;
+		currentDirection = CardinalDirection.East ;
+		batteryLevel = INITIAL_BATTERY_LEVEL ;
+		odometerReading = 0 ;
+		stopped = false ;
+		leftMaze = false ;
+	}
+
+	@Override
+	public void rotate(Turn turn) {
+		if (stopped)
+			return ;
+		final float energy = (Turn.AROUND == turn) ? 2*ENERGY_ROTATE : ENERGY_ROTATE ;
+		if (batteryLevel < energy) {
+			stopped = true ;
+			return ;
+		}
+		batteryLevel -= energy ;
+		currentDirection = getDirection(turn) ;
+	}
+	/**
+	 * Computes the direction after a turn
+	 */
+	private CardinalDirection getDirection(Turn turn) {
+		switch (turn) {
+		case LEFT:
+			return currentDirection.rotateCounterClockwise() ;
+		case RIGHT:
+			return currentDirection.rotateClockwise() ;
+		case AROUND:
+			return currentDirection.oppositeDirection() ;
+		default:
+			throw new RuntimeException("Inconsistent enum type") ;
+		}
+	}
+
+	@Override
+	public void move(int distance, boolean manual) {
+		assert distance >= 0 : "SimulatedRobot.move: negative distance " + distance ;
+		if (manual)
+			distance = Math.min(distance, 1) ; // manual mode only does one move at a time
+		while (distance > 0 && !stopped && !leftMaze) {
+			if (batteryLevel < ENERGY_STEP) {
+				stopped = true ;
+				return ;
+			}
+			if (0 == distanceToObstacle(Direction.FORWARD)) {
+				// a driver must not run into a wall, a user may
+				if (!manual)
+					stopped = true ;
+				return ;
+			}
+			batteryLevel -= ENERGY_STEP ;
+			odometerReading++ ;
+			distance-- ;
+			final int nx = x + currentDirection.dx() ;
+			final int ny = y + currentDirection.dy() ;
+			if (maze.isValidPosition(nx, ny)) {
+				x = nx ;
+				y = ny ;
+			}
+			else
+				leftMaze = true ; // through the exit, position remains at the exit
+		}
+	}
+
+	@Override
+	public int[] getCurrentPosition() throws Exception {
+		if (leftMaze)
+			throw new Exception("SimulatedRobot: robot has left the maze") ;
+		return new int[] {x, y} ;
+	}
+	/**
+	 * Operates on the maze configuration of the given controller
+	 * and starts over at its starting position.
+	 */
+	@Override
+	public void setMaze(MazeController maze) {
+		controller = maze ;
+		reset(maze.getMazeConfiguration()) ;
+	}
+	@Override
+	public MazeController getController() {
+		return controller ;
+	}
+	@Override
+	public Clock getClock() {
+		return clock ;
+	}
+
+	@Override
+	public boolean isAtExit() {
+		return maze.getMazedists().isExitPosition(x, y) ;
+	}
+	/**
+	 * Tells if the robot moved through the exit out of the maze, i.e., if a driver succeeded.
+	 * @return true if the robot has left the maze, false otherwise
+	 */
+	public boolean hasLeftMaze() {
+		return leftMaze ;
+	}
+
+	@Override
+	public boolean canSeeExit(Direction direction) throws UnsupportedOperationException {
+		batteryLevel -= ENERGY_SENSE ;
+		return Integer.MAX_VALUE == distanceToObstacle(direction) ;
+	}
+	@Override
+	public boolean isInsideRoom() throws UnsupportedOperationException {
+		return maze.getMazecells().isInRoom(x, y) ;
+	}
+	@Override
+	public boolean hasRoomSensor() {
+		return true ;
+	}
+	@Override
+	public int distanceToObstacle(Direction direction) throws UnsupportedOperationException {
+		batteryLevel -= ENERGY_SENSE ;
+		if (batteryLevel <= 0) {
+			stopped = true ;
+			return 0 ;
+		}
+		CardinalDirection cd ;
+		switch (direction) {
+		case FORWARD:
+			cd = currentDirection ;
+			break ;
+		case BACKWARD:
+			cd = currentDirection.oppositeDirection() ;
+			break ;
+		case LEFT:
+			cd = currentDirection.rotateCounterClockwise() ;
+			break ;
+		case RIGHT:
+			cd = currentDirection.rotateClockwise() ;
+			break ;
+		default:
+			throw new RuntimeException("Inconsistent enum type") ;
+		}
+		// follow the line of sight till a wall or the outside of the maze, i.e., the exit
+		int px = x ;
+		int py = y ;
+		int distance = 0 ;
+		while (!maze.hasWall(px, py, cd)) {
+			px += cd.dx() ;
+			py += cd.dy() ;
+			if (!maze.isValidPosition(px, py))
+				return Integer.MAX_VALUE ;
+			distance++ ;
+		}
+		return distance ;
+	}
+	@Override
+	public boolean hasDistanceSensor(Direction direction) {
+		return true ;
+	}
+
+	/* Basic set/get functions */
+	@Override
+	public CardinalDirection getCurrentDirection() {
+		return currentDirection ;
+	}
+	@Override
+	public float getBatteryLevel() {
+		return batteryLevel ;
+	}
+	@Override
+	public void setBatteryLevel(float level) {
+		batteryLevel = level ;
+	}
+	@Override
+	public int getOdometerReading() {
+		return odometerReading ;
+	}
+	@Override
+	public void resetOdometer() {
+		odometerReading = 0 ;
+	}
+	@Override
+	public float getEnergyForFullRotation() {
+		return 4*ENERGY_ROTATE ;
+	}
+	@Override
+	public float getEnergyForStepForward() {
+		return ENERGY_STEP ;
+	}
+	@Override
+	public boolean hasStopped() {
+		return stopped ;
+	}
+}
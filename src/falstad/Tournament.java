@@ -0,0 +1,453 @@
+package falstad;
+
+import generation.BatchMazeFactory;
+import generation.MazeConfiguration;
+import generation.Order;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+
+/**
+ * This class compares robot drivers on many mazes without the GUI.
+ * A tournament runs every combination of builder algorithm, skill level, seed and driver as an episode:
+ * mazes are generated by a BatchMazeFactory, each driver operates a SimulatedRobot in a maze of its own
+ * on a work-stealing pool, all mazes and episodes run in parallel.
+ *
+ * Results are available per episode and as a summary per builder, skill level and driver
+ * with success rate, average path length and energy consumption as reported by the driver,
+ * and percentiles of the time per episode. Episodes can be written as CSV, summaries as JSON.
+ *
+ * Usage from the command line, all arguments are optional:
+ * java falstad.Tournament -builders DFS,Prim -skills 0-3 -seeds 1-100 -drivers Wizard,WallFollower,Pledge
+ *   -threads 4 -csv episodes.csv -json summary.json
+ *
+ * Collaborators: BatchMazeFactory, SimulatedRobot, RobotDriver
+ */
+public class Tournament {
+	private final List<Order.Builder> builders ;
+	private final int[] skills ;
+	private final long[] seeds ;
+	private final int threads ;
+	// drivers by name, a driver is created for each episode as drivers keep state
+	private final Map<String, Supplier<RobotDriver>> drivers = new LinkedHashMap<String, Supplier<RobotDriver>>() ;
+
+	/**
+	 * Constructor, add drivers with addDriver before calling run.
+	 * @param builders algorithms to generate mazes with
+	 * @param skills levels of mazes
+	 * @param seeds for the random number streams of the maze builders, one maze per seed
+	 * @param threads number of threads to generate mazes and to run episodes with
+	 * @precondition 0 < threads
+	 */
+	public Tournament(List<Order.Builder> builders, int[] skills, long[] seeds, int threads) {
+		this.builders = new ArrayList<Order.Builder>(builders) ;
+		this.skills = skills.clone() ;
+		this.seeds = seeds.clone() ;
+		this.threads = threads ;
+	}
+	/**
+	 * Adds a driver to the tournament
+	 * @param name of driver in results
+	 * @param driver creates a new driver for each episode
+	 */
+	public void addDriver(String name, Supplier<RobotDriver> driver) {
+		drivers.put(name, driver) ;
+	}
+	/**
+	 * Adds one of the drivers that come with the game
+	 * @param name is Wizard, WallFollower or Pledge
+	 */
+	public void addDriver(String name) {
+		switch (name) {
+		case "Wizard":
+			addDriver(name, Wizard::new) ;
+			break ;
+		case "WallFollower":
+			addDriver(name, WallFollower::new) ;
+			break ;
+		case "Pledge":
+			addDriver(name, Pledge::new) ;
+			break ;
+		default:
+			throw new IllegalArgumentException("Tournament: unknown driver " + name) ;
+		}
+	}
+
+	/////////////////////////////// Running episodes ///////////////////////////////////
+	/**
+	 * Runs all episodes and waits for their results.
+	 * A maze that fails to generate is reported and skipped along with its episodes.
+	 * @return results of all episodes in the order of builders, skill levels, seeds and drivers
+	 * @throws InterruptedException if interrupted while waiting for mazes
+	 */
+	public List<Episode> run() throws InterruptedException {
+		BatchMazeFactory factory = new BatchMazeFactory(threads, 4*threads) ;
+		ForkJoinPool pool = new ForkJoinPool(threads) ;
+		List<CompletableFuture<Episode>> futures = new ArrayList<CompletableFuture<Episode>>() ;
+		try {
+			for (Order.Builder builder : builders) {
+				for (int skill : skills) {
+					for (long seed : seeds) {
+						// waits if the factory is at capacity, episodes of earlier mazes run in the mean time
+						CompletableFuture<MazeConfiguration> maze = factory.submit(new TournamentOrder(builder, skill), seed)
+								.thenApply(Tournament::prepare) ;
+						for (Map.Entry<String, Supplier<RobotDriver>> driver : drivers.entrySet()) {
+							final Episode episode = new Episode(builder, skill, seed, driver.getKey()) ;
+							final Supplier<RobotDriver> supplier = driver.getValue() ;
+							futures.add(maze.thenApplyAsync(m -> episode.run(m, supplier.get()), pool)) ;
+						}
+					}
+				}
+			}
+			List<Episode> result = new ArrayList<Episode>(futures.size()) ;
+			for (CompletableFuture<Episode> future : futures) {
+				try {
+					result.add(future.join()) ;
+				}
+				catch (CompletionException e) {
+					System.out.println("Tournament: skipping episode: " + e.getCause()) ;
+				}
+			}
+			return result ;
+		}
+		finally {
+			factory.shutdown() ;
+			pool.shutdown() ;
+		}
+	}
+	/**
+	 * Computes lazily determined positions before the maze is shared by episodes on several threads
+	 */
+	private static MazeConfiguration prepare(MazeConfiguration maze) {
+		maze.getMazedists().getStartPosition() ;
+		maze.getMazedists().getExitPosition() ;
+		return maze ;
+	}
+
+	/**
+	 * Result of a single driver in a single maze
+	 */
+	public static class Episode {
+		private final Order.Builder builder ;
+		private final int skill ;
+		private final long seed ;
+		private final String driver ;
+		private boolean success ; // robot left the maze through the exit
+		private int pathLength ;
+		private float energy ;
+		private long nanos ; // time to drive to the exit
+
+		Episode(Order.Builder builder, int skill, long seed, String driver) {
+			this.builder = builder ;
+			this.skill = skill ;
+			this.seed = seed ;
+			this.driver = driver ;
+		}
+		/**
+		 * Operates a new robot in the given maze with the given driver, records results
+		 * @return this episode
+		 */
+		Episode run(MazeConfiguration maze, RobotDriver d) {
+			SimulatedRobot robot = new SimulatedRobot(maze) ;
+			d.setRobot(robot) ;
+			d.setDimensions(maze.getWidth(), maze.getHeight()) ;
+			d.setDistance(maze.getMazedists()) ;
+			final long start = System.nanoTime() ;
+			try {
+				d.drive2Exit() ;
+			}
+			catch (Exception e) { // counts as a failure, the robot did not leave the maze
+				System.out.println("Tournament: " + driver + " failed: " + e) ;
+			}
+			nanos = System.nanoTime() - start ;
+			success = robot.hasLeftMaze() ;
+			pathLength = d.getPathLength() ;
+			energy = d.getEnergyConsumption() ;
+			return this ;
+		}
+		public Order.Builder getBuilder() {
+			return builder ;
+		}
+		public int getSkillLevel() {
+			return skill ;
+		}
+		public long getSeed() {
+			return seed ;
+		}
+		public String getDriver() {
+			return driver ;
+		}
+		public boolean isSuccess() {
+			return success ;
+		}
+		public int getPathLength() {
+			return pathLength ;
+		}
+		public float getEnergyConsumption() {
+			return energy ;
+		}
+		public long getNanos() {
+			return nanos ;
+		}
+	}
+
+	/////////////////////////////// Statistics ///////////////////////////////////
+	/**
+	 * Aggregated results of the episodes of a driver for a builder algorithm and skill level
+	 */
+	public static class Summary {
+		private final Order.Builder builder ;
+		private final int skill ;
+		private final String driver ;
+		private int episodes ;
+		private int successes ;
+		private long pathLength ; // sum over all episodes
+		private double energy ; // sum over all episodes
+		private long[] nanos = new long[16] ; // times of episodes, sorted by sort
+		private boolean sorted ;
+
+		Summary(Order.Builder builder, int skill, String driver) {
+			this.builder = builder ;
+			this.skill = skill ;
+			this.driver = driver ;
+		}
+		void add(Episode episode) {
+			if (episodes == nanos.length)
+				nanos = Arrays.copyOf(nanos, 2*episodes) ;
+			nanos[episodes++] = episode.getNanos() ;
+			sorted = false ;
+			if (episode.isSuccess())
+				successes++ ;
+			pathLength += episode.getPathLength() ;
+			energy += episode.getEnergyConsumption() ;
+		}
+		public Order.Builder getBuilder() {
+			return builder ;
+		}
+		public int getSkillLevel() {
+			return skill ;
+		}
+		public String getDriver() {
+			return driver ;
+		}
+		public int getEpisodes() {
+			return episodes ;
+		}
+		/**
+		 * @return share of episodes where the robot left the maze, between 0 and 1
+		 */
+		public double getSuccessRate() {
+			return (0 == episodes) ? 0 : (double) successes / episodes ;
+		}
+		public double getAveragePathLength() {
+			return (0 == episodes) ? 0 : (double) pathLength / episodes ;
+		}
+		public double getAverageEnergyConsumption() {
+			return (0 == episodes) ? 0 : energy / episodes ;
+		}
+		/**
+		 * Gives a percentile of the time per episode with the nearest rank method
+		 * @param p percentile, e.g. 0.95
+		 * @return time in milliseconds, 0 if there are no episodes
+		 * @precondition 0 < p <= 1
+		 */
+		public double getPercentileMillis(double p) {
+			if (0 == episodes)
+				return 0 ;
+			if (!sorted) {
+				Arrays.sort(nanos, 0, episodes) ;
+				sorted = true ;
+			}
+			final int rank = (int) Math.ceil(p*episodes) ;
+			return nanos[Math.max(rank, 1) - 1] / 1e6 ;
+		}
+		@Override
+		public String toString() {
+			return String.format("%s skill %d %s: %d episodes, %.1f%% success, %.1f steps, %.1f energy, p50 %.3f ms, p95 %.3f ms, p99 %.3f ms",
+					builder, skill, driver, episodes, 100*getSuccessRate(), getAveragePathLength(), getAverageEnergyConsumption(),
+					getPercentileMillis(0.50), getPercentileMillis(0.95), getPercentileMillis(0.99)) ;
+		}
+	}
+	/**
+	 * Aggregates episodes per builder algorithm, skill level and driver
+	 * @param episodes to aggregate
+	 * @return summaries in the order of the first episode for each combination
+	 */
+	public static Collection<Summary> summarize(List<Episode> episodes) {
+		Map<String, Summary> result = new LinkedHashMap<String, Summary>() ;
+		for (Episode e : episodes) {
+			result.computeIfAbsent(e.getBuilder() + "/" + e.getSkillLevel() + "/" + e.getDriver(),
+					k -> new Summary(e.getBuilder(), e.getSkillLevel(), e.getDriver())).add(e) ;
+		}
+		return result.values() ;
+	}
+
+	/////////////////////////////// Output ///////////////////////////////////
+	/**
+	 * Writes one line per episode with a header line as comma separated values,
+	 * numbers are formatted independent of the locale
+	 * @param episodes to write
+	 * @param out to write to
+	 */
+	public static void writeCsv(List<Episode> episodes, Writer out) {
+		PrintWriter pw = new PrintWriter(out) ;
+		pw.println("builder,skill,seed,driver,success,pathLength,energy,millis") ;
+		for (Episode e : episodes) {
+			pw.printf(Locale.ROOT, "%s,%d,%d,%s,%b,%d,%.1f,%.3f%n", e.getBuilder(), e.getSkillLevel(), e.getSeed(), e.getDriver(),
+					e.isSuccess(), e.getPathLength(), e.getEnergyConsumption(), e.getNanos() / 1e6) ;
+		}
+		pw.flush() ;
+	}
+	/**
+	 * Writes summaries as a JSON array of objects
+	 * @param summaries to write
+	 * @param out to write to
+	 */
+	public static void writeJson(Collection<Summary> summaries, Writer out) {
+		PrintWriter pw = new PrintWriter(out) ;
+		pw.println("[") ;
+		int i = 0 ;
+		for (Summary s : summaries) {
+			pw.printf(Locale.ROOT, "  {\"builder\": \"%s\", \"skill\": %d, \"driver\": \"%s\", \"episodes\": %d, \"successRate\": %.4f, "
+					+ "\"pathLength\": %.2f, \"energy\": %.2f, \"p50Millis\": %.4f, \"p95Millis\": %.4f, \"p99Millis\": %.4f}%s%n",
+					s.getBuilder(), s.getSkillLevel(), escape(s.getDriver()), s.getEpisodes(), s.getSuccessRate(),
+					s.getAveragePathLength(), s.getAverageEnergyConsumption(),
+					s.getPercentileMillis(0.50), s.getPercentileMillis(0.95), s.getPercentileMillis(0.99),
+					(++i < summaries.size()) ? "," : "") ;
+		}
+		pw.println("]") ;
+		pw.flush() ;
+	}
+	/**
+	 * Escapes quotes and backslashes for a JSON string
+	 */
+	private static String escape(String str) {
+		return str.replace("\\", "\\\\").replace("\"", "\\\"") ;
+	}
+
+	/////////////////////////////// Command line ///////////////////////////////////
+	/**
+	 * Runs a tournament as specified by the arguments, see class comment,
+	 * prints summaries and writes results to files if requested.
+	 */
+	public static void main(String[] args) throws InterruptedException, IOException {
+		String builderArg = "DFS,Prim,Kruskal,Eller" ;
+		String skillArg = "0-3" ;
+		String seedArg = "1-10" ;
+		String driverArg = "Wizard,WallFollower,Pledge" ;
+		int threads = Runtime.getRuntime().availableProcessors() ;
+		String csv = null ;
+		String json = null ;
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			switch (args[i]) {
+			case "-builders": builderArg = args[i+1] ; break ;
+			case "-skills": skillArg = args[i+1] ; break ;
+			case "-seeds": seedArg = args[i+1] ; break ;
+			case "-drivers": driverArg = args[i+1] ; break ;
+			case "-threads": threads = Integer.parseInt(args[i+1]) ; break ;
+			case "-csv": csv = args[i+1] ; break ;
+			case "-json": json = args[i+1] ; break ;
+			default:
+				throw new IllegalArgumentException("Tournament: unknown argument " + args[i]) ;
+			}
+		}
+		List<Order.Builder> builders = new ArrayList<Order.Builder>() ;
+		for (String b : builderArg.split(","))
+			builders.add(Order.Builder.valueOf(b.trim())) ;
+		final long[] seeds = parseRanges(seedArg) ;
+		final long[] skillValues = parseRanges(skillArg) ;
+		final int[] skills = new int[skillValues.length] ;
+		for (int i = 0; i < skills.length; i++)
+			skills[i] = (int) skillValues[i] ;
+		Tournament tournament = new Tournament(builders, skills, seeds, threads) ;
+		for (String d : driverArg.split(","))
+			tournament.addDriver(d.trim()) ;
+
+		final long start = System.nanoTime() ;
+		List<Episode> episodes = tournament.run() ;
+		final double seconds = (System.nanoTime() - start) / 1e9 ;
+		Collection<Summary> summaries = summarize(episodes) ;
+		for (Summary s : summaries)
+			System.out.println(s) ;
+		System.out.printf("Tournament: %d episodes in %.2f s with %d threads%n", episodes.size(), seconds, threads) ;
+		if (null != csv) {
+			try (Writer out = new FileWriter(csv)) {
+				writeCsv(episodes, out) ;
+			}
+		}
+		if (null != json) {
+			try (Writer out = new FileWriter(json)) {
+				writeJson(summaries, out) ;
+			}
+		}
+	}
+	/**
+	 * Parses a list of values and ranges such as 1-10,20,30-32
+	 * @param str list of values and ranges, ranges include both bounds
+	 * @return values in the given order
+	 */
+	static long[] parseRanges(String str) {
+		ArrayList<Long> result = new ArrayList<Long>() ;
+		for (String part : str.split(",")) {
+			final int dash = part.indexOf('-', 1) ; // a leading minus is a sign
+			if (dash < 0) {
+				result.add(Long.parseLong(part.trim())) ;
+				continue ;
+			}
+			final long from = Long.parseLong(part.substring(0, dash).trim()) ;
+			final long to = Long.parseLong(part.substring(dash+1).trim()) ;
+			for (long v = from; v <= to; v++)
+				result.add(v) ;
+		}
+		long[] values = new long[result.size()] ;
+		for (int i = 0; i < values.length; i++)
+			values[i] = result.get(i) ;
+		return values ;
+	}
+
+	/**
+	 * Order for a maze of the tournament, delivery goes to the future of the BatchMazeFactory
+	 */
+	private static class TournamentOrder implements Order {
+		private final Builder builder ;
+		private final int skill ;
+
+		TournamentOrder(Builder builder, int skill) {
+			this.builder = builder ;
+			this.skill = skill ;
+		}
+		@Override
+		public int getSkillLevel() {
+			return skill ;
+		}
+		@Override
+		public Builder getBuilder() {
+			return builder ;
+		}
+		@Override
+		public boolean isPerfect() {
+			return false ;
+		}
+		@Override
+		public void deliver(MazeConfiguration mazeConfig) {
+			// nothing to do, see BatchMazeFactory.submit
+		}
+		@Override
+		public void updateProgress(int percentage) {
+			// nothing to do
+		}
+	}
+}
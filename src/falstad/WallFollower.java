@@ -8,13 +8,14 @@ import generation.Distance;
  * WallFollower driver clings to the wall on the left hand side until it reaches the exit
  * Can only sense front and left
  * 
- * Collaborators: MazeController, BasicRobot
+ * Collaborators: Robot, MazeController if the robot is on screen
  * @author scstew
  */
 
 public class WallFollower implements RobotDriver {
 
-	public BasicRobot robot;
+	public Robot robot;
+	float initialBatteryLevel; // battery level when the robot was assigned, for the energy consumption
 	
 	public WallFollower() {	}
 	
@@ -33,31 +34,33 @@ public class WallFollower implements RobotDriver {
 		* 		turn left
 		*/
 		
-		robot.getController().showMaze = true;
-		robot.getController().showSolution = true;
-		robot.getController().mapMode = true;
+		if (null != robot.getController()) { // no map without a screen, e.g. for a SimulatedRobot
+			robot.getController().showMaze = true;
+			robot.getController().showSolution = true;
+			robot.getController().mapMode = true;
+		}
 		
 		//Main movement
 		while (!robot.isAtExit()) {
-			if (robot.getBatteryLevel() > 0) { 
+			if (robot.getBatteryLevel() > 0 && !robot.hasStopped()) { 
 				
 				//If no left wall, turn left and move
 				if (robot.distanceToObstacle(Direction.LEFT) > 0) {
 					robot.rotate(Turn.LEFT);
 					robot.move(1, false);
-					Thread.sleep(50);
+					robot.getClock().sleep(50);
 				}
 				
 				//If only left wall, move 
 				else if(robot.distanceToObstacle(Direction.LEFT) == 0 && robot.distanceToObstacle(Direction.FORWARD) > 0) {
 					robot.move(1, false);
-					Thread.sleep(50);
+					robot.getClock().sleep(50);
 				}
 				
 				//Else both walls, so turn right
 				else {
 					robot.rotate(Turn.RIGHT);
-					Thread.sleep(50);
+					robot.getClock().sleep(50);
 				}
 			}
 			else {
@@ -70,13 +73,13 @@ public class WallFollower implements RobotDriver {
 			//Exit is ahead so move into it
 			if (robot.canSeeExit(Direction.FORWARD)){
 				robot.move(1, false);
-				Thread.sleep(50);
+				robot.getClock().sleep(50);
 			}
 			
 			//At exit but not in front, so keep turning left until it is in front, then move into it
 			else {
 				robot.rotate(Turn.LEFT);
-				Thread.sleep(50);
+				robot.getClock().sleep(50);
 				
 				if (robot.canSeeExit(Direction.FORWARD)){ 
 					robot.move(1, false); 
@@ -85,7 +88,7 @@ public class WallFollower implements RobotDriver {
 				//Missed it, turn again
 				else { 
 					robot.rotate(Turn.LEFT); 
-					Thread.sleep(50); 
+					robot.getClock().sleep(50); 
 					
 					if (robot.canSeeExit(Direction.FORWARD)){ 
 						robot.move(1, false); 
@@ -94,7 +97,7 @@ public class WallFollower implements RobotDriver {
 					//Missed it, turn again
 					else {
 						robot.rotate(Turn.LEFT); robot.move(1, false); 
-						Thread.sleep(50); 
+						robot.getClock().sleep(50); 
 					}
 				}
 			}
@@ -105,7 +108,8 @@ public class WallFollower implements RobotDriver {
 	
 	@Override
 	public void setRobot(Robot r) {
-		robot = (BasicRobot) r;
+		robot = r;
+		initialBatteryLevel = r.getBatteryLevel();
 	}
 
 	
@@ -117,8 +121,12 @@ public class WallFollower implements RobotDriver {
 	public void setDistance(Distance distance) { }
 	
 	@Override
-	public float getEnergyConsumption() { return 0; }
+	public float getEnergyConsumption() {
+		return initialBatteryLevel - robot.getBatteryLevel();
+	}
 
 	@Override
-	public int getPathLength() { return 0; }
+	public int getPathLength() {
+		return robot.getOdometerReading();
+	}
 }
@@ -1,9 +1,8 @@
 package falstad;
 
-import java.util.Arrays;
-
 import falstad.Robot.Direction;
 import falstad.Robot.Turn;
+import generation.CardinalDirection;
 import generation.Distance;
 
 
@@ -11,13 +10,14 @@ import generation.Distance;
  * Wizard driver checks neighboring squares for the shortest distance to exit
  * Moves to the appropriate square and repeats until the game is won
  * 
- * Collaborators: MazeController, BasicRobot
+ * Collaborators: Robot, MazeController if the robot is on screen
  * @author scstew
  */
 
 public class Wizard implements RobotDriver {
 
-	BasicRobot robot;
+	Robot robot;
+	float initialBatteryLevel; // battery level when the robot was assigned, for the energy consumption
 	Distance distances;
 	int width, height;
 	
@@ -26,17 +26,19 @@ public class Wizard implements RobotDriver {
 	@Override
 	public boolean drive2Exit() throws Exception {
 		//Turn on all map features for viewing
-		robot.getController().showMaze = true;
-		robot.getController().showSolution = true;
-		robot.getController().mapMode = true;
+		if (null != robot.getController()) { // no map without a screen, e.g. for a SimulatedRobot
+			robot.getController().showMaze = true;
+			robot.getController().showSolution = true;
+			robot.getController().mapMode = true;
+		}
 		
 		
 		//Main movement
 		while(!robot.isAtExit()) {		
-			if ( (robot.getBatteryLevel() > 0) && !robot.isAtExit() ) {
+			if ( (robot.getBatteryLevel() > 0) && !robot.hasStopped() && !robot.isAtExit() ) {
 					int curX = robot.getCurrentPosition()[0];
 					int curY = robot.getCurrentPosition()[1];
-					int[] curDirection = robot.getCurrentDirection().getDirection();
+					CardinalDirection curDirection = robot.getCurrentDirection();
 					
 					//Call accessory function to fill an array with distances to exit
 					int distanceArray[] = getDistanceArray(curDirection, curX, curY);
@@ -49,44 +51,48 @@ public class Wizard implements RobotDriver {
 						case 0:
 							//Forward best move
 							robot.move(1, false);
-							Thread.sleep(50);
+							robot.getClock().sleep(50);
 							break;
 						case 1:
 							//Right best move
 							robot.rotate(Turn.RIGHT);
 							robot.move(1, false);
-							Thread.sleep(50);
+							robot.getClock().sleep(50);
 							break;
 						case 2:
 							//Left best move
 							robot.rotate(Turn.LEFT);
 							robot.move(1, false);
-							Thread.sleep(50);
+							robot.getClock().sleep(50);
 							break;
 						case 3:				
 							//Back best move
 							robot.rotate(Turn.AROUND);
 							robot.move(1, false);
-							Thread.sleep(50);
+							robot.getClock().sleep(50);
 							break;
 					}
 				}
+			else {
+				//Out of energy or crashed
+				return false;
+			}
 		}
 		
 		//At exit, turn appropriately and drive into it
 		if (robot.canSeeExit(Direction.FORWARD)){
 			robot.move(1, false);
-			Thread.sleep(50);
+			robot.getClock().sleep(50);
 		}
 		else if (robot.canSeeExit(Direction.LEFT)){
 			robot.rotate(Turn.LEFT);
 			robot.move(1, false);
-			Thread.sleep(50);
+			robot.getClock().sleep(50);
 		}
 		else if (robot.canSeeExit(Direction.RIGHT)) {
 			robot.rotate(Turn.RIGHT);
 			robot.move(1, false);
-			Thread.sleep(50);
+			robot.getClock().sleep(50);
 		}
 		return true;
 	}
@@ -99,96 +105,35 @@ public class Wizard implements RobotDriver {
 	 * @param curY
 	 * @return array
 	 */
-	protected int[] getDistanceArray(int[] curDirection, int curX, int curY) {
-		int[] East = {1, 0};
-		int[] West = {-1, 0};
-		int[] North = {0 , -1};
-		int[] South = {0, 1};
-		
-		//Distances initialized to (max-1) to make it arbitrarily large, while avoiding confusion with functions that look for the true max_value
-		int backDist = Integer.MAX_VALUE-1;
-		int leftDist = Integer.MAX_VALUE-1;
-		int rightDist = Integer.MAX_VALUE-1;
-		int forwardDist = Integer.MAX_VALUE-1;
-		Distance distance = robot.getController().getMazeConfiguration().getMazedists();
+	protected int[] getDistanceArray(CardinalDirection curDirection, int curX, int curY) {
+		Distance distance = distances;
 		
 		//Best move needs to be selected relative to the driver's current direction, so we change x/y values appropriately 
-		if (Arrays.equals(curDirection, East)) {
-			//Forward
-			if (curX + East[0] < width){
-				forwardDist = distance.getDistance(curX + East[0], curY + East[1]);
-			}
-			//Right
-			if (curY + North[1] >= 0){
-				rightDist = distance.getDistance(curX + North[0], curY + North[1]);
-			}
-			//Left
-			if (curY + South[1] < height){
-				leftDist = distance.getDistance(curX + South[0], curY + South[1]);
-			}
-			//Back
-			if (curX + West[0] >= 0){
-				backDist = distance.getDistance(curX + West[0], curY + West[1]);
-			}
-		}
-		else if (Arrays.equals(curDirection, West)) {
-			//Forward
-			if (curX + West[0] >= 0){
-				forwardDist = distance.getDistance(curX + West[0], curY + West[1]);
-			}
-			//Right
-			if (curY + South[1] < height){
-				rightDist = distance.getDistance(curX + South[0], curY + South[1]);
-			}
-			//Left
-			if (curY + North[1] >= 0){
-				leftDist = distance.getDistance(curX + North[0], curY + North[1]);
-			}
-			//Back
-			if (curX + East[0] < width){
-				backDist = distance.getDistance(curX + East[0], curY + East[1]);
-			}
-		}
-		else if (Arrays.equals(curDirection, North)) {
-			//Forward
-			if (curY + North[1] >= 0){
-				forwardDist = distance.getDistance(curX + North[0], curY + North[1]);
-			}
-			//Right
-			if (curX + West[0] >= 0){
-				rightDist = distance.getDistance(curX + West[0], curY + West[1]);
-			}
-			//Left
-			if (curX + East[0] < width){
-				leftDist = distance.getDistance(curX + East[0], curY + East[1]);
-			}
-			//Back
-			if (curY + South[1] < height){
-				backDist = distance.getDistance(curX + South[0], curY + South[1]);
-			}
-		}
-		else if (Arrays.equals(curDirection, South)) {
-			//Forward
-			if (curY + South[1] < height){
-				forwardDist = distance.getDistance(curX + South[0], curY + South[1]);
-			}
-			//Right
-			if (curX + East[0] < width){
-				rightDist = distance.getDistance(curX + East[0], curY + East[1]);
-			}
-			//Left
-			if (curX + West[0] >= 0){
-				leftDist = distance.getDistance(curX + West[0], curY + West[1]);
-			}
-			//Back
-			if (curY + North[1] >= 0){
-				backDist = distance.getDistance(curX + North[0], curY + North[1]);
-			}
-		}
+		int forwardDist = getNeighborDistance(distance, curX, curY, curDirection);
+		int rightDist = getNeighborDistance(distance, curX, curY, curDirection.rotateClockwise());
+		int leftDist = getNeighborDistance(distance, curX, curY, curDirection.rotateCounterClockwise());
+		int backDist = getNeighborDistance(distance, curX, curY, curDirection.oppositeDirection());
 		int[] array = {forwardDist, rightDist, leftDist, backDist};
 		return array;
 	}
 	
+	/**
+	 * Accessory function to get the distance value of the neighbor in the given direction
+	 * Distances are initialized to (max-1) to make it arbitrarily large, while avoiding confusion with functions that look for the true max_value
+	 * @param distance
+	 * @param curX
+	 * @param curY
+	 * @param cd direction towards the neighbor
+	 * @return distance of neighbor or (max-1) if the neighbor is outside of the maze
+	 */
+	private int getNeighborDistance(Distance distance, int curX, int curY, CardinalDirection cd) {
+		int x = curX + cd.dx();
+		int y = curY + cd.dy();
+		if (x < 0 || x >= width || y < 0 || y >= height)
+			return Integer.MAX_VALUE-1;
+		return distance.getDistance(x, y);
+	}
+	
 	/**
 	 * Accessory function used to compute next move
 	 * minDist to exit set to infinity, loop through all neighboring cells to find true minimum
@@ -239,7 +184,8 @@ public class Wizard implements RobotDriver {
 	
 	@Override
 	public void setRobot(Robot r) {
-		robot = (BasicRobot) r;
+		robot = r;
+		initialBatteryLevel = r.getBatteryLevel();
 	}
 
 	@Override
@@ -254,10 +200,13 @@ public class Wizard implements RobotDriver {
 	}
 
 	
-	//Make compiler happy
 	@Override
-	public float getEnergyConsumption() { return 0; }
+	public float getEnergyConsumption() {
+		return initialBatteryLevel - robot.getBatteryLevel();
+	}
 
 	@Override
-	public int getPathLength() { return 0; }
+	public int getPathLength() {
+		return robot.getOdometerReading();
+	}
 }			
\ No newline at end of file
@@ -3,6 +3,12 @@ package generation;
 import falstad.Constants;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * This class has the responsibility to obtain the tree of BSP nodes for a given maze.
@@ -21,11 +27,28 @@ public class BSPBuilder {
 	// colchange: reason for randomization unclear, used to determine color of segment 
 	private final int expectedPartiters ; 	// comes from Constants partct array, entry chosen according to skill level
 	// only usage is in updateProgressBar to estimate progress made in the BSP tree construction
-	int partiters = 0 ; // relocated from MazeBuilder attribute partiters here. 
-	private final Order order ; 		// current order
+	final LongAdder partiters = new LongAdder() ; // relocated from MazeBuilder attribute partiters here, subtrees may be built concurrently
+	private final Order order ; 		// current order, null if no progress is reported
+	private long lastProgressUpdate ; 	// time stamp of last progress update in nanoseconds, see System.nanoTime()
+	private int lastPercentage ; 		// percentage communicated with last progress update
+	// minimal time between two progress updates in nanoseconds
+	static final long PROGRESS_INTERVAL = 50_000_000L ;
+	private ForkJoinPool pool = ForkJoinPool.commonPool() ; // builds subtrees and grades partition candidates in parallel, null for sequential operation
+	private Thread owner ; // thread that called generateBSPNodes, an interrupt of this thread cancels the construction
+	private volatile boolean cancelled ; // set once any thread noticed that the owner has been interrupted
+	// minimal number of segments for building the two subtrees of a node in parallel
+	static final int FORK_THRESHOLD = 512 ;
+	// minimal amount of work in segment comparisons for grading candidates in parallel, 
+	// below this the overhead of tasks is larger than the gain
+	static final int PARALLEL_THRESHOLD = 2048 ;
+	// flag to compute each grade with the original code in grade_partition as well 
+	// and to check if both deliver the same value, intended for debugging purposes
+	static boolean verifyGrades = false ;
+	// flag to generate segments with the iterator of Cells as well and to check if both deliver the same segments
+	static boolean verifySegments = false ;
 	/**
 	 * Constructor
-	 * @param order
+	 * @param order receives progress updates, may be null to turn progress reporting off
 	 * @param dists
 	 * @param cells
 	 * @param width
@@ -43,39 +66,47 @@ public class BSPBuilder {
 		this.colchange = colchange ;
 		this.expectedPartiters = expectedPartiters ;
 
-		partiters = 0 ; // counter for keeping track of progress made in BSP calculation, starts at 0
+		lastProgressUpdate = System.nanoTime() - PROGRESS_INTERVAL ; // first update is due right away
+		lastPercentage = -1 ;
 	}
 
 	/**
 	 * Method generates the nodes. In every node, it has two section, left and right. It chooses the segment
 	 * which has the minimum grade value and then split this node into two nodes through this segment.
 	 * If all the segments in one node are partitioned, it will stop to split.
-	 * @param sl
+	 * The left and right lists are pushed on the stack of the table, the table grows by the segments
+	 * that result from splits.
+	 * @param sl table of segments
+	 * @param from first position of the list of segments on the stack of the table
+	 * @param to position after the last one
 	 * @return root node for BSP tree
 	 * @throws InterruptedException 
 	 */
-	private BSPNode genNodes(ArrayList<Seg> sl) throws InterruptedException {
+	private BSPNode genNodes(SegmentTable sl, int from, int to) throws InterruptedException {
 		// if there is no segment with a partition bit set to false, there is nothing else to do and we are at a leaf node
-		if (countNonPartitions(sl) == 0)
-			return new BSPLeaf(sl);
+		if (sl.countNonPartitions(from, to) == 0)
+			return new BSPLeaf(sl.toList(from, to, colchange));
 		// from the ones that have a partition bit set to false, pick a candidate with a low grade
-		Seg pe = findPartitionCandidate(sl);
+		final int pe = findPartitionCandidate(sl, from, to);
 		// work on segment pe
 		// mark pe as partitioned
-		pe.setPartition(true);
-		final int x  = pe.getStartPositionX();
-		final int y  = pe.getStartPositionY();
-		final int dx = pe.getExtensionX();
-		final int dy = pe.getExtensionY();
-		final ArrayList<Seg> lsl = new ArrayList<Seg>();
-		final ArrayList<Seg> rsl = new ArrayList<Seg>();
-		for (int i = 0; i != sl.size(); i++) {
-		    // MEMO: code very similar to Seg.calculateGrade method
-			Seg se = (Seg) sl.get(i);
-			int df1x = se.getStartPositionX() - x;
-			int df1y = se.getStartPositionY() - y;
-			int sendx = se.getEndPositionX();
-			int sendy = se.getEndPositionY();
+		sl.setPartition(pe);
+		final int x  = sl.getStartPositionX(pe);
+		final int y  = sl.getStartPositionY(pe);
+		final int dx = sl.getExtensionX(pe);
+		final int dy = sl.getExtensionY(pe);
+		final int dir = sl.getDir(pe);
+		// left list goes on the stack right away, right list is collected in scratch space and pushed after it
+		final int lfrom = sl.top();
+		final int[] rsl = sl.scratch(to-from);
+		int rcount = 0;
+		for (int i = from; i != to; i++) {
+		    // MEMO: code very similar to SegmentTable.calculateGrade method
+			final int se = sl.id(i);
+			int df1x = sl.getStartPositionX(se) - x;
+			int df1y = sl.getStartPositionY(se) - y;
+			int sendx = sl.getEndPositionX(se);
+			int sendy = sl.getEndPositionY(se);
 			int df2x = sendx - x; 
 			int df2y = sendy - y; 
 			int nx = dy;
@@ -87,136 +118,243 @@ public class BSPBuilder {
 					dot1 = dot2;
 				else if (dot2 != 0) {
 					// we need to split this
-					int spx = se.getStartPositionX();
-					int spy = se.getStartPositionY();
+					int spx = sl.getStartPositionX(se);
+					int spy = sl.getStartPositionY(se);
 					if (dx == 0)
 						spx = x;
 					else
 						spy = y;
-					//Seg sps1 = new Seg(se.x, se.y, spx-se.x, spy-se.y, se.dist, colchange);
-					//Seg sps2 = new Seg(spx, spy, sendx-spx, sendy-spy, se.dist, colchange);
-					Seg sps1 = new Seg(se.getStartPositionX(), se.getStartPositionY(), spx-se.getStartPositionX(), spy-se.getStartPositionY(), se.getDistance(), colchange);
-					Seg sps2 = new Seg(spx, spy, sendx-spx, sendy-spy, se.getDistance(), colchange);
+					final int sps1 = sl.add(sl.getStartPositionX(se), sl.getStartPositionY(se), spx-sl.getStartPositionX(se), 
+							spy-sl.getStartPositionY(se), sl.getDistance(se), sl.getFlags(se));
+					final int sps2 = sl.add(spx, spy, sendx-spx, sendy-spy, sl.getDistance(se), sl.getFlags(se));
 					if (dot1 > 0) {
-						rsl.add(sps1);
-						lsl.add(sps2);
+						rsl[rcount++] = sps1;
+						sl.push(sps2);
 					} else {
-						rsl.add(sps2);
-						lsl.add(sps1);
+						rsl[rcount++] = sps2;
+						sl.push(sps1);
 					}
-					sps1.setPartition(se.isPartition());
-					sps2.setPartition(se.isPartition());
 					continue;
 				}
 			}
 			// decide where to add current segment
-			if (dot1 > 0 || (dot1 == 0 && se.hasSameDirection(pe))) {
-				rsl.add(se);
+			if (dot1 > 0 || (dot1 == 0 && sl.getDir(se) == dir)) {
+				rsl[rcount++] = se;
 				if (dot1 == 0)
-					se.setPartition(true);
-			} else if (dot1 < 0 || (dot1 == 0 && se.hasOppositeDirection(pe))) { 
-				lsl.add(se);
+					sl.setPartition(se);
+			} else if (dot1 < 0 || (dot1 == 0 && sl.getDir(se) == -dir)) { 
+				sl.push(se);
 				if (dot1 == 0)
-					se.setPartition(true);
+					sl.setPartition(se);
 			} else {
 				dbg("error xx 1 "+dot1);
 			}
 		}
-		if (lsl.size() == 0)
-			return new BSPLeaf(rsl);
-		if (rsl.size() == 0)
-			return new BSPLeaf(lsl);
-		return new BSPBranch(x, y, dx, dy, genNodes(lsl), genNodes(rsl)); // recursion on both branches
+		final int lto = sl.top();
+		for (int i = 0; i != rcount; i++)
+			sl.push(rsl[i]);
+		final int rto = sl.top();
+		final BSPNode result;
+		if (lto == lfrom)
+			result = new BSPLeaf(sl.toList(lto, rto, colchange));
+		else if (rto == lto)
+			result = new BSPLeaf(sl.toList(lfrom, lto, colchange));
+		// subtrees work on disjoint sets of segments, so for large sets build the left one in parallel on a copy
+		else if (null != pool && to-from >= FORK_THRESHOLD && ForkJoinTask.getPool() == pool) {
+			NodeTask left = new NodeTask(sl.copy(lfrom, lto), 0, lto-lfrom) ;
+			left.fork() ;
+			BSPNode right = genNodes(sl, lto, rto) ;
+			result = new BSPBranch(x, y, dx, dy, left.join(), right) ;
+		}
+		else
+			result = new BSPBranch(x, y, dx, dy, genNodes(sl, lfrom, lto), genNodes(sl, lto, rto)); // recursion on both branches
+		sl.pop(lfrom); // both lists are done
+		return result;
 	}
-
-    /**
-	 * Counts how many elements in the segment vector have their partition bit set to false
-	 * @param sl all segments
-	 * @return number of segments where the partition flag is not set
+	/**
+	 * Task to build the subtree for a list of segments on the pool.
+	 * An interrupt of the owner is reported as a CancellationException as compute can not throw an InterruptedException.
 	 */
-	private static int countNonPartitions(ArrayList<Seg> sl) {
-		int result = 0 ;
-		for (int i = 0; i != sl.size(); i++)
-		{
-			if (!(sl.get(i)).isPartition())
-				result++;
+	private class NodeTask extends RecursiveTask<BSPNode> {
+		private static final long serialVersionUID = 1L;
+		private final SegmentTable sl ;
+		private final int from ;
+		private final int to ;
+
+		NodeTask(SegmentTable sl, int from, int to) {
+			this.sl = sl ;
+			this.from = from ;
+			this.to = to ;
+		}
+		@Override
+		protected BSPNode compute() {
+			try {
+				return genNodes(sl, from, to) ;
+			} catch (InterruptedException e) {
+				throw new CancellationException("BSPBuilder: construction cancelled") ;
+			}
 		}
-		return result;
 	}
 
 	/**
 	 * It finds the segment which has the minimum grade value.
-	 * @param sl vector of segments
-	 * @return Segment that is best candidate according to grade partition (smallest grade)
+	 * Candidates are collected first and then graded, in parallel on the pool if there is enough work.
+	 * If several candidates have the same minimal grade, the first one in the list is chosen, 
+	 * so the result does not depend on the number of threads.
+	 * @param sl table of segments
+	 * @param from first position of the list of segments on the stack of the table
+	 * @param to position after the last one
+	 * @return row number of segment that is best candidate according to grade partition (smallest grade)
 	 * @throws InterruptedException 
 	 */
-	private Seg findPartitionCandidate(ArrayList<Seg> sl) throws InterruptedException {
-		Seg result = null ;
-		int bestgrade = 5000; // used to compute the minimum of all observed grade values, set to some high initial value
+	private int findPartitionCandidate(SegmentTable sl, int from, int to) throws InterruptedException {
+		final int size = to - from ;
 		final int maxtries = 50; // constant, only used to determine skip
 		// consider a subset of segments proportional to the number of tries, here 50, seems to randomize the access a bit
-		int skip = (sl.size() / maxtries);
+		int skip = (size / maxtries);
 		if (skip == 0)
 			skip = 1;
 		assert (0 < skip) : "Increment for loop must be positive";
-		for (int i = 0; i < sl.size(); i += skip) {
-			Seg element = sl.get(i);
+		final int[] candidates = sl.candidates((size + skip - 1) / skip) ;
+		int n = 0 ;
+		for (int i = from; i < to; i += skip) {
+			final int element = sl.id(i);
 			// skip segments where the partition flag was set
-			if (element.isPartition())
+			if (sl.isPartition(element))
 				continue;
-			// provide feedback for progress bar every 32 iterations
-			partiters++;
-			if ((partiters & 31) == 0) {
-				updateProgressBar(partiters); // side effect: update progress bar
-			}
-			// check grade and keep track of minimum
-			int grade = grade_partition(sl, element);
-			if (grade < bestgrade) {
-				bestgrade = grade;
-				result = element; // determine segment with smallest grade
+			partiters.increment();
+			candidates[n++] = element ;
+		}
+		// check for cancel requests and provide feedback for progress bar once per node
+		checkForInterruption() ;
+		updateProgressBar(); // side effect: update progress bar
+		// grade candidates, calculateGrade samples at most about 100 segments of the list
+		final int[] grades = sl.grades(n) ;
+		final int samples = Math.min(size, 100) ;
+		if (null != pool && pool.getParallelism() > 1 && n > 1 && n*samples >= PARALLEL_THRESHOLD)
+			pool.invoke(new GradeTask(sl, from, to, candidates, grades, 0, n)) ;
+		else
+			gradeCandidates(sl, from, to, candidates, grades, 0, n) ;
+		// keep track of minimum, strict comparison picks the first candidate among equal grades
+		int result = -1 ;
+		int bestgrade = 5000; // used to compute the minimum of all observed grade values, set to some high initial value
+		for (int i = 0; i < n; i++) {
+			if (grades[i] < bestgrade) {
+				bestgrade = grades[i];
+				result = candidates[i]; // determine segment with smallest grade
 			}
 		}
 		return result;
 	}
+	/**
+	 * Computes grades[i] for candidates[i] for all i with first <= i < last.
+	 * Grading only reads segments, so it is safe to run for several ranges concurrently.
+	 */
+	private void gradeCandidates(SegmentTable sl, int from, int to, int[] candidates, int[] grades, int first, int last) {
+		for (int i = first; i < last; i++) {
+			grades[i] = sl.calculateGrade(candidates[i], from, to) ;
+			assert (!verifyGrades || grades[i] == grade_partition(sl.toList(from, to, colchange), sl.toSeg(candidates[i], colchange))) 
+				: "BSPBuilder grade calculation on segment table fails" ;
+		}
+	}
+	/**
+	 * Task to grade a range of candidates, splits itself into halves down to a few candidates per task.
+	 */
+	private class GradeTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private static final int MIN_CANDIDATES = 4 ; // candidates graded by a single task
+		private final SegmentTable sl ;
+		private final int from ;
+		private final int to ;
+		private final int[] candidates ;
+		private final int[] grades ;
+		private final int first ;
+		private final int last ;
+
+		GradeTask(SegmentTable sl, int from, int to, int[] candidates, int[] grades, int first, int last) {
+			this.sl = sl ;
+			this.from = from ;
+			this.to = to ;
+			this.candidates = candidates ;
+			this.grades = grades ;
+			this.first = first ;
+			this.last = last ;
+		}
+		@Override
+		protected void compute() {
+			if (last - first <= MIN_CANDIDATES) {
+				gradeCandidates(sl, from, to, candidates, grades, first, last) ;
+				return ;
+			}
+			final int mid = (first + last) >>> 1 ;
+			invokeAll(new GradeTask(sl, from, to, candidates, grades, first, mid), 
+					new GradeTask(sl, from, to, candidates, grades, mid, last)) ;
+		}
+	}
+	/**
+	 * Sets the pool to build subtrees and grade partition candidates with, the default is the common pool.
+	 * The resulting tree does not depend on the pool.
+	 * @param pool to use, null for building the tree on the calling thread only
+	 */
+	public void setGradingPool(ForkJoinPool pool) {
+		this.pool = pool ;
+	}
 
 	/**
-	 * Push information on progress into maze such that UI can update progress bar
-	 * @param partiters
+	 * Checks if the owner thread has been interrupted, i.e. notified to stop.
+	 * On the owner thread the interrupted status is cleared as in MazeBuilder.checkForInterruption,
+	 * so the cancellation is memorized for other threads that work on the same tree.
+	 * @throws InterruptedException if the owner thread has been interrupted
+	 */
+	private void checkForInterruption() throws InterruptedException {
+		if (!cancelled && ((Thread.currentThread() == owner) ? Thread.interrupted() : owner.isInterrupted()))
+			cancelled = true ;
+		if (cancelled)
+			throw new InterruptedException() ;
+	}
+	/**
+	 * Push information on progress into maze such that UI can update progress bar.
+	 * Updates are rate limited by elapsed time, at most one update per PROGRESS_INTERVAL,
+	 * and only sent if the percentage increased. 
+	 * Synchronized as subtrees may be built on several threads.
 	 */
-	private void updateProgressBar(int partiters) throws InterruptedException {
+	private synchronized void updateProgressBar() {
 		// During maze generation, the most time consuming part needs to occasionally update the current screen
-		// 
-		int percentage = partiters*100/expectedPartiters ;
-		if (null != order) {
+		if (null == order)
+			return ;
+		final long now = System.nanoTime() ;
+		if (now - lastProgressUpdate < PROGRESS_INTERVAL)
+			return ;
+		// the expected number of iterations is an estimate, so do not claim completion before delivery
+		final int percentage = (int) Math.min(99, partiters.sum()*100/expectedPartiters) ;
+		if (percentage > lastPercentage) {
 			order.updateProgress(percentage) ;
-			if (percentage < 100) {
-				// give main thread a chance to process keyboard events
-				Thread.currentThread().sleep(10);
-			}
+			lastPercentage = percentage ;
 		}
+		lastProgressUpdate = now ;
 	}
 
 	/**
 	 * Set the partition bit to true for segments on the border and where the direction is 0
 	 * @param sl
 	 */
-	private void setPartitionBitForCertainSegments(ArrayList<Seg> sl) {
+	private void setPartitionBitForCertainSegments(SegmentTable sl, int from, int to) {
 	    // TODO: check if seg just works with width and height or needs map_unit adjustment
 	    //System.out.println("set Partition bit in BSP builder with scaled width and height values");
-		for (Seg se : sl) {
+		for (int i = from; i < to; i++) {
 			//se.updatePartitionIfBorderCase(width, height);
-		    se.updatePartitionIfBorderCase(width*Constants.MAP_UNIT, height*Constants.MAP_UNIT);
+		    sl.updatePartitionIfBorderCase(sl.id(i), width*Constants.MAP_UNIT, height*Constants.MAP_UNIT);
 		}
 	}
 
 
 
 	/**
-	 * Identifies segments of continuous walls on the maze and fills the segment list 
-	 * @return vector of segments
+	 * Identifies segments of continuous walls on the maze and fills the segment table 
+	 * @return table of segments
 	 */
-	private ArrayList<Seg> generateSegments() {
-		ArrayList<Seg> sl = new ArrayList<Seg>();
+	private SegmentTable generateSegments() {
+		SegmentTable sl = new SegmentTable(2*width*height); // a maze has about 1.2 segments per cell, splits add about half of that
 		// this is left over from changes made in a refactoring step
 		// it is an example to show how one can operate the old and the new
 		// version of the code in parallel and test if they deliver same results.
@@ -229,9 +367,14 @@ public class BSPBuilder {
 		generateSegmentsForVerticalWalls(sl);
 		}
 		else {
-		    generateSegmentForHorizontalWallsNew(sl); 
-
-	        generateSegmentsForVerticalWallsNew(sl);
+			generateSegmentsFromWallRuns(sl);
+			if (verifySegments) {
+				// compare with the variant that uses the iterator for segments
+				SegmentTable check = new SegmentTable(sl.size());
+			    generateSegmentForHorizontalWallsNew(check); 
+		        generateSegmentsForVerticalWallsNew(check);
+		        assert (sl.hasSameSegments(check)) : "BSPBuilder segments from wall runs differ from segments of iterator" ;
+			}
 		}
 		// starting positions for segments seem to be chosen such that segments represent top or left walls
 		return sl ;
@@ -242,7 +385,7 @@ public class BSPBuilder {
 	 * @param sl
 	 * @deprecated
 	 */
-	private void generateSegmentsForVerticalWalls(ArrayList<Seg> sl) {
+	private void generateSegmentsForVerticalWalls(SegmentTable sl) {
 		int x;
 		int y;
 		// we search for vertical walls, so for each row
@@ -259,8 +402,8 @@ public class BSPBuilder {
 				// find the end of a segment
 				y = findEndOfVerticalSegment(x, y, CardinalDirection.West);
 				// create segment with (x,starty) being being the actual start position of the segment, y-starty being the positive length
-				sl.add(new Seg(x*Constants.MAP_UNIT, starty*Constants.MAP_UNIT,
-						0, (y-starty)*Constants.MAP_UNIT, dists.getDistance(x, starty), colchange));
+				sl.add(x*Constants.MAP_UNIT, starty*Constants.MAP_UNIT,
+						0, (y-starty)*Constants.MAP_UNIT, dists.getDistance(x, starty));
 			}
 			y = 0;
 			while (y < height) {
@@ -275,8 +418,8 @@ public class BSPBuilder {
 				// create segment with (x+1,y) being being one off in both directions from the last cell in this segment, starty-y being the negative length
 				// since we are looking at right walls, one off in the right direction (x+1) are then cells that have this segment on its left hand side
 				// for some reason the end position is used as a starting position and therefore the length & direction is inverse 
-				sl.add(new Seg((x+1)*Constants.MAP_UNIT, y*Constants.MAP_UNIT,
-						0, (starty-y)*Constants.MAP_UNIT, dists.getDistance(x, starty), colchange));
+				sl.add((x+1)*Constants.MAP_UNIT, y*Constants.MAP_UNIT,
+						0, (starty-y)*Constants.MAP_UNIT, dists.getDistance(x, starty));
 			}
 		}
 	}
@@ -286,7 +429,7 @@ public class BSPBuilder {
      * Identify segments of continuous walls in a vertical direction
      * @param sl
      */
-	   private void generateSegmentsForVerticalWallsNew(ArrayList<Seg> sl) {
+	   private void generateSegmentsForVerticalWallsNew(SegmentTable sl) {
 	        int x;
 	        int y;
 	        Iterator<int[]> it;
@@ -300,8 +443,8 @@ public class BSPBuilder {
 	                y = cur[1];
 	                // create segment with (x,starty) being the actual start position of the segment, 
                     // y-starty being the positive length
-                    sl.add(new Seg(x*Constants.MAP_UNIT, starty*Constants.MAP_UNIT,
-                            0, (y-starty)*Constants.MAP_UNIT, dists.getDistance(x, starty), colchange));
+                    sl.add(x*Constants.MAP_UNIT, starty*Constants.MAP_UNIT,
+                            0, (y-starty)*Constants.MAP_UNIT, dists.getDistance(x, starty));
 	            }
 	            
 	            it = cells.iterator(x, 0, CardinalDirection.East);
@@ -312,8 +455,8 @@ public class BSPBuilder {
                     // create segment with (x+1,y) being being one off in both directions from the last cell in this segment, starty-y being the negative length
                     // since we are looking at right walls, one off in the right direction (x+1) are then cells that have this segment on its left hand side
                     // for some reason the end position is used as a starting position and therefore the length & direction is inverse 
-                    sl.add(new Seg((x+1)*Constants.MAP_UNIT, y*Constants.MAP_UNIT,
-                            0, (starty-y)*Constants.MAP_UNIT, dists.getDistance(x, starty), colchange));
+                    sl.add((x+1)*Constants.MAP_UNIT, y*Constants.MAP_UNIT,
+                            0, (starty-y)*Constants.MAP_UNIT, dists.getDistance(x, starty));
                 }
 	        }
 	    }
@@ -348,7 +491,7 @@ public class BSPBuilder {
 	 * @param sl
 	 * @deprecated
 	 */
-	private void generateSegmentForHorizontalWalls(ArrayList<Seg> sl) {
+	private void generateSegmentForHorizontalWalls(SegmentTable sl) {
 		int x;
 		int y;
 		// we search for horizontal walls, so for each column
@@ -371,8 +514,8 @@ public class BSPBuilder {
 				x = findEndOfHorizontalSegment(x, y, CardinalDirection.North);
 				// create segment with (x,y) being the end positions, startx-x being the negative length
 				// note the (x,y) is not part of the segment
-				sl.add(new Seg(x*Constants.MAP_UNIT, y*Constants.MAP_UNIT,
-						(startx-x)*Constants.MAP_UNIT, 0, dists.getDistance(startx, y), colchange));
+				sl.add(x*Constants.MAP_UNIT, y*Constants.MAP_UNIT,
+						(startx-x)*Constants.MAP_UNIT, 0, dists.getDistance(startx, y));
 			}
 			// second round through rows, same for bottom walls
 			x = 0;
@@ -387,19 +530,49 @@ public class BSPBuilder {
 				x = findEndOfHorizontalSegment(x, y, CardinalDirection.South);
 				// create segment with (startx,y+1) being one below the start position, x-startx being the positive length
 				// so this may represent a bottom wall segment as a top wall segment one below
-				sl.add(new Seg(startx*Constants.MAP_UNIT, (y+1)*Constants.MAP_UNIT,
-						(x-startx)*Constants.MAP_UNIT, 0, dists.getDistance(startx, y), colchange));
+				sl.add(startx*Constants.MAP_UNIT, (y+1)*Constants.MAP_UNIT,
+						(x-startx)*Constants.MAP_UNIT, 0, dists.getDistance(startx, y));
 			}
 		}
 	}
 
+	/**
+	 * Identify segments of continuous walls in horizontal and then in vertical direction, 
+	 * same as generateSegmentForHorizontalWallsNew followed by generateSegmentsForVerticalWallsNew.
+	 * Uses Cells.forEachWallRun, which scans all cells once per direction instead of running an iterator
+	 * for each row and column. The bit sets of the scan are kept in scratch space of the segment table.
+	 * @param sl
+	 */
+	private void generateSegmentsFromWallRuns(final SegmentTable sl) {
+		final int unit = Constants.MAP_UNIT;
+		final Cells.WallRunSink sink = (cd, line, start, end) -> {
+			switch (cd) {
+			case North: // line is y, (end,y) is the end position, start-end the negative length
+				sl.add(end*unit, line*unit, (start-end)*unit, 0, dists.getDistance(start, line));
+				break;
+			case South: // bottom wall represented as a top wall one below
+				sl.add(start*unit, (line+1)*unit, (end-start)*unit, 0, dists.getDistance(start, line));
+				break;
+			case West: // line is x, (x,start) is the start position, end-start the positive length
+				sl.add(line*unit, start*unit, 0, (end-start)*unit, dists.getDistance(line, start));
+				break;
+			case East: // right wall represented as a left wall one to the right, starting at the end position
+				sl.add((line+1)*unit, end*unit, 0, (start-end)*unit, dists.getDistance(line, start));
+				break;
+			}
+		};
+		// one scratch array for the bit sets of both orientations
+		final long[] bits = sl.wallBits(cells.getWallRunScratchLength());
+		cells.forEachWallRun(true, bits, sink);
+		cells.forEachWallRun(false, bits, sink);
+	}
     // new code with iterator
     // status: complete
 	/**
      * Identify segments of continuous walls in a horizontal direction
      * @param sl
      */
-    private void generateSegmentForHorizontalWallsNew(ArrayList<Seg> sl) {
+    private void generateSegmentForHorizontalWallsNew(SegmentTable sl) {
         int x;
         int y;
         Iterator<int[]> it;
@@ -414,8 +587,8 @@ public class BSPBuilder {
                 x = cur[1];
                 // create segment with (x,y) being the end positions, startx-x being the negative length
                 // note the (x,y) is not part of the segment
-                sl.add(new Seg(x*Constants.MAP_UNIT, y*Constants.MAP_UNIT,
-                        (startx-x)*Constants.MAP_UNIT, 0, dists.getDistance(startx, y), colchange));
+                sl.add(x*Constants.MAP_UNIT, y*Constants.MAP_UNIT,
+                        (startx-x)*Constants.MAP_UNIT, 0, dists.getDistance(startx, y));
             }
             // second round through rows, same for bottom walls
             it = cells.iterator(0,y, CardinalDirection.South);
@@ -425,19 +598,20 @@ public class BSPBuilder {
                 x = cur[1];
                 // create segment with (startx,y+1) being one below the start position, x-startx being the positive length
                 // so this may represent a bottom wall segment as a top wall segment one below
-                sl.add(new Seg(startx*Constants.MAP_UNIT, (y+1)*Constants.MAP_UNIT,
-                        (x-startx)*Constants.MAP_UNIT, 0, dists.getDistance(startx, y), colchange));
+                sl.add(startx*Constants.MAP_UNIT, (y+1)*Constants.MAP_UNIT,
+                        (x-startx)*Constants.MAP_UNIT, 0, dists.getDistance(startx, y));
             }
         }
     }
 	/**
-	 * Method called in genNodes to determine the minimum of all such grades. 
+	 * Method used by findPartitionCandidate instead of Seg.calculateGrade if verifyGrades is set.
+	 * It computes the grade with the original code and checks it against Seg.calculateGrade.
 	 * The method is static, i.e. it does not update internal attributes and just calculates the returned value.
 	 * @param sl vector of segments
 	 * @param pe particular segment
 	 * @return undocumented
 	 */
-	private int grade_partition(ArrayList<Seg> sl, Seg pe) {
+	private static int grade_partition(ArrayList<Seg> sl, Seg pe) {
 	    // code relocated to Seg.java
 	    ///* original code
 		// copy attributes of parameter pe
@@ -494,15 +668,31 @@ public class BSPBuilder {
 	 */
 	public BSPNode generateBSPNodes() throws InterruptedException {
 		// determine segments, i.e. walls over multiple cells in a vertical or horizontal direction
-		ArrayList<Seg> seglist = generateSegments();
+		SegmentTable seglist = generateSegments();
+		// the initial list holds all segments in the order they were generated
+		for (int i = 0; i < seglist.size(); i++)
+			seglist.push(i) ;
 
-		setPartitionBitForCertainSegments(seglist); // partition bit true means that those are not considered any further for node generation
+		setPartitionBitForCertainSegments(seglist, 0, seglist.top()); // partition bit true means that those are not considered any further for node generation
 
 		// TODO: check why this is done. It creates a top wall on position (0,0). This may even corrupt a maze and block its exit!
 		Wall wall = new Wall(0, 0, CardinalDirection.North) ;
 		cells.addWall(wall, false);
 
-		return genNodes(seglist); // creates a data structure to quickly search for segments
+		owner = Thread.currentThread() ;
+		BSPNode root ;
+		if (null != pool && pool.getParallelism() > 1) {
+			try {
+				root = pool.invoke(new NodeTask(seglist, 0, seglist.top())) ; // creates a data structure to quickly search for segments
+			} catch (CancellationException e) {
+				Thread.interrupted() ; // clear status as for the sequential construction
+				throw new InterruptedException() ;
+			}
+		}
+		else
+			root = genNodes(seglist, 0, seglist.top()); // creates a data structure to quickly search for segments
+		BSPNode.assignSegmentIds(root) ; // ids do not depend on the order in which subtrees were built
+		return root ;
 	}
 	/**
 	 * Provides the sign of a given integer number
@@ -3,6 +3,8 @@
  */
 package generation;
 
+import java.util.ArrayList;
+
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
@@ -60,6 +62,36 @@ public class BSPNode {
 
 
 
+	/**
+	 * Numbers all segments of the given tree 0,1,2,... in the order of its leaves from left to right.
+	 * The numbering only depends on the shape of the tree, so it is the same for a tree that is 
+	 * built in parallel or read from a file. Ids allow to keep state per session outside of the tree,
+	 * e.g. a BitSet of seen segments, such that a tree can be shared.
+	 * @param root of tree, null for an empty tree
+	 * @return number of segments in tree
+	 */
+	public static int assignSegmentIds(BSPNode root) {
+		int id = 0 ;
+		// depth first without recursion as trees can be deep
+		ArrayList<BSPNode> stack = new ArrayList<BSPNode>() ;
+		if (null != root)
+			stack.add(root) ;
+		while (!stack.isEmpty()) {
+			BSPNode node = stack.remove(stack.size()-1) ;
+			if (node instanceof BSPBranch) {
+				stack.add(((BSPBranch) node).getRightBranch()) ;
+				stack.add(((BSPBranch) node).getLeftBranch()) ;
+			}
+			else if (node instanceof BSPLeaf) {
+				for (Seg seg : ((BSPLeaf) node).getSlist())
+					seg.setId(id++) ;
+			}
+		}
+		return id ;
+	}
+
+
+
 	/**
 	 * Updates internal fields for upper and lower bounds of (x,y) coordinates
 	 * @param x used to update xl and xu
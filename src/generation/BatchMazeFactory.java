@@ -0,0 +1,352 @@
+package generation;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class generates mazes in batches for headless use, e.g. to pre-generate a large number of mazes.
+ * In contrast to the MazeFactory, which takes one order at a time and starts a new thread for it,
+ * this factory queues orders for a fixed pool of worker threads that run maze builders concurrently.
+ *
+ * Each order gets a maze builder of its own with a random number stream of its own,
+ * the seed for this stream can be given with the order to reproduce a maze.
+ * Builders run headless, i.e. an order only receives the final progress update upon delivery.
+ *
+ * The number of orders that are queued or in progress is bounded by the capacity of the factory.
+ * The order method refuses orders if the factory is at capacity, the submit methods wait
+ * till capacity becomes available (backpressure).
+ * Each submitted order is represented by a CompletableFuture that completes with the delivered maze.
+ * Cancelling the future cancels the generation of that particular maze.
+ *
+ * The factory keeps track of its throughput in mazes per second for each combination of builder
+ * algorithm and skill level.
+ */
+public class BatchMazeFactory implements Factory {
+	private final ThreadPoolExecutor executor ; // worker threads that run maze builders
+	private final Semaphore capacity ; // permits for orders that can be queued or in progress at the same time
+	// futures of orders that are queued or in progress
+	private final Map<CompletableFuture<MazeConfiguration>, Boolean> pending = new ConcurrentHashMap<CompletableFuture<MazeConfiguration>, Boolean>() ;
+	private final AtomicLong seeds ; // source of seeds for orders that come without a seed
+	// throughput measurements, key is builder algorithm and skill level, see getKey
+	private final Map<String, Throughput> metrics = new ConcurrentHashMap<String, Throughput>() ;
+
+	//////////////////////// Constructor ////////////////////////////////////////
+	/**
+	 * Constructor for a factory with one worker thread per available processor
+	 * and a capacity of four orders per worker thread.
+	 */
+	public BatchMazeFactory() {
+		this(Runtime.getRuntime().availableProcessors(), 4*Runtime.getRuntime().availableProcessors()) ;
+	}
+	/**
+	 * Constructor
+	 * @param threads number of worker threads
+	 * @param capacity maximum number of orders that are queued or in progress at the same time
+	 * @precondition 0 < threads <= capacity
+	 */
+	public BatchMazeFactory(int threads, int capacity) {
+		if (threads <= 0 || capacity < threads)
+			throw new IllegalArgumentException("BatchMazeFactory: invalid number of threads " + threads + " for capacity " + capacity) ;
+		final AtomicInteger count = new AtomicInteger() ;
+		ThreadFactory threadFactory = new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "BatchMazeFactory-" + count.incrementAndGet()) ;
+				t.setDaemon(true) ; // do not keep the application alive for pending orders
+				return t ;
+			}
+		} ;
+		// the queue does not need a bound of its own as the semaphore limits the number of orders
+		executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), threadFactory) ;
+		this.capacity = new Semaphore(capacity) ;
+		seeds = new AtomicLong(System.nanoTime()) ;
+	}
+
+	//////////////////////// Factory interface //////////////////////////////////
+	/**
+	 * Takes an order if the factory has capacity left, the maze is delivered to the order.
+	 * The order gets a random seed.
+	 * @return true if the order is accepted, false if the factory is at capacity or shut down
+	 */
+	@Override
+	public boolean order(Order order) {
+		if (!capacity.tryAcquire()) {
+			System.out.println("BatchMazeFactory.order: refusing to take order, at capacity");
+			return false ;
+		}
+		try {
+			start(order, nextSeed()) ;
+		}
+		catch (RejectedExecutionException e) {
+			System.out.println("BatchMazeFactory.order: refusing to take order, factory is shut down");
+			return false ;
+		}
+		return true ;
+	}
+	/**
+	 * Cancels all orders that are queued or in progress.
+	 */
+	@Override
+	public void cancel() {
+		for (CompletableFuture<MazeConfiguration> future : pending.keySet())
+			future.cancel(true) ;
+	}
+	/**
+	 * Waits till all orders that are queued or in progress are delivered or cancelled.
+	 */
+	@Override
+	public void waitTillDelivered() {
+		for (CompletableFuture<MazeConfiguration> future : pending.keySet()) {
+			try {
+				future.get() ;
+			} catch (CancellationException | ExecutionException e) {
+				// order did not deliver, nothing to wait for
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt() ;
+				return ;
+			}
+		}
+	}
+
+	//////////////////////// Batch operations ///////////////////////////////////
+	/**
+	 * Submits an order with a random seed, waits for capacity if necessary.
+	 * @param order describes the maze to generate, receives the maze upon delivery
+	 * @return future that completes with the delivered maze
+	 * @throws InterruptedException if interrupted while waiting for capacity
+	 */
+	public CompletableFuture<MazeConfiguration> submit(Order order) throws InterruptedException {
+		return submit(order, nextSeed()) ;
+	}
+	/**
+	 * Submits an order, waits for capacity if necessary.
+	 * The maze is reproducible for a given order and seed.
+	 * @param order describes the maze to generate, receives the maze upon delivery
+	 * @param seed for the random number stream of the maze builder
+	 * @return future that completes with the delivered maze
+	 * @throws InterruptedException if interrupted while waiting for capacity
+	 */
+	public CompletableFuture<MazeConfiguration> submit(Order order, long seed) throws InterruptedException {
+		capacity.acquire() ;
+		return start(order, seed) ;
+	}
+	/**
+	 * Stops accepting orders, cancels orders that are queued or in progress and stops the worker threads.
+	 */
+	public void shutdown() {
+		cancel() ;
+		executor.shutdownNow() ;
+	}
+	/**
+	 * Gives the number of orders that are queued or in progress
+	 * @return number of pending orders
+	 */
+	public int getPendingCount() {
+		return pending.size() ;
+	}
+
+	///////////////////////// private methods ///////////////////////////////////
+	/**
+	 * Starts the generation of a maze for an order, assumes a permit for capacity is acquired
+	 * @param order describes the maze to generate
+	 * @param seed for the random number stream of the maze builder
+	 * @return future that completes with the delivered maze
+	 */
+	private CompletableFuture<MazeConfiguration> start(final Order order, final long seed) {
+		final CompletableFuture<MazeConfiguration> future = new CompletableFuture<MazeConfiguration>() ;
+		pending.put(future, Boolean.TRUE) ;
+		final Future<?> task ;
+		try {
+			task = executor.submit(new Runnable() {
+				@Override
+				public void run() {
+					build(order, seed, future) ;
+				}
+			}) ;
+		}
+		catch (RuntimeException e) { // rejected after shutdown
+			pending.remove(future) ;
+			capacity.release() ;
+			throw e ;
+		}
+		// release capacity exactly once whenever the future completes,
+		// a cancelled future interrupts its builder or removes it from the queue
+		future.whenComplete((mazeConfig, failure) -> {
+			pending.remove(future) ;
+			capacity.release() ;
+			if (future.isCancelled())
+				task.cancel(true) ;
+		}) ;
+		return future ;
+	}
+	/**
+	 * Runs a maze builder for the given order on the current thread
+	 * @param order describes the maze to generate
+	 * @param seed for the random number stream of the maze builder
+	 * @param future to complete with the delivered maze
+	 */
+	private void build(Order order, long seed, CompletableFuture<MazeConfiguration> future) {
+		if (future.isDone())
+			return ; // cancelled while queued
+		try {
+			MazeBuilder builder = MazeFactory.createBuilder(order.getBuilder(), false) ;
+			if (null == builder)
+				throw new UnsupportedOperationException("BatchMazeFactory: missing implementation for requested algorithm: " + order.getBuilder()) ;
+			builder.setSeed(seed) ;
+			builder.setHeadless(true) ;
+			final long start = System.nanoTime() ;
+			builder.buildOrder(new BatchOrder(order, future, getThroughput(order.getBuilder(), order.getSkillLevel()), start)) ;
+			builder.run() ; // delivers to the BatchOrder which records the throughput and completes the future
+		}
+		catch (Throwable e) {
+			// the future carries the failure, otherwise its capacity would never be released
+			future.completeExceptionally(e) ;
+		}
+		// the builder catches an interrupt and returns without delivery, 
+		// so the future is still open if the generation was stopped
+		future.completeExceptionally(new CancellationException("BatchMazeFactory: maze generation stopped")) ;
+	}
+	/**
+	 * Provides a new seed for orders that come without one
+	 * @return seed
+	 */
+	private long nextSeed() {
+		return seeds.getAndIncrement() * 0x9E3779B97F4A7C15L ; // spread consecutive values over the range of long
+	}
+
+	/////////////////////////////// Metrics ///////////////////////////////////////
+	/**
+	 * Gives a key for throughput measurements
+	 * @param algorithm of the maze builder
+	 * @param skill level of the maze
+	 * @return key, e.g. "Prim/3"
+	 */
+	private static String getKey(Order.Builder algorithm, int skill) {
+		return algorithm + "/" + skill ;
+	}
+	/**
+	 * Gives throughput measurements for a combination of builder algorithm and skill level
+	 * @param algorithm of the maze builder
+	 * @param skill level of the maze
+	 * @return throughput measurements, never null
+	 */
+	public Throughput getThroughput(Order.Builder algorithm, int skill) {
+		return metrics.computeIfAbsent(getKey(algorithm, skill), k -> new Throughput()) ;
+	}
+	/**
+	 * Gives all throughput measurements taken so far
+	 * @return map with keys of the form builder/skill, e.g. "Prim/3", sorted by key
+	 */
+	public Map<String, Throughput> getMetrics() {
+		return new TreeMap<String, Throughput>(metrics) ;
+	}
+
+	/**
+	 * Throughput measurements for mazes that have been delivered.
+	 * The rate in mazes per second refers to the time from the start of the first
+	 * to the delivery of the last maze such that it reflects concurrent generation.
+	 */
+	public static class Throughput {
+		private final LongAdder count = new LongAdder() ; // number of delivered mazes
+		private final LongAdder nanos = new LongAdder() ; // sum of generation times
+		private final AtomicLong first = new AtomicLong(Long.MAX_VALUE) ; // start of first generation
+		private final AtomicLong last = new AtomicLong(Long.MIN_VALUE) ; // end of last generation
+
+		/**
+		 * Records the generation of a maze
+		 * @param start time stamp in nanoseconds when generation started
+		 * @param end time stamp in nanoseconds when maze was delivered
+		 */
+		void record(long start, long end) {
+			count.increment() ;
+			nanos.add(end - start) ;
+			first.accumulateAndGet(start, Math::min) ;
+			last.accumulateAndGet(end, Math::max) ;
+		}
+		/**
+		 * @return number of delivered mazes
+		 */
+		public long getCount() {
+			return count.sum() ;
+		}
+		/**
+		 * @return average time in milliseconds to generate a single maze
+		 */
+		public double getAverageMillis() {
+			final long n = count.sum() ;
+			return (0 == n) ? 0 : nanos.sum() / 1e6 / n ;
+		}
+		/**
+		 * @return number of delivered mazes per second of elapsed time
+		 */
+		public double getMazesPerSecond() {
+			final long n = count.sum() ;
+			final long elapsed = last.get() - first.get() ;
+			return (0 == n || elapsed <= 0) ? 0 : n * 1e9 / elapsed ;
+		}
+		@Override
+		public String toString() {
+			return String.format("%d mazes, %.2f ms/maze, %.1f mazes/sec", getCount(), getAverageMillis(), getMazesPerSecond()) ;
+		}
+	}
+
+	/////////////////////////////// BatchOrder ///////////////////////////////////
+	/**
+	 * Wraps an order such that delivery completes the future for the order.
+	 * The throughput is recorded before the future completes, so a maze is counted 
+	 * by the time anybody waiting for the future sees it.
+	 */
+	private static class BatchOrder implements Order {
+		private final Order order ;
+		private final CompletableFuture<MazeConfiguration> future ;
+		private final Throughput throughput ;
+		private final long start ; // time stamp in nanoseconds when generation started
+
+		BatchOrder(Order order, CompletableFuture<MazeConfiguration> future, Throughput throughput, long start) {
+			this.order = order ;
+			this.future = future ;
+			this.throughput = throughput ;
+			this.start = start ;
+		}
+		@Override
+		public int getSkillLevel() {
+			return order.getSkillLevel() ;
+		}
+		@Override
+		public Builder getBuilder() {
+			return order.getBuilder() ;
+		}
+		@Override
+		public boolean isPerfect() {
+			return order.isPerfect() ;
+		}
+		@Override
+		public void deliver(MazeConfiguration mazeConfig) {
+			if (future.isDone())
+				return ; // cancelled in the mean time, not counted
+			// a cancel that arrives right now is counted but not delivered, a rare overestimate
+			throughput.record(start, System.nanoTime()) ;
+			// completing the future decides atomically between delivery and a concurrent cancel
+			if (future.complete(mazeConfig))
+				order.deliver(mazeConfig) ;
+		}
+		@Override
+		public void updateProgress(int percentage) {
+			order.updateProgress(percentage) ;
+		}
+	}
+}
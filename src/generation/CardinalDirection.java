@@ -13,6 +13,8 @@ package generation;
  * south = (0,1)
  * west  = (-1,0)
  * north = (0,-1)
+ * The (dx,dy) pair is available without any allocation from methods dx() and dy() 
+ * and from the DX, DY tables that are indexed by the ordinal of a direction. 
  * 
  * Status: March 2016, coded, working but north/south upside down in graphics
  * Inconsistency: 
@@ -23,7 +25,51 @@ package generation;
  *
  */
 public enum CardinalDirection {
-	North, East, South, West ;
+	North(0,-1), East(1,0), South(0,1), West(-1,0) ;
+	
+	// (dx,dy) pair for each direction
+	private final int dx ;
+	private final int dy ;
+	
+	/**
+	 * Tables with dx and dy values indexed by ordinal, 
+	 * such that DX[cd.ordinal()] == cd.dx() and DY[cd.ordinal()] == cd.dy().
+	 * Do not modify the content of these arrays.
+	 */
+	static final int[] DX = { 0, 1, 0, -1 } ;
+	static final int[] DY = { -1, 0, 1, 0 } ;
+	/**
+	 * All directions in the same order as values() but without the array copy 
+	 * that values() creates on each call. Do not modify the content of this array.
+	 */
+	static final CardinalDirection[] VALUES = values() ;
+	
+	private CardinalDirection(int dx, int dy) {
+		this.dx = dx ;
+		this.dy = dy ;
+	}
+	/**
+	 * Gives the x component of the (dx,dy) pair as in Cells.java for the current direction
+	 * @return dx in {-1,0,1}
+	 */
+	public int dx() {
+		return dx ;
+	}
+	/**
+	 * Gives the y component of the (dx,dy) pair as in Cells.java for the current direction
+	 * @return dy in {-1,0,1}
+	 */
+	public int dy() {
+		return dy ;
+	}
+	/**
+	 * Gives the direction with the given ordinal value without an array copy as in values()[ordinal]
+	 * @param ordinal in {0,1,2,3}
+	 * @return matching cardinal direction
+	 */
+	public static CardinalDirection fromOrdinal(int ordinal) {
+		return VALUES[ordinal] ;
+	}
 	/** 
 	 * Gives the direction that results from a 90 degree clockwise rotation
 	 * applied to the current direction. 
@@ -83,7 +129,15 @@ public enum CardinalDirection {
 	 * @return a random direction, distribution is uniform
 	 */
 	public CardinalDirection randomDirection() {
-		int i = SingleRandom.getRandom().nextIntWithinInterval(0, 3) ;
+		return randomDirection(SingleRandom.getRandom()) ;
+	}
+	/**
+	 * Gives a random direction. Values are picked with equal probabilities.
+	 * @param random delivers the random number
+	 * @return a random direction, distribution is uniform
+	 */
+	public CardinalDirection randomDirection(SingleRandom random) {
+		int i = random.nextIntWithinInterval(0, 3) ;
 		switch(i) {
 		case 0 : 
 			return CardinalDirection.North ;
@@ -128,7 +182,8 @@ public enum CardinalDirection {
 		}
 	}
 	/**
-	 * Gives the (dx,dy) pair as in Cells.java for the current direction
+	 * Gives the (dx,dy) pair as in Cells.java for the current direction.
+	 * Each call allocates a new array, methods dx() and dy() do not. 
 	 * @return (dx,dy) pair, dx,dy in {-1,0,1}
 	 */
 	public int[] getDirection() {
@@ -137,27 +192,7 @@ public enum CardinalDirection {
 		public static int[] DIRS_X = { 1, 0, -1, 0 };
 		public static int[] DIRS_Y = { 0, 1, 0, -1 };
 		 */
-		int[] result = new int[2] ;
-		switch(this) {
-		case North: // flipped North : 
-			result[0] = 0 ;
-			result[1] = -1 ;
-			break ;
-		case East : 
-			result[0] = 1 ;
-			result[1] = 0 ;
-			break ;
-		case South: // flipped South : 
-			result[0] = 0 ;
-			result[1] = 1 ;
-			break ;
-		case West : 
-			result[0] = -1 ;
-			result[1] = 0 ;
-			break ;
-		default:
-			throw new RuntimeException("Inconsistent enum type") ;
-		}
+		int[] result = { dx, dy } ;
 		return result ;
 	}
 }
@@ -2,6 +2,7 @@ package generation;
 
 import java.io.BufferedWriter;
 import java.io.FileWriter;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -9,12 +10,14 @@ import java.util.NoSuchElementException;
  * This class encapsulates all access to a grid of cells. 
  * Each cell encodes whether walls or borders/bounds to rooms 
  * or to the outer border of the maze exist.
- * The internal two-dimensional array matches with a grid of cells as follows:
+ * The internal array matches with a grid of cells as follows:
  * cells[0,y] form the left border, hence there is a wall on  left.
  * cells[width-1,y] form the right border, hence there is a wall on right.
  * cells[x,0] form the top border, hence there is a wall on top.
  * cells[x,height-1] form the bottom border, hence there is a wall on bottom.
  * The upper left corner is seen as position [0][0].
+ * Cells are stored row by row in a single array such that cell (x,y) 
+ * is located at index y*width+x, see method index(x,y).
  * 
  * Warning: MapDrawer locates (0,0) in located at the bottom-left corner.
  * 
@@ -59,6 +62,9 @@ public class Cells {
 	//public static final int CW_RIGHT_BOUND = 256; // 2^8
 	//public static final int CW_ALL_BOUNDS = CW_TOP_BOUND|CW_BOT_BOUND|CW_LEFT_BOUND|CW_RIGHT_BOUND; // constant to simplify check if all all bounds are present
 	public static final int CW_IN_ROOM = 512; // 2^9
+	// 2^10 and 2^11 keep the ordinal of a CardinalDirection during maze generation, see setBackDirection
+	static final int CW_BACK_SHIFT = 10 ;
+	static final int CW_BACK = 3 << CW_BACK_SHIFT ;
 	// we put all encodings into a single array such that it is easier to iterate over the array
 	// note that the numerical values are used for bitwise calculations so a refactoring with other values in an enumeration can break the code
 	// Directions:
@@ -74,15 +80,13 @@ public class Cells {
 	
 	public int width;
 	public int height ;
-	private int[][] cells; // width x height array of cells, cells[width][height]
+	private final int[] cells; // width * height array of cells, stored row by row, cell (x,y) is at cells[y*width+x], null if kept elsewhere by a subclass
 	// each cell contains an integer which encodes presence/absence of walls
-	// cells[i][j] can be read as (i,j) coordinates much like (x,y) coordinates
-	// where the first dimension x grows towards the right and 
-	// the second dimension y grows towards the bottom
-	// as if the (0,0) position is in the top-left corner.
-	// cells[i][j] is not intuitive in terms of rows and column indices in matrix notation 
-	// as position (i,j) would be column i and row j which is opposite to the normal  
-	// use of rows and columns indices for matrices.
+	// (x,y) coordinates are such that x grows towards the right and 
+	// y grows towards the bottom as if the (0,0) position is in the top-left corner.
+	// A single array in row-major order keeps neighboring cells in a row next to each other 
+	// in memory and needs a single bounds check per access, in contrast to the former 
+	// int[width][height] matrix with one array object per column.
 	
 	/**
 	 * Constructor
@@ -91,9 +95,20 @@ public class Cells {
 	 * @precondition 0 < w, 0 < h
 	 */
 	public Cells(int w, int h) {
+		this(w, h, true) ;
+	}
+	/**
+	 * Constructor for subclasses that may keep the values of cells elsewhere, 
+	 * in which case they override getValue(idx) and setValue(idx, value).
+	 * @param w width
+	 * @param h height
+	 * @param allocate if true, values are kept in an array on the heap
+	 * @precondition 0 < w, 0 < h
+	 */
+	protected Cells(int w, int h, boolean allocate) {
 		width = w ;
 		height = h ;
-		cells = new int[w][h];
+		cells = allocate ? new int[w*h] : null ;
 	}
 
 	/**
@@ -102,20 +117,25 @@ public class Cells {
 	 * @precondition input != null
 	 */
 	public Cells(int[][] input){
-		// Alternative, 2d array is a 1d array with arrays as elements
-		width = input.length ;
-		height = input[0].length ;
-		cells = new int[width][];
-		for(int i = 0; i < width; i++)
-		    cells[i] = input[i].clone();
-		/* Basic version
 		this(input.length, input[0].length);
 		for (int i = 0; i < width; i++) {
 			for (int j = 0; j < height; j++) {
-				cells[i][j] = input[i][j];
+				setValue(index(i,j), input[i][j]);
 			}
 		}
-		*/
+	}
+	/**
+	 * Constructor that creates a copy of the given cells, the copy keeps its values in an array on the heap.
+	 * @param original provides dimensions and content to copy
+	 */
+	public Cells(Cells original) {
+		this(original.width, original.height);
+		if (null != original.cells)
+			System.arraycopy(original.cells, 0, cells, 0, cells.length);
+		else {
+			for (int idx = 0; idx < cells.length; idx++)
+				cells[idx] = original.getValue(idx);
+		}
 	}
 	
 	/**
@@ -160,23 +180,32 @@ public class Cells {
 		final Cells o = (Cells)other ; // type cast safe after checking class objects
 		if ((width != o.width)||(height != o.height))
 			return false ;
-		for (int i = 0; i < width; i++) {
-			for (int j = 0; j < height; j++) {
-				if (cells[i][j] != o.cells[i][j])
-					return false ;
-			}
+		if (null != cells && null != o.cells)
+			return Arrays.equals(cells, o.cells) ;
+		// at least one of them keeps its values elsewhere
+		final int n = width*height ;
+		for (int idx = 0; idx < n; idx++) {
+			if (getValue(idx) != o.getValue(idx))
+				return false ;
 		}
 		return true ;
 	}
 	/**
-	 * Hashcode method is not implemented as it is not needed here.
-	 * Dummy method to recognize common pitfall from overriding equals() but 
-	 * not hashcode() method.
+	 * Hash code over dimensions and content, consistent with equals.
+	 * Cells are mutable, so the hash code of a maze changes with its walls,
+	 * e.g. MazeCache uses a copy of the cells as a key.
 	 */
 	@Override
 	public int hashCode() {
-		  assert false : "hashCode not designed";
-		  return 42; // any arbitrary constant will do
+		final int result = 31*width + height ;
+		if (null != cells)
+			return 31*result + Arrays.hashCode(cells) ;
+		// same as Arrays.hashCode for values kept elsewhere
+		int h = 1 ;
+		final int n = width*height ;
+		for (int idx = 0; idx < n; idx++)
+			h = 31*h + getValue(idx) ;
+		return 31*result + h ;
 	}
 	/**
 	 * Get the value of a cell at the given position (x,y).
@@ -187,7 +216,41 @@ public class Cells {
 	 */
 	public int getValueOfCell( int x, int y )
 	{
-		return cells[x][y] ;
+		return getValue(index(x,y)) ;
+	}
+	/**
+	 * Get the value of the cell with the given index.
+	 * All read access to the values of cells goes through this method 
+	 * such that subclasses can keep values elsewhere, e.g. in a file.
+	 * @param idx index of cell as obtained from method index(x,y)
+	 * @precondition 0 <= idx < width*height
+	 * @return value with internal encoding of walls and other attributes
+	 */
+	protected int getValue(int idx) {
+		return cells[idx] ;
+	}
+	/**
+	 * Set the value of the cell with the given index.
+	 * All write access to the values of cells goes through this method
+	 * such that subclasses can keep values elsewhere, e.g. in a file.
+	 * @param idx index of cell as obtained from method index(x,y)
+	 * @param value with internal encoding of walls and other attributes
+	 * @precondition 0 <= idx < width*height
+	 */
+	protected void setValue(int idx, int value) {
+		cells[idx] = value ;
+	}
+	/**
+	 * Gives the index of a cell at the given position (x,y) for the index-based methods.
+	 * Cells are stored row by row, so the index of (x+1,y) is index(x,y)+1 
+	 * and the index of (x,y+1) is index(x,y)+width.
+	 * @param x coordinate of cell
+	 * @param y coordinate of cell
+	 * @precondition 0 <= x < width, 0 <= y < height
+	 * @return index of cell, 0 <= index < width*height
+	 */
+	public int index(int x, int y) {
+		return y*width + x ;
 	}
 	
 	/**
@@ -201,9 +264,9 @@ public class Cells {
 	public boolean canGo(Wall wall) {
 		int x = wall.getX();
 		int y = wall.getY();
-		int[] d = wall.getDirection().getDirection() ;
-		int dx = d[0];
-		int dy = d[1];
+		CardinalDirection cd = wall.getDirection() ;
+		int dx = cd.dx();
+		int dy = cd.dy();
 		// borders limit rooms (but for potential doors) and the outside limit of the maze
 		if (hasBorder(x, y, dx, dy))
 			return false;
@@ -224,6 +287,19 @@ public class Cells {
 	private boolean hasBorder(int x, int y, int dx, int dy) {
 		return hasMaskedBitsTrue(x, y, (getBoundForBit(getBit(dx, dy))));
 	}
+	/**
+	 * Tells if the given position has a border in the given direction.
+	 * A border marks a wall that the maze generation must leave in place, 
+	 * e.g. the outside of the maze or the walls of a room except for its doors.
+	 * @param x coordinate of cell
+	 * @param y coordinate of cell
+	 * @param dir gives the cardinal direction
+	 * @precondition 0 <= x < width, 0 <= y < height
+	 * @return true if that side is marked as a border, false otherwise
+	 */
+	public boolean hasBorder(int x, int y, CardinalDirection dir) {
+		return hasMaskedBitsTrue(x, y, getBoundForBit(getCWConstantForDirection(dir)));
+	}
 
 	/// Methods that deal with visiting a particular cell //////////////////////////////////
 	// life cycle of visited flag
@@ -320,6 +396,41 @@ public class Cells {
 		}
 		return hasMaskedBitsFalse(x, y, bit) ;
 	}
+	// Methods that keep a direction for maze generation ///////////////////////////////////
+	// a depth first search needs to know where it came from for each cell it visits,
+	// keeping this in spare bits of the cells avoids a second matrix of the size of the maze,
+	// which matters for cells that are kept in a file, see MappedMazeStore
+	/**
+	 * Keeps a direction in the given cell, e.g. the one a depth first search entered the cell with.
+	 * The direction must be removed with clearBackDirection once it is not needed anymore,
+	 * as it is part of the value of the cell and so of equals and of the file format.
+	 * @param x coordinate of cell
+	 * @param y coordinate of cell
+	 * @param cd direction to keep
+	 * @precondition 0 <= x < width, 0 <= y < height, no direction is kept in the cell
+	 */
+	void setBackDirection(int x, int y, CardinalDirection cd) {
+		setBitToOne(x, y, cd.ordinal() << CW_BACK_SHIFT) ;
+	}
+	/**
+	 * Gives the direction kept in the given cell
+	 * @param x coordinate of cell
+	 * @param y coordinate of cell
+	 * @precondition 0 <= x < width, 0 <= y < height, setBackDirection was called for the cell
+	 * @return direction kept in the cell
+	 */
+	CardinalDirection getBackDirection(int x, int y) {
+		return CardinalDirection.VALUES[(getValue(index(x,y)) & CW_BACK) >>> CW_BACK_SHIFT] ;
+	}
+	/**
+	 * Removes the direction kept in the given cell
+	 * @param x coordinate of cell
+	 * @param y coordinate of cell
+	 * @precondition 0 <= x < width, 0 <= y < height
+	 */
+	void clearBackDirection(int x, int y) {
+		setBitToZero(x, y, CW_BACK) ;
+	}
 	// Methods that deal with rooms ///////////////////////////////////
 	// lifecycle of room bit
 	// stage 1: 0 after instantiation, unchanged in initialization phase
@@ -390,6 +501,20 @@ public class Cells {
 	 * @param ryl 2nd corner, y coordinate
 	 */
 	public void markAreaAsRoom(int rw, int rh, int rx, int ry, int rxl, int ryl) {
+		markAreaAsRoom(rw, rh, rx, ry, rxl, ryl, SingleRandom.getRandom()) ;
+	}
+	/**
+	 * Marks the given area as a room on the maze and positions up to 5 doors randomly, 
+	 * see markAreaAsRoom(int, int, int, int, int, int).
+	 * @param rw room width
+	 * @param rh room height
+	 * @param rx 1st corner, x coordinate
+	 * @param ry 1st corner, y coordinate
+	 * @param rxl 2nd corner, x coordinate
+	 * @param ryl 2nd corner, y coordinate
+	 * @param random delivers the random numbers to position doors
+	 */
+	public void markAreaAsRoom(int rw, int rh, int rx, int ry, int rxl, int ryl, SingleRandom random) {
 		// clear all cells in area of room from all walls and borders
 		// mark all cells in area as being inside the room
 		int x;
@@ -403,7 +528,6 @@ public class Cells {
 		encloseArea(rx, ry, rxl, ryl);
 		// knock down some walls for doors
 		int wallct = (rw+rh)*2; // counter for the total number of walls
-		SingleRandom random = SingleRandom.getRandom() ;
 		// check at most 5 walls
 		for (int ct = 0; ct != 5; ct++) { 
 			int door = random.nextIntWithinInterval(0, wallct-1); // pick a random wall
@@ -536,12 +660,12 @@ public class Cells {
 	public void addWall(Wall wall, boolean internalWall) {
 		int x = wall.getX();
 		int y = wall.getY();
-		int[] d = wall.getDirection().getDirection() ;
+		CardinalDirection cd = wall.getDirection() ;
 		// add wall on (x,y)
-		setWallToOne(x, y, d[0], d[1]);
+		setWallToOne(x, y, cd.dx(), cd.dy());
 		// add same wall but for adjacent cell
 		if (internalWall)
-			setWallToOne(x+d[0], y+d[1], -d[0], -d[1]);
+			setWallToOne(x+cd.dx(), y+cd.dy(), -cd.dx(), -cd.dy());
 	}
 
 	/**
@@ -553,9 +677,9 @@ public class Cells {
 	public void deleteWall(Wall wall) {
 		int x = wall.getX();
 		int y = wall.getY();
-		int[] d = wall.getDirection().getDirection() ;
-		int dx = d[0];
-		int dy = d[1];
+		CardinalDirection cd = wall.getDirection() ;
+		int dx = cd.dx();
+		int dy = cd.dy();
 		// delete wall on (x,y)
 		setWallToZero(x, y, dx, dy);
 		// delete same wall but for adjacent cell
@@ -664,6 +788,18 @@ public class Cells {
 	public boolean hasNoWall(int x, int y, CardinalDirection dir) {
 		return !hasMaskedBitsTrue(x, y, getCWConstantForDirection(dir));
 	}
+	/**
+	 * Tells if the cell with the given index has a wall in the given direction.
+	 * Same as hasWall(x,y,dir) for idx == index(x,y) but saves the index calculation
+	 * for callers that iterate over cells.
+	 * @param idx index of cell as obtained from method index(x,y)
+	 * @param dir gives the cardinal direction
+	 * @precondition 0 <= idx < width*height
+	 * @return true if cell has wall in the given direction
+	 */
+	public boolean hasWallAt(int idx, CardinalDirection dir) {
+		return (getValue(idx) & getCWConstantForDirection(dir)) != 0;
+	}
 	/**
 	 * Gives the matching bit encoded value, i.e.,
 	 * the matching CW_TOP, BOT, LEFT, RIGHT constants in Constants.java
@@ -678,19 +814,10 @@ public class Cells {
 		static final int CW_LEFT = 4; // 2^2
 		static final int CW_RIGHT = 8;// 2^3
 		 */
-		switch(dir) {
-		case North : 
-			return CW_TOP; // flipped: CW_TOP ;
-		case East : 
-			return CW_RIGHT ;
-		case South : 
-			return CW_BOT; // flipped CW_BOT ;
-		case West : 
-			return CW_LEFT ;
-		default:
-			throw new RuntimeException("Unsupported value in enum type") ;
-		}
+		return CW_FOR_DIRECTION[dir.ordinal()] ;
 	}
+	// CW_ constants indexed by the ordinal of the matching cardinal direction North, East, South, West
+	private static final int[] CW_FOR_DIRECTION = { CW_TOP, CW_RIGHT, CW_BOT, CW_LEFT } ;
 	////////////////// iterator to access continuous sequences of walls //////////////////////////////////////////
 	public Iterator<int[]> iterator(int x, int y, CardinalDirection cd) {
         return new SequenceIterator(x,y,cd);
@@ -847,6 +974,138 @@ public class Cells {
             return x;
         }
                     }
+	////////////////// bulk extraction of continuous sequences of walls //////////////////////////////////////////
+	/**
+	 * Receives sequences of walls from forEachWallRun.
+	 */
+	public interface WallRunSink {
+		/**
+		 * Receives a sequence of walls, same as a [start,end] pair delivered by the iterator.
+		 * @param cd side of the cells that the walls are on
+		 * @param line y coordinate of the row for North and South, x coordinate of the column for East and West
+		 * @param start first cell of the sequence, it has a wall on the given side
+		 * @param end first cell after the sequence
+		 */
+		void wallRun(CardinalDirection cd, int line, int start, int end) ;
+	}
+	/**
+	 * Delivers all sequences of walls for one orientation to the given sink.
+	 * Sequences are the same as the ones of iterator(x,y,cd) and are delivered in the same order
+	 * as iterating over all rows (columns) would give them.
+	 * Horizontal: for each row y, the sequences of North walls, then the ones of South walls, with increasing x.
+	 * Vertical: for each column x, the sequences of West walls, then the ones of East walls, with increasing y.
+	 * 
+	 * The cells are read once in row-major order and their wall bits are packed into bit sets with one bit per cell.
+	 * Beginnings of sequences are then found for 64 cells at a time with shift and mask operations, 
+	 * ends of sequences by searching for the next cell without a wall or with a crossing wall.
+	 * The bit sets are kept in the given scratch array such that a caller can reuse it for both orientations
+	 * and for repeated extractions, nothing is allocated.
+	 * @param horizontal true for North and South walls, false for East and West walls
+	 * @param bits scratch space for the bit sets, at least getWallRunScratchLength() long values, contents are overwritten
+	 * @param sink receives the sequences
+	 */
+	public void forEachWallRun(boolean horizontal, long[] bits, WallRunSink sink) {
+		final int n = horizontal ? width : height ; // cells per line
+		final int lines = horizontal ? height : width ;
+		final int words = (n + 63) >>> 6 ; // words per line
+		// walls on one side, walls on the other side, crossing walls that end a sequence
+		// are consecutive blocks of the scratch array
+		final int first = 0 ;
+		final int second = lines*words ;
+		final int cross = 2*lines*words ;
+		if (bits.length < 3*lines*words)
+			throw new IllegalArgumentException("Scratch space too small for bit sets: " + bits.length) ;
+		final int[] values = cells ; // null if a subclass keeps values elsewhere
+		int idx = 0 ;
+		if (horizontal) {
+			// cells of a row are consecutive, so words are assembled in local variables
+			// wall bits CW_TOP, CW_BOT, CW_LEFT, CW_RIGHT are bits 0 to 3 and shifted to bit 0 first
+			for (int y = 0; y < height; y++) {
+				long top = 0, bottom = 0, left = 0 ;
+				for (int x = 0; x < width; x++, idx++) {
+					final int value = (null != values) ? values[idx] : getValue(idx) ;
+					top |= (long) (value & CW_TOP) << x ; // shift distance is taken modulo 64
+					bottom |= (long) ((value & CW_BOT) >>> 1) << x ;
+					left |= (long) ((value & CW_LEFT) >>> 2) << x ;
+					if ((x & 63) == 63 || x == width-1) {
+						final int k = y*words + (x >>> 6) ;
+						bits[first+k] = top ;
+						bits[second+k] = bottom ;
+						bits[cross+k] = left ;
+						top = bottom = left = 0 ;
+					}
+				}
+			}
+		}
+		else {
+			// bits of a column are spread over the words of the column, so clear them first
+			Arrays.fill(bits, 0, 3*lines*words, 0L) ;
+			for (int y = 0; y < height; y++) {
+				final int word = y >>> 6 ;
+				for (int x = 0, k = word; x < width; x++, idx++, k += words) {
+					final int value = (null != values) ? values[idx] : getValue(idx) ;
+					bits[first+k] |= (long) ((value & CW_LEFT) >>> 2) << y ;
+					bits[second+k] |= (long) ((value & CW_RIGHT) >>> 3) << y ;
+					bits[cross+k] |= (long) (value & CW_TOP) << y ;
+				}
+			}
+		}
+		final CardinalDirection firstSide = horizontal ? CardinalDirection.North : CardinalDirection.West ;
+		final CardinalDirection secondSide = horizontal ? CardinalDirection.South : CardinalDirection.East ;
+		for (int line = 0; line < lines; line++) {
+			emitWallRuns(bits, first+line*words, cross+line*words, words, n, firstSide, line, sink) ;
+			emitWallRuns(bits, second+line*words, cross+line*words, words, n, secondSide, line, sink) ;
+		}
+	}
+	/**
+	 * Tells how many long values forEachWallRun needs as scratch space, 
+	 * the number is sufficient for both orientations.
+	 * @return minimum length of the scratch array for forEachWallRun
+	 */
+	public int getWallRunScratchLength() {
+		final int horizontal = height * ((width + 63) >>> 6) ;
+		final int vertical = width * ((height + 63) >>> 6) ;
+		return 3*Math.max(horizontal, vertical) ;
+	}
+	/**
+	 * Delivers the sequences of walls of a single line to the sink.
+	 * A sequence starts at a cell with a wall if the cell before has no wall or 
+	 * if the cell has a crossing wall that ends the sequence before.
+	 * @param bits bit sets of cells with a wall on the side of interest and of cells with a crossing wall
+	 * @param wall index of the first word of the line in the bit sets for walls
+	 * @param cross index of the first word of the line in the bit sets for crossing walls
+	 * @param words number of words per line
+	 * @param n number of cells per line
+	 */
+	private static void emitWallRuns(long[] bits, int wall, int cross, int words, int n, 
+			CardinalDirection cd, int line, WallRunSink sink) {
+		long carry = 0 ; // bit 0 tells if the last cell of the previous word has a wall
+		for (int k = 0; k < words; k++) {
+			final long w = bits[wall+k] ;
+			long starts = w & (~((w << 1) | carry) | bits[cross+k]) ;
+			carry = w >>> 63 ;
+			while (starts != 0) {
+				final int start = (k << 6) + Long.numberOfTrailingZeros(starts) ;
+				sink.wallRun(cd, line, start, findEndOfWallRun(bits, wall, cross, n, start)) ;
+				starts &= starts - 1 ;
+			}
+		}
+	}
+	/**
+	 * Finds the first cell after start that has no wall or has a crossing wall
+	 * @return position of that cell, n if the sequence extends to the end of the line
+	 */
+	private static int findEndOfWallRun(long[] bits, int wall, int cross, int n, int start) {
+		int pos = start + 1 ;
+		while (pos < n) {
+			final int k = pos >>> 6 ;
+			final long ends = (~bits[wall+k] | bits[cross+k]) & (-1L << pos) ;
+			if (ends != 0)
+				return Math.min(n, (k << 6) + Long.numberOfTrailingZeros(ends)) ;
+			pos = (k + 1) << 6 ;
+		}
+		return n ;
+	}
 	////////////////// low level methods operating on bits and bitmasks //////////////////////////////////////////
 	//  long term goal is to make all of these methods private to encapsulate the encoding ///////////////////////
 	/**
@@ -857,7 +1116,8 @@ public class Cells {
 	 * @precondition 0 <= x < width, 0 <= y < height
 	 */
 	private void setBitToZero(int x, int y, int cw_bit) {
-		cells[x][y] &= ~cw_bit;
+		final int idx = index(x,y) ;
+		setValue(idx, getValue(idx) & ~cw_bit) ;
 	}
 	/**
 	 * Sets all wall bits to zero for a given cell
@@ -875,10 +1135,10 @@ public class Cells {
 	// better to directly change client classes
 	//
 	protected boolean hasMaskedBitsTrue(int x, int y, int bitmask) {
-		return (cells[x][y] & bitmask) != 0;
+		return (getValue(index(x,y)) & bitmask) != 0;
 	}
 	protected boolean hasMaskedBitsFalse(int x, int y, int bitmask) {
-		return (cells[x][y] & bitmask) == 0;
+		return (getValue(index(x,y)) & bitmask) == 0;
 	}
 
 	/**
@@ -911,7 +1171,8 @@ public class Cells {
 	 * @precondition 0 <= x < width, 0 <= y < height
 	 */
 	private void setBitToOne(int x, int y, int bitmask) {
-		cells[x][y] |= bitmask ;
+		final int idx = index(x,y) ;
+		setValue(idx, getValue(idx) | bitmask) ;
 	}
 
 	///////////////// code for debugging ///////////////////////////////////////
@@ -929,7 +1190,7 @@ public class Cells {
 		{
 			prefix = " i:" + i + " j:";
 			for (int j = 0 ; j < height ; j++)
-				s += prefix + j + "=" + cells[i][j] ;
+				s += prefix + j + "=" + getValue(index(i,j)) ;
 			s += "\n" ;
 		}
 		return s ;
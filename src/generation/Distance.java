@@ -1,5 +1,7 @@
 package generation;
 
+import java.util.Arrays;
+
 /**
  * This class has the responsibility to provide the distance for each cell to the exit of a maze.
  * It encapsulates the distance matrix.  
@@ -19,6 +21,10 @@ public class Distance {
 	private int[] exitposition = null ;
 	private int[] startposition = null ;
 	private int maxDistance = 0 ;
+	// true if an incremental update may have lowered the maximum distance, see getMaxDistance
+	private boolean maxDistanceOutdated = false ;
+	// true if the distances are shared, e.g. by the MazeCache, and must not be changed anymore
+	private volatile boolean shared = false ;
 	
 	/**
 	 * Constructor
@@ -26,9 +32,19 @@ public class Distance {
 	 * @param h is the height
 	 */
 	public Distance(int w, int h) {
+		this(w, h, true) ;
+	}
+	/**
+	 * Constructor for subclasses that may keep distance values elsewhere,
+	 * in which case they override getDistance(x,y) and setDistance(x,y,d).
+	 * @param w is the width
+	 * @param h is the height
+	 * @param allocate if true, values are kept in a matrix on the heap
+	 */
+	protected Distance(int w, int h, boolean allocate) {
 		width = w ;
 		height = h ;
-		dists = new int[w][h] ;
+		dists = allocate ? new int[w][h] : null ;
 	}
 	/**
 	 * Constructor
@@ -40,6 +56,34 @@ public class Distance {
 		height = distances[0].length ;
 		dists = distances ;
 	}
+	/**
+	 * Constructor for a copy of the given distances, values are kept in a matrix on the heap.
+	 * The copy is not shared, so it can be changed, see updateAfterAddingWall.
+	 * @param original distances to copy, only read
+	 */
+	public Distance(Distance original) {
+		this(original.width, original.height, true) ;
+		for (int x = 0; x != width; x++)
+			for (int y = 0; y != height; y++)
+				dists[x][y] = original.getDistance(x, y) ;
+		exitposition = (null != original.exitposition) ? original.exitposition.clone() : null ;
+		startposition = (null != original.startposition) ? original.startposition.clone() : null ;
+		maxDistance = original.maxDistance ;
+		maxDistanceOutdated = original.maxDistanceOutdated ;
+	}
+	/**
+	 * Marks the distances as shared, afterwards they must not be changed anymore.
+	 * Users that need to change shared distances work on a copy, see Distance(Distance).
+	 */
+	void share() {
+		shared = true ;
+	}
+	/**
+	 * @return true if the distances are shared and must not be changed, false otherwise
+	 */
+	public boolean isShared() {
+		return shared ;
+	}
 	/**
 	 * Gets access to a width x height array of distances. 
 	 * Warning, this exposes the internal attribute for read access only. 
@@ -69,6 +113,30 @@ public class Distance {
 	public int getDistance(int x, int y) {
 		return dists[x][y] ;
 	}
+	/**
+	 * Sets the distance value for the given (x,y) position.
+	 * All write access to distance values goes through this method
+	 * such that subclasses can keep values elsewhere, e.g. in a file.
+	 * @param x
+	 * @param y
+	 * @param d is the distance value
+	 */
+	protected void setDistance(int x, int y, int d) {
+		dists[x][y] = d ;
+	}
+	/**
+	 * Sets the positions and the maximum distance that a computation of distances
+	 * determines, for subclasses that keep results of an earlier computation.
+	 * @param exit is the exit position
+	 * @param start is the start position
+	 * @param max is the maximum distance
+	 */
+	protected void setComputedPositions(int[] exit, int[] start, int max) {
+		exitposition = exit ;
+		startposition = start ;
+		maxDistance = max ;
+		maxDistanceOutdated = false ;
+	}
 
 	/**
 	 * Finds the most remote point in the maze somewhere on the border. 
@@ -85,30 +153,30 @@ public class Distance {
 		int remoteDist = 0;
 		for (x = 0; x != width; x++) {
 			y = 0 ;
-			if (dists[x][y] > remoteDist) {
+			if (getDistance(x, y) > remoteDist) {
 				remoteX = x;
 				remoteY = y;
-				remoteDist = dists[x][y];
+				remoteDist = getDistance(x, y);
 			}
 			y = height-1 ;
-			if (dists[x][y] > remoteDist) {
+			if (getDistance(x, y) > remoteDist) {
 				remoteX = x;
 				remoteY = y;
-				remoteDist = dists[x][y];
+				remoteDist = getDistance(x, y);
 			}
 		}
 		for (y = 0; y != height; y++) {
 			x = 0 ;
-			if (dists[x][y] > remoteDist) {
+			if (getDistance(x, y) > remoteDist) {
 				remoteX = x;
 				remoteY = y;
-				remoteDist = dists[x][y];
+				remoteDist = getDistance(x, y);
 			}
 			x = width-1 ;
-			if (dists[x][y] > remoteDist) {
+			if (getDistance(x, y) > remoteDist) {
 				remoteX = x;
 				remoteY = y;
-				remoteDist = dists[x][y];
+				remoteDist = getDistance(x, y);
 			}
 		}
 		// return result in an array of length 2
@@ -129,10 +197,10 @@ public class Distance {
 		int[] result = new int[2] ;
 		for (x = 0; x != width; x++)
 			for (y = 0; y != height; y++) {
-				if (dists[x][y] > d) {
+				if (getDistance(x, y) > d) {
 					result[0] = x;
 					result[1] = y;
-					d = dists[x][y];
+					d = getDistance(x, y);
 				}
 			}
 		maxDistance = d ; // memorize maximal distance for other purposes
@@ -150,10 +218,10 @@ public class Distance {
 		int[] result = new int[2] ;
 		for (x = 0; x != width; x++)
 			for (y = 0; y != height; y++) {
-				if (dists[x][y] < d) {
+				if (getDistance(x, y) < d) {
 					result[0] = x;
 					result[1] = y;
-					d = dists[x][y];
+					d = getDistance(x, y);
 				}
 			}
 		return result ;
@@ -161,6 +229,14 @@ public class Distance {
 	
 	static final int INFINITY = Integer.MAX_VALUE; 
 
+	// flag to operate the breadth first search and the old fixpoint computation in parallel 
+	// and to check if both deliver the same distance values, intended for debugging purposes
+	static boolean verifyDists = false ;
+	
+	// work queue for the breadth first search, a ring buffer of positions encoded as y*width+x, 
+	// kept as an attribute such that repeated computations do not need to allocate it again
+	private int[] queue = null ;
+	
 	/**
 	 * Computes distances to the given position (ax,ay) for all cells in array dists.
 	 * @param cells provide information on walls between positions
@@ -168,11 +244,105 @@ public class Distance {
 	 * @param ay, position, y coordinate
 	 */
 	private void computeDists(Cells cells, int ax, int ay) {
+		final int reached = computeDistsBFS(cells, ax, ay) ;
+		assert (width*height == reached) : 
+			"All positions should have a finite distance to the exit";
+		if (verifyDists) {
+			// keep the result of the BFS, run the old computation and compare
+			int[][] bfsDists = new int[width][height] ;
+			for (int x = 0; x != width; x++)
+				for (int y = 0; y != height; y++)
+					bfsDists[x][y] = getDistance(x, y) ;
+			computeDistsFixpoint(cells, ax, ay) ;
+			for (int x = 0; x != width; x++) {
+				for (int y = 0; y != height; y++) {
+					if (bfsDists[x][y] != getDistance(x, y)) {
+						dbg("computeDists mismatch at (" + x + "," + y + "): bfs = " + bfsDists[x][y] + ", fixpoint = " + getDistance(x, y)) ;
+						assert false : "BFS and fixpoint computation must deliver the same distances" ;
+					}
+				}
+			}
+			for (int x = 0; x != width; x++)
+				for (int y = 0; y != height; y++)
+					setDistance(x, y, bfsDists[x][y]) ;
+		}
+	}
+	/**
+	 * Computes distances to the given position (ax,ay) for all cells in array dists
+	 * with a breadth first search that starts at (ax,ay). 
+	 * Each cell is put on the queue once, when its distance value becomes final, 
+	 * so the computation is linear in the number of cells.
+	 * Positions that cannot be reached keep an infinite distance.
+	 * @param cells provide information on walls between positions
+	 * @param ax, position, x coordinate
+	 * @param ay, position, y coordinate
+	 * @return number of positions with a finite distance
+	 */
+	private int computeDistsBFS(Cells cells, int ax, int ay) {
+		setAllDistanceValues(INFINITY) ;
+		if (null == queue)
+			queue = new int[Math.min(width*height, 1024)] ;
+		int head = 0 ; // position of the next element to take from the queue
+		int size = 0 ; // number of elements in the queue
+		int reached = 1 ; // number of positions with a finite distance
+		// set the final distance at the exit position and get started from there
+		setDistance(ax, ay, 1);
+		queue[0] = ay*width + ax ;
+		size = 1 ;
+		while (size > 0) {
+			int pos = queue[head] ;
+			head = (head + 1 == queue.length) ? 0 : head + 1 ;
+			size-- ;
+			int x = pos % width ;
+			int y = pos / width ;
+			int nextDistance = getDistance(x, y) + 1 ;
+			for (CardinalDirection cd: CardinalDirection.VALUES) {
+				// queue entries are encoded the same way as cell indices
+				if (cells.hasWallAt(pos, cd))
+					continue ;
+				int nextX = x + cd.dx() ;
+				int nextY = y + cd.dy() ;
+				// neighbors that already have a finite distance got it from the search and are final
+				if (0 <= nextX && nextX < width && 0 <= nextY && nextY < height && getDistance(nextX, nextY) == INFINITY) {
+					setDistance(nextX, nextY, nextDistance) ;
+					reached++ ;
+					if (size == queue.length) {
+						growQueue(head) ;
+						head = 0 ;
+					}
+					int tail = head + size ;
+					queue[(tail < queue.length) ? tail : tail - queue.length] = nextY*width + nextX ;
+					size++ ;
+				}
+			}
+		}
+		return reached ;
+	}
+	/**
+	 * Doubles the capacity of the full work queue and moves its elements 
+	 * such that the first element is at position 0 of the new array.
+	 * @param head is the position of the first element in the current queue
+	 */
+	private void growQueue(int head) {
+		int[] bigger = new int[Math.min(2*queue.length, width*height)] ;
+		System.arraycopy(queue, head, bigger, 0, queue.length - head) ;
+		System.arraycopy(queue, 0, bigger, queue.length - head, head) ;
+		queue = bigger ;
+	}
+	/**
+	 * Computes distances to the given position (ax,ay) for all cells in array dists.
+	 * This is the original fixpoint computation that is only used to check results of 
+	 * the breadth first search if verifyDists is set.
+	 * @param cells provide information on walls between positions
+	 * @param ax, position, x coordinate
+	 * @param ay, position, y coordinate
+	 */
+	private void computeDistsFixpoint(Cells cells, int ax, int ay) {
 		int x, y;
 		// initialize the distance array with a value for infinity 
 		setAllDistanceValues(INFINITY) ;
 		// set the final distance at the exit position
-		dists[ax][ay] = 1;
+		setDistance(ax, ay, 1);
 		// distribute values from this position to get started
 		pushDistanceValuesDFS2(cells, ax, ay);
 		int toDoCounter = countInfinity();
@@ -189,7 +359,7 @@ public class Distance {
 			for (x = 0; x != width; x++) {
 				for (y = 0; y != height; y++) 
 				{
-					if (dists[x][y] == INFINITY) {
+					if (getDistance(x, y) == INFINITY) {
 						continue;
 					}
 					// if the distance is not infinite, 
@@ -219,9 +389,8 @@ public class Distance {
 			if (nextn == null)
 				break; // exit the loop if we cannot find another cell to proceed with
 			// update coordinates for next cell
-			int[] dir = nextn.getDirection();
-			sx += dir[0];
-			sy += dir[1];
+			sx += nextn.dx();
+			sy += nextn.dy();
 			// follow the nextn node on a depth-first-search path
 		}
 	}
@@ -234,7 +403,7 @@ public class Distance {
 	private void setAllDistanceValues(int value) {
 		for (int x = 0; x != width; x++) {
 			for (int y = 0; y != height; y++) {
-				dists[x][y] = value ;
+				setDistance(x, y, value) ;
 			}
 		}
 	}
@@ -246,7 +415,7 @@ public class Distance {
 		int result = 0;
 		for (int x = 0; x != width; x++) {
 			for (int y = 0; y != height; y++) {
-				if (dists[x][y] == INFINITY)
+				if (getDistance(x, y) == INFINITY)
 					result++;
 			}
 		}
@@ -262,25 +431,23 @@ public class Distance {
 	 */
 	private CardinalDirection updateNeighborDistancesAndDirection(Cells cells, int currentX, int currentY) {
 		CardinalDirection result = null; // returns null by default
-		int nextDistance = dists[currentX][currentY] + 1; // distance of a neighbor
-		int[] dir;
+		int nextDistance = getDistance(currentX, currentY) + 1; // distance of a neighbor
 		int nextX;
 		int nextY;
 		// check all four directions, update distance as needed
-		for (CardinalDirection cd: CardinalDirection.values()) {
+		for (CardinalDirection cd: CardinalDirection.VALUES) {
 			// check for reachable neighbors
 			if (cells.hasNoWall(currentX, currentY, cd)) {
 				// check if neighbor is on board
-				dir = cd.getDirection();
-				nextX = currentX+dir[0];
-				nextY = currentY+dir[1];
+				nextX = currentX+cd.dx();
+				nextY = currentY+cd.dy();
 				// check if cell at (nextX,nextY) is within bounds
 				if ((0 <= nextX && nextX < width) && (0 <= nextY && nextY < height)) {
 					// check if neigbor's distance needs update
-					if (dists[nextX][nextY] > nextDistance) {
+					if (getDistance(nextX, nextY) > nextDistance) {
 						// update the neighbor's distance value
 						// mark that cell as the next one
-						dists[nextX][nextY] = nextDistance;
+						setDistance(nextX, nextY, nextDistance);
 						result = cd;
 					}
 				}
@@ -295,7 +462,6 @@ public class Distance {
 	private void saturateDistances(Cells cells) {
 		boolean progress = false; 
 		int count = 0;
-		int[] dir = null;
 		CardinalDirection nextn;
 		do {
 			progress = false; // reset termination criterion
@@ -308,8 +474,7 @@ public class Distance {
 					if (null != nextn) {
 						progress = true; // something changed
 						// follow neighbor on a depth-first-search path
-						dir = nextn.getDirection();
-						pushDistanceValuesDFS2(cells, x+dir[0], y+dir[1]);		
+						pushDistanceValuesDFS2(cells, x+nextn.dx(), y+nextn.dy());		
 					}
 				}
 			}
@@ -355,17 +520,319 @@ public class Distance {
 		return exitposition ;
 	}
 	/**
-	 * Gets maximum distance present in maze
+	 * Gets maximum distance present in maze.
+	 * After incremental updates, positions that cannot reach the exit do not count.
 	 * @precondition computeDistances() was called before
 	 * @return maximum distance
 	 */
 	public int getMaxDistance() {
+		if (maxDistanceOutdated) {
+			maxDistance = computeMaxDistance() ;
+			maxDistanceOutdated = false ;
+		}
 		return maxDistance ;
 	}
+	/**
+	 * Gives the largest finite distance value
+	 * @return maximum distance, 0 if no position can reach the exit
+	 */
+	private int computeMaxDistance() {
+		int result = 0 ;
+		for (int x = 0; x != width; x++)
+			for (int y = 0; y != height; y++)
+				if (getDistance(x, y) > result && INFINITY != getDistance(x, y))
+					result = getDistance(x, y) ;
+		return result ;
+	}
 	/**
 	 * Determines if given position is the exit position
 	 */
 	public boolean isExitPosition(int x, int y){
 		return ((x == exitposition[0]) && (y == exitposition[1])) ;
 	}
+	
+	///////////////// incremental updates for changed walls ///////////////////////////////////////
+	// flag to check each incremental update against a computation from scratch, intended for debugging purposes
+	static boolean verifyUpdates = false ;
+	// work lists for incremental updates, positions are encoded as y*width+x as for the queue,
+	// kept as attributes and grown as needed such that repeated updates do not allocate
+	private int[] work = null ; // positions
+	private int[] workDists = null ; // distance values that go with the positions in work
+	private long[] seeds = null ; // distance<<32 | position, sorted to process positions by increasing distance
+
+	/**
+	 * Updates distances after the wall between (x,y) and its neighbor in direction cd has been deleted.
+	 * Distances can only decrease. If the wall separated a position from a neighbor
+	 * that is more than one step closer to the exit, a breadth first search starts at this position
+	 * and only visits positions whose distance decreases.
+	 * So the effort is proportional to the number of positions that change, not to the size of the maze.
+	 * Positions that could not reach the exit before may get a finite distance.
+	 * @param cells with the wall already deleted
+	 * @param x coordinate of cell
+	 * @param y coordinate of cell
+	 * @param cd direction of wall at (x,y)
+	 * @return number of positions whose distance changed
+	 * @precondition distances are exact for the cells before the wall was deleted, 
+	 * both cells are inside the maze, the distances are not shared
+	 */
+	public int updateAfterDeletingWall(Cells cells, int x, int y, CardinalDirection cd) {
+		assert !shared : "Distance: shared distances must not be changed" ;
+		int nx = x + cd.dx() ;
+		int ny = y + cd.dy() ;
+		int d = getDistance(x, y) ;
+		int dn = getDistance(nx, ny) ;
+		if (dn < d) { // (x,y) is the position that is closer to the exit
+			int tmp = x ; x = nx ; nx = tmp ;
+			tmp = y ; y = ny ; ny = tmp ;
+			tmp = d ; d = dn ; dn = tmp ;
+		}
+		if (INFINITY == d || dn <= d + 1)
+			return 0 ; // no shortcut
+		// the farther position gets the shortcut, spread it with a breadth first search
+		// each position enters the queue once, when its distance decreases to its final value
+		// the maximum distance decreases if a position with the maximum distance gets a shortcut,
+		// it increases if a position that could not reach the exit gets a larger value
+		boolean maxChanged = (dn == maxDistance) ;
+		int max = d + 1 ;
+		setDistance(nx, ny, d + 1) ;
+		ensureWork(1) ;
+		work[0] = ny*width + nx ;
+		int head = 0 ;
+		int tail = 1 ;
+		while (head < tail) {
+			final int pos = work[head++] ;
+			final int px = pos % width ;
+			final int py = pos / width ;
+			final int next = getDistance(px, py) + 1 ;
+			for (CardinalDirection dir: CardinalDirection.VALUES) {
+				if (cells.hasWallAt(pos, dir))
+					continue ;
+				final int qx = px + dir.dx() ;
+				final int qy = py + dir.dy() ;
+				if (0 <= qx && qx < width && 0 <= qy && qy < height && getDistance(qx, qy) > next) {
+					if (getDistance(qx, qy) == maxDistance)
+						maxChanged = true ;
+					setDistance(qx, qy, next) ;
+					if (next > max)
+						max = next ;
+					ensureWork(tail + 1) ;
+					work[tail++] = qy*width + qx ;
+				}
+			}
+		}
+		if (max > maxDistance)
+			maxDistance = max ; // positions that could not reach the exit before
+		else if (maxChanged)
+			maxDistanceOutdated = true ; // other positions may have the same maximum, find out when needed
+		if (verifyUpdates)
+			verifyUpdate(cells) ;
+		return tail ;
+	}
+	/**
+	 * Updates distances after a wall between (x,y) and its neighbor in direction cd has been added.
+	 * Distances can only increase, and only for positions whose shortest paths to the exit 
+	 * all went through the new wall. These positions are found first, in order of increasing distance, 
+	 * starting from the side of the wall that is farther from the exit:
+	 * a position is affected if it has no neighbor that is not affected and one step closer to the exit.
+	 * Affected positions then get new distances from their neighbors that are not affected,
+	 * propagated among affected positions in order of increasing distance.
+	 * So the effort is proportional to the number of positions that change, not to the size of the maze.
+	 * Positions that cannot reach the exit anymore get an infinite distance.
+	 * @param cells with the wall already added
+	 * @param x coordinate of cell
+	 * @param y coordinate of cell
+	 * @param cd direction of wall at (x,y)
+	 * @return number of positions whose distance changed
+	 * @precondition distances are exact for the cells before the wall was added, 
+	 * both cells are inside the maze, the distances are not shared
+	 */
+	public int updateAfterAddingWall(Cells cells, int x, int y, CardinalDirection cd) {
+		assert !shared : "Distance: shared distances must not be changed" ;
+		int nx = x + cd.dx() ;
+		int ny = y + cd.dy() ;
+		int d = getDistance(x, y) ;
+		int dn = getDistance(nx, ny) ;
+		if (dn < d) { // (nx,ny) is the position that is farther from the exit
+			int tmp = x ; x = nx ; nx = tmp ;
+			tmp = y ; y = ny ; ny = tmp ;
+			tmp = d ; d = dn ; dn = tmp ;
+		}
+		if (INFINITY == dn || dn != d + 1 || hasNeighborWithDistance(cells, nx, ny, dn - 1))
+			return 0 ; // the wall was not on a shortest path or there is an alternative
+		// phase 1: find affected positions, mark them with an infinite distance
+		// the list is in order of increasing old distance, so when the children of a position are checked, 
+		// all affected positions with the same old distance as that position are already marked
+		ensureWork(1) ;
+		work[0] = ny*width + nx ;
+		workDists[0] = dn ;
+		setDistance(nx, ny, INFINITY) ;
+		boolean maxAffected = (dn == maxDistance) ;
+		int size = 1 ;
+		for (int i = 0; i < size; i++) {
+			final int pos = work[i] ;
+			final int px = pos % width ;
+			final int py = pos / width ;
+			final int child = workDists[i] + 1 ;
+			for (CardinalDirection dir: CardinalDirection.VALUES) {
+				if (cells.hasWallAt(pos, dir))
+					continue ;
+				final int qx = px + dir.dx() ;
+				final int qy = py + dir.dy() ;
+				if (0 <= qx && qx < width && 0 <= qy && qy < height && getDistance(qx, qy) == child 
+						&& !hasNeighborWithDistance(cells, qx, qy, child - 1)) {
+					ensureWork(size + 1) ;
+					work[size] = qy*width + qx ;
+					workDists[size] = child ;
+					size++ ;
+					setDistance(qx, qy, INFINITY) ;
+					if (child == maxDistance)
+						maxAffected = true ;
+				}
+			}
+		}
+		// phase 2: start values for affected positions from neighbors that are not affected
+		if (null == seeds || seeds.length < size)
+			seeds = new long[Math.max(size, 2*((null == seeds) ? 0 : seeds.length))] ;
+		int count = 0 ;
+		for (int i = 0; i < size; i++) {
+			final int pos = work[i] ;
+			final int best = getMinNeighborDistance(cells, pos % width, pos / width) ;
+			if (INFINITY != best)
+				seeds[count++] = ((long) (best + 1) << 32) | pos ;
+		}
+		Arrays.sort(seeds, 0, count) ;
+		// phase 3: merge the sorted start values with a queue of propagated values, both are in order
+		// of increasing distance, so a position gets its final value when it is taken first
+		// the work list is reused for the queue, each position adds at most 4 entries when it gets its value
+		int head = 0 ;
+		int tail = 0 ;
+		int i = 0 ;
+		int reached = 0 ; // number of affected positions that can still reach the exit
+		while (i < count || head < tail) {
+			int pos ;
+			int dist ;
+			if (head == tail || (i < count && (int) (seeds[i] >>> 32) <= workDists[head])) {
+				pos = (int) seeds[i] ;
+				dist = (int) (seeds[i] >>> 32) ;
+				i++ ;
+			}
+			else {
+				pos = work[head] ;
+				dist = workDists[head] ;
+				head++ ;
+			}
+			final int px = pos % width ;
+			final int py = pos / width ;
+			if (getDistance(px, py) <= dist)
+				continue ; // already final
+			setDistance(px, py, dist) ;
+			reached++ ;
+			if (dist > maxDistance)
+				maxDistance = dist ;
+			for (CardinalDirection dir: CardinalDirection.VALUES) {
+				if (cells.hasWallAt(pos, dir))
+					continue ;
+				final int qx = px + dir.dx() ;
+				final int qy = py + dir.dy() ;
+				if (0 <= qx && qx < width && 0 <= qy && qy < height && getDistance(qx, qy) > dist + 1) {
+					ensureWork(tail + 1) ;
+					work[tail] = qy*width + qx ;
+					workDists[tail] = dist + 1 ;
+					tail++ ;
+				}
+			}
+		}
+		// distances only increase, so the maximum only decreases if a position with the maximum
+		// distance cannot reach the exit anymore
+		if (maxAffected && reached < size)
+			maxDistanceOutdated = true ;
+		if (verifyUpdates)
+			verifyUpdate(cells) ;
+		return size ;
+	}
+	/**
+	 * Tells if (x,y) has a reachable neighbor with the given distance
+	 */
+	private boolean hasNeighborWithDistance(Cells cells, int x, int y, int d) {
+		final int pos = y*width + x ;
+		for (CardinalDirection dir: CardinalDirection.VALUES) {
+			if (cells.hasWallAt(pos, dir))
+				continue ;
+			final int qx = x + dir.dx() ;
+			final int qy = y + dir.dy() ;
+			if (0 <= qx && qx < width && 0 <= qy && qy < height && getDistance(qx, qy) == d)
+				return true ;
+		}
+		return false ;
+	}
+	/**
+	 * Gives the smallest distance of a reachable neighbor of (x,y)
+	 * @return smallest distance, INFINITY if there is none
+	 */
+	private int getMinNeighborDistance(Cells cells, int x, int y) {
+		final int pos = y*width + x ;
+		int result = INFINITY ;
+		for (CardinalDirection dir: CardinalDirection.VALUES) {
+			if (cells.hasWallAt(pos, dir))
+				continue ;
+			final int qx = x + dir.dx() ;
+			final int qy = y + dir.dy() ;
+			if (0 <= qx && qx < width && 0 <= qy && qy < height && getDistance(qx, qy) < result)
+				result = getDistance(qx, qy) ;
+		}
+		return result ;
+	}
+	/**
+	 * Makes sure that the work lists can hold the given number of entries
+	 */
+	private void ensureWork(int capacity) {
+		if (null == work) {
+			work = new int[Math.max(capacity, 64)] ;
+			workDists = new int[work.length] ;
+		}
+		else if (work.length < capacity) {
+			final int n = Math.max(capacity, 2*work.length) ;
+			work = Arrays.copyOf(work, n) ;
+			workDists = Arrays.copyOf(workDists, n) ;
+		}
+	}
+	/**
+	 * Compares distances and the maximum distance after an incremental update with a computation from scratch.
+	 * Restores all values the computation from scratch changes, so results do not depend on the verification.
+	 */
+	private void verifyUpdate(Cells cells) {
+		int[][] updated = new int[width][height] ;
+		for (int x = 0; x != width; x++)
+			for (int y = 0; y != height; y++)
+				updated[x][y] = getDistance(x, y) ;
+		final int updatedMax = maxDistance ;
+		final boolean updatedMaxOutdated = maxDistanceOutdated ;
+		final int[] exit = exitposition ;
+		final int[] start = startposition ;
+		computeDistsBFS(cells, exit[0], exit[1]) ;
+		final int max = computeMaxDistance() ;
+		for (int x = 0; x != width; x++) {
+			for (int y = 0; y != height; y++) {
+				if (updated[x][y] != getDistance(x, y)) {
+					dbg("update mismatch at (" + x + "," + y + "): incremental = " + updated[x][y] + ", bfs = " + getDistance(x, y)) ;
+					assert false : "Incremental update and BFS must deliver the same distances" ;
+				}
+				setDistance(x, y, updated[x][y]) ;
+			}
+		}
+		maxDistance = updatedMax ;
+		maxDistanceOutdated = updatedMaxOutdated ;
+		exitposition = exit ;
+		startposition = start ;
+		// an outdated maximum is recomputed on demand, otherwise the update must have kept it exact
+		if (!updatedMaxOutdated && updatedMax != max) {
+			dbg("maximum distance mismatch: incremental = " + updatedMax + ", bfs = " + max) ;
+			assert false : "Incremental update must keep the maximum distance" ;
+		}
+	}
+
+	///////////////// code for debugging ///////////////////////////////////////
+	private void dbg(String str) {
+		System.out.println("Distance: "+str);
+	}
 }
\ No newline at end of file
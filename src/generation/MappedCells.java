@@ -0,0 +1,36 @@
+package generation;
+
+/**
+ * Cells whose values are kept in a memory-mapped file instead of an array on the heap,
+ * see MappedMazeStore. All methods of Cells work on the file directly.
+ */
+public class MappedCells extends Cells {
+	private final MappedIntArray values ;
+
+	/**
+	 * Constructor
+	 * @param w width
+	 * @param h height
+	 * @param values array of w*h values in row-major order, see Cells.index(x,y)
+	 * @precondition 0 < w, 0 < h, values.length() == w*h
+	 */
+	public MappedCells(int w, int h, MappedIntArray values) {
+		super(w, h, false) ;
+		assert ((long) w*h == values.length()) : "MappedCells: number of values does not match dimensions" ;
+		this.values = values ;
+	}
+	@Override
+	protected int getValue(int idx) {
+		return values.get(idx) ;
+	}
+	@Override
+	protected void setValue(int idx, int value) {
+		values.set(idx, value) ;
+	}
+	/**
+	 * Writes changes to the storage device
+	 */
+	void force() {
+		values.force() ;
+	}
+}
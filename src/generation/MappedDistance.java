@@ -0,0 +1,52 @@
+package generation;
+
+/**
+ * Distances that are kept in a memory-mapped file instead of a matrix on the heap,
+ * see MappedMazeStore. Values are stored in row-major order as for cells.
+ * As there is no matrix on the heap, getDists and setDists are not supported.
+ */
+public class MappedDistance extends Distance {
+	private final MappedIntArray values ;
+	private final int width ;
+
+	/**
+	 * Constructor
+	 * @param w is the width
+	 * @param h is the height
+	 * @param values array of w*h values in row-major order, see Cells.index(x,y)
+	 */
+	public MappedDistance(int w, int h, MappedIntArray values) {
+		super(w, h, false) ;
+		assert ((long) w*h == values.length()) : "MappedDistance: number of values does not match dimensions" ;
+		this.width = w ;
+		this.values = values ;
+	}
+	@Override
+	public int getDistance(int x, int y) {
+		return values.get((long) y*width + x) ;
+	}
+	@Override
+	protected void setDistance(int x, int y, int d) {
+		values.set((long) y*width + x, d) ;
+	}
+	/**
+	 * Not supported, would materialize all distances on the heap.
+	 */
+	@Override
+	public int[][] getDists() {
+		throw new UnsupportedOperationException("MappedDistance: distances are kept in a file, use getDistance(x,y)") ;
+	}
+	/**
+	 * Not supported, distances are kept in a file.
+	 */
+	@Override
+	public void setDists(int[][] dists) {
+		throw new UnsupportedOperationException("MappedDistance: distances are kept in a file, use setDistance(x,y,d)") ;
+	}
+	/**
+	 * Writes changes to the storage device
+	 */
+	void force() {
+		values.force() ;
+	}
+}
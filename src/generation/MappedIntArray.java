@@ -0,0 +1,77 @@
+package generation;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * This class provides an array of int values that is kept in a region of a memory-mapped file.
+ * A single MappedByteBuffer is limited to 2 GB, so the region is mapped in chunks of
+ * CHUNK_SIZE values (1 GB) such that arrays can be larger than that.
+ * Values are stored in little endian byte order, which is the native order of common hardware.
+ *
+ * Pages of the file are loaded by the operating system when they are accessed for the first time,
+ * so creating an instance for an existing file is cheap and memory is only needed for the parts
+ * of the array that are actually used.
+ */
+public class MappedIntArray {
+	static final int CHUNK_SHIFT = 28 ; // a chunk holds 2^28 values, i.e. 1 GB
+	static final long CHUNK_SIZE = 1L << CHUNK_SHIFT ;
+	private static final long CHUNK_MASK = CHUNK_SIZE - 1 ;
+
+	private final MappedByteBuffer[] chunks ;
+	private final long length ; // number of values
+
+	/**
+	 * Constructor maps the given region of the file.
+	 * The mapping stays valid after the channel is closed.
+	 * @param channel to map, needs to be open for writing if writable is true
+	 * @param offset position of the first value in the file in bytes
+	 * @param length number of values
+	 * @param writable true for read and write access, false for read access only
+	 * @throws IOException if the region can not be mapped
+	 */
+	public MappedIntArray(FileChannel channel, long offset, long length, boolean writable) throws IOException {
+		this.length = length ;
+		final int n = (int) ((length + CHUNK_SIZE - 1) >>> CHUNK_SHIFT) ;
+		chunks = new MappedByteBuffer[n] ;
+		final FileChannel.MapMode mode = writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY ;
+		for (int i = 0; i < n; i++) {
+			final long values = Math.min(CHUNK_SIZE, length - i*CHUNK_SIZE) ;
+			chunks[i] = channel.map(mode, offset + 4*i*CHUNK_SIZE, 4*values) ;
+			chunks[i].order(ByteOrder.LITTLE_ENDIAN) ;
+		}
+	}
+	/**
+	 * @return number of values
+	 */
+	public long length() {
+		return length ;
+	}
+	/**
+	 * Gets the value at the given index
+	 * @param idx index of value
+	 * @precondition 0 <= idx < length()
+	 * @return value
+	 */
+	public int get(long idx) {
+		return chunks[(int) (idx >>> CHUNK_SHIFT)].getInt(((int) (idx & CHUNK_MASK)) << 2) ;
+	}
+	/**
+	 * Sets the value at the given index
+	 * @param idx index of value
+	 * @param value to set
+	 * @precondition 0 <= idx < length()
+	 */
+	public void set(long idx, int value) {
+		chunks[(int) (idx >>> CHUNK_SHIFT)].putInt(((int) (idx & CHUNK_MASK)) << 2, value) ;
+	}
+	/**
+	 * Writes changes to the storage device
+	 */
+	public void force() {
+		for (MappedByteBuffer chunk : chunks)
+			chunk.force() ;
+	}
+}
@@ -0,0 +1,184 @@
+package generation;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This class keeps the cells and distances of a maze in a memory-mapped file.
+ * It is meant for mazes that are far larger than the ones for the skill levels in Constants,
+ * e.g. 20000x20000, where matrices on the heap would need several gigabytes.
+ *
+ * The file starts with a header of HEADER_SIZE bytes, followed by width*height int values for the cells
+ * and width*height int values for the distances, both in row-major order as in Cells.
+ * Opening an existing file only maps it, pages are read by the operating system on first access,
+ * so the time to open a file does not depend on the size of the maze.
+ *
+ * A maze generated into a store has no BSP tree, as the tree for a maze of this size would
+ * not fit on the heap. MazeConfiguration methods like hasWall, getDistanceToExit and
+ * getNeighborCloserToExit work directly on the file.
+ */
+public class MappedMazeStore implements Closeable {
+	static final int MAGIC = 0x4D415A4D ; // "MAZM"
+	static final int VERSION = 1 ;
+	static final int HEADER_SIZE = 64 ;
+
+	private final FileChannel channel ;
+	private final MappedByteBuffer header ;
+	private final int width ;
+	private final int height ;
+	private final MappedCells cells ;
+	private final MappedDistance dists ;
+
+	private MappedMazeStore(FileChannel channel, MappedByteBuffer header, int width, int height, boolean writable) throws IOException {
+		this.channel = channel ;
+		this.header = header ;
+		this.width = width ;
+		this.height = height ;
+		final long n = (long) width*height ;
+		cells = new MappedCells(width, height, new MappedIntArray(channel, HEADER_SIZE, n, writable)) ;
+		dists = new MappedDistance(width, height, new MappedIntArray(channel, HEADER_SIZE + 4*n, n, writable)) ;
+		if (header.getInt(36) > 0) // distances have been computed
+			dists.setComputedPositions(new int[] {header.getInt(28), header.getInt(32)},
+					new int[] {header.getInt(20), header.getInt(24)}, header.getInt(36)) ;
+	}
+	/**
+	 * Creates a new file for a maze of the given dimensions, an existing file is overwritten.
+	 * Cells and distances are all zero, see generate(MazeBuilder).
+	 * @param filename name of file
+	 * @param width of maze
+	 * @param height of maze
+	 * @precondition 0 < width, 0 < height, width*height < Integer.MAX_VALUE
+	 * @return store for the new file
+	 * @throws IOException if the file can not be created
+	 */
+	public static MappedMazeStore create(String filename, int width, int height) throws IOException {
+		if (width <= 0 || height <= 0 || (long) width*height >= Integer.MAX_VALUE)
+			throw new IllegalArgumentException("MappedMazeStore: unsupported dimensions " + width + "x" + height) ;
+		final FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE) ;
+		try {
+			final MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE) ;
+			header.order(ByteOrder.LITTLE_ENDIAN) ;
+			header.putInt(0, MAGIC) ;
+			header.putInt(4, VERSION) ;
+			header.putInt(8, width) ;
+			header.putInt(12, height) ;
+			// mapping the regions extends the file to its full size, unused pages stay sparse
+			return new MappedMazeStore(channel, header, width, height, true) ;
+		}
+		catch (IOException | RuntimeException e) {
+			channel.close() ;
+			throw e ;
+		}
+	}
+	/**
+	 * Opens an existing file
+	 * @param filename name of file
+	 * @param writable true if cells and distances may be changed, false for read access only
+	 * @return store for the file
+	 * @throws IOException if the file can not be read or is not a mapped maze file
+	 */
+	public static MappedMazeStore open(String filename, boolean writable) throws IOException {
+		final FileChannel channel = writable ?
+				FileChannel.open(Paths.get(filename), StandardOpenOption.READ, StandardOpenOption.WRITE) :
+				FileChannel.open(Paths.get(filename), StandardOpenOption.READ) ;
+		try {
+			final MappedByteBuffer header = channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE) ;
+			header.order(ByteOrder.LITTLE_ENDIAN) ;
+			if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION)
+				throw new IOException("MappedMazeStore: " + filename + " is not a mapped maze file") ;
+			final int width = header.getInt(8) ;
+			final int height = header.getInt(12) ;
+			if (channel.size() < HEADER_SIZE + 8L*width*height)
+				throw new IOException("MappedMazeStore: " + filename + " is truncated") ;
+			return new MappedMazeStore(channel, header, width, height, writable) ;
+		}
+		catch (IOException | RuntimeException e) {
+			channel.close() ;
+			throw e ;
+		}
+	}
+	/**
+	 * Generates a new maze into this store with the given builder.
+	 * Cells and distances are written to the file directly.
+	 * The builder creates a perfect maze as it has no order that asks for rooms,
+	 * and no BSP tree is computed.
+	 * The depth first search of MazeBuilder keeps its working set in the cells as well,
+	 * so its heap use does not grow with the size of the maze, apart from the queue of the 
+	 * breadth first search for distances which holds a frontier of the maze. Other builders,
+	 * e.g. MazeBuilderEller, keep per-cell data on the heap.
+	 * @param builder to generate the maze with, e.g. MazeBuilder, fields of the builder are overwritten
+	 * @precondition store is writable
+	 */
+	public void generate(MazeBuilder builder) {
+		builder.width = width ;
+		builder.height = height ;
+		builder.cells = cells ;
+		builder.dists = dists ;
+		cells.initialize() ;
+		builder.generate() ;
+		final int[] exit = dists.getExitPosition() ;
+		header.putInt(16, 0) ; // reserved
+		header.putInt(20, builder.startx) ;
+		header.putInt(24, builder.starty) ;
+		header.putInt(28, exit[0]) ;
+		header.putInt(32, exit[1]) ;
+		header.putInt(36, dists.getMaxDistance()) ;
+		force() ;
+	}
+	/**
+	 * @return cells of maze, backed by the file
+	 */
+	public Cells getCells() {
+		return cells ;
+	}
+	/**
+	 * @return distances of maze, backed by the file
+	 */
+	public Distance getDistance() {
+		return dists ;
+	}
+	/**
+	 * Provides a configuration for the maze in this store, it has no BSP tree.
+	 * @precondition maze has been generated
+	 * @return configuration backed by the file
+	 */
+	public MazeConfiguration getMazeConfiguration() {
+		MazeConfiguration mazeConfig = new MazeContainer();
+		mazeConfig.setHeight(height);
+		mazeConfig.setWidth(width);
+		mazeConfig.setMazecells(cells);
+		mazeConfig.setMazedists(dists);
+		mazeConfig.setRootnode(null);
+		mazeConfig.setStartingPosition(header.getInt(20), header.getInt(24));
+		return mazeConfig ;
+	}
+	public int getWidth() {
+		return width ;
+	}
+	public int getHeight() {
+		return height ;
+	}
+	/**
+	 * Writes changes to the storage device
+	 */
+	public void force() {
+		if (!header.isReadOnly()) {
+			header.force() ;
+			cells.force() ;
+			dists.force() ;
+		}
+	}
+	/**
+	 * Closes the file. Mapped regions are released when they are garbage collected.
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close() ;
+	}
+}
@@ -0,0 +1,752 @@
+package generation;
+
+import falstad.Constants;
+import falstad.MazeFileReader;
+import falstad.MazeFileWriter;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * This class collects small benchmarks for the maze generation code.
+ * It is not used by the application itself, it is run from the command line
+ * with the name of a benchmark as its first argument, e.g.
+ * java generation.MazeBenchmark cells
+ *
+ * Measurements are simple wall clock measurements with a few warm up rounds
+ * for the just in time compiler, good enough to compare alternative implementations
+ * against each other on the same machine.
+ */
+public class MazeBenchmark {
+
+	static final int WARMUP = 5 ; // number of rounds that are not measured
+	static final int ROUNDS = 20 ; // number of rounds that are measured
+
+	public static void main(String[] args) {
+		String benchmark = (args.length > 0) ? args[0] : "" ;
+		switch (benchmark) {
+		case "cells" :
+			benchmarkCells() ;
+			break ;
+		case "distance" :
+			benchmarkDistance() ;
+			break ;
+		case "prim" :
+			benchmarkPathways(new MazeBuilderPrim(true), new int[][] { {4, 4}, {12, 15}, {50, 50}, {300, 240}, {1000, 1000}, {2000, 2000} }) ;
+			break ;
+		case "kruskal" :
+			benchmarkPathways(new MazeBuilderKruskal(true), new int[][] { {300, 240}, {1000, 1000}, {2000, 2000} }) ;
+			break ;
+		case "batch" :
+			benchmarkBatch() ;
+			break ;
+		case "files" :
+			benchmarkFiles((args.length > 1) ? Integer.parseInt(args[1]) : 5) ;
+			break ;
+		case "segments" :
+			benchmarkSegments() ;
+			break ;
+		case "bsp" :
+			benchmarkBSP((args.length > 1) ? Integer.parseInt(args[1]) : 15) ;
+			break ;
+		case "walls" :
+			benchmarkWallUpdates((args.length > 1) ? Integer.parseInt(args[1]) : 2000) ;
+			break ;
+		case "solution" :
+			benchmarkSolution((args.length > 1) ? Integer.parseInt(args[1]) : 15) ;
+			break ;
+		case "mapped" :
+			benchmarkMapped((args.length > 1) ? Integer.parseInt(args[1]) : 5000, (args.length > 2) ? Integer.parseInt(args[2]) : 5000) ;
+			break ;
+		default:
+			System.out.println("Usage: java generation.MazeBenchmark cells|distance|prim|kruskal|batch|files [skill]|segments|bsp [skill]|walls [updates]|solution [skill]|mapped [width height]") ;
+		}
+	}
+
+	/**
+	 * Sets up a builder for a maze of the given dimensions without going through an order
+	 * such that dimensions are not restricted to the ones of the skill levels.
+	 * The cells are initialized, so pathways can be generated right away.
+	 * @param builder to set up
+	 * @param w width of maze
+	 * @param h height of maze
+	 * @return the given builder
+	 */
+	static MazeBuilder prepare(MazeBuilder builder, int w, int h) {
+		builder.width = w ;
+		builder.height = h ;
+		builder.cells = new Cells(w, h) ;
+		builder.dists = new Distance(w, h) ;
+		builder.cells.initialize() ;
+		return builder ;
+	}
+
+	////////////////////////////// Cells storage layout /////////////////////////////////////
+	/**
+	 * Compares the row-major int[] storage of Cells with the former int[width][height] matrix.
+	 * Reports the estimated memory footprint of both layouts and the time per cell
+	 * to check all four walls of each cell, both for scanning row by row (as for horizontal
+	 * wall segments) and column by column (as for vertical wall segments).
+	 */
+	static void benchmarkCells() {
+		int[][] sizes = { {300, 240}, {2000, 2000} } ;
+		for (int[] size : sizes) {
+			int w = size[0] ;
+			int h = size[1] ;
+			MazeBuilder builder = prepare(new MazeBuilder(true), w, h) ;
+			builder.generatePathways() ;
+			Cells cells = builder.cells ;
+			// the former layout, one array per column
+			int[][] matrix = new int[w][h] ;
+			for (int x = 0; x < w; x++)
+				for (int y = 0; y < h; y++)
+					matrix[x][y] = cells.getValueOfCell(x, y) ;
+
+			// object header of 16 bytes and 4 bytes per int or compressed reference
+			long matrixBytes = 16 + 4L*w + w*(16 + 4L*h) ;
+			long flatBytes = 16 + 4L*w*h ;
+			System.out.println("Cells " + w + "x" + h + ": memory int[w][h] " + matrixBytes + " bytes (" + (w+1) + " arrays), int[w*h] " + flatBytes + " bytes (1 array)") ;
+
+			long walls = 0 ;
+			long matrixRows = 0, matrixColumns = 0, flatRows = 0, flatColumns = 0, flatIndex = 0 ;
+			for (int round = 0; round < WARMUP + ROUNDS; round++) {
+				long t0 = System.nanoTime() ;
+				walls += countWallsByRows(matrix, w, h) ;
+				long t1 = System.nanoTime() ;
+				walls += countWallsByColumns(matrix, w, h) ;
+				long t2 = System.nanoTime() ;
+				walls += countWallsByRows(cells) ;
+				long t3 = System.nanoTime() ;
+				walls += countWallsByColumns(cells) ;
+				long t4 = System.nanoTime() ;
+				walls += countWallsByIndex(cells) ;
+				long t5 = System.nanoTime() ;
+				if (round >= WARMUP) {
+					matrixRows += t1 - t0 ;
+					matrixColumns += t2 - t1 ;
+					flatRows += t3 - t2 ;
+					flatColumns += t4 - t3 ;
+					flatIndex += t5 - t4 ;
+				}
+			}
+			double n = (double) ROUNDS * w * h ;
+			System.out.printf("Cells %dx%d: ns per cell, int[w][h] rows %.2f columns %.2f, int[w*h] rows %.2f columns %.2f index %.2f (checksum %d)%n",
+					w, h, matrixRows/n, matrixColumns/n, flatRows/n, flatColumns/n, flatIndex/n, walls) ;
+		}
+	}
+
+	private static int countWallsByRows(int[][] matrix, int w, int h) {
+		int result = 0 ;
+		for (int y = 0; y < h; y++)
+			for (int x = 0; x < w; x++)
+				result += Integer.bitCount(matrix[x][y] & Cells.CW_ALL) ;
+		return result ;
+	}
+	private static int countWallsByColumns(int[][] matrix, int w, int h) {
+		int result = 0 ;
+		for (int x = 0; x < w; x++)
+			for (int y = 0; y < h; y++)
+				result += Integer.bitCount(matrix[x][y] & Cells.CW_ALL) ;
+		return result ;
+	}
+	private static int countWallsByRows(Cells cells) {
+		int result = 0 ;
+		for (int y = 0; y < cells.height; y++)
+			for (int x = 0; x < cells.width; x++)
+				result += Integer.bitCount(cells.getValueOfCell(x, y) & Cells.CW_ALL) ;
+		return result ;
+	}
+	private static int countWallsByColumns(Cells cells) {
+		int result = 0 ;
+		for (int x = 0; x < cells.width; x++)
+			for (int y = 0; y < cells.height; y++)
+				result += Integer.bitCount(cells.getValueOfCell(x, y) & Cells.CW_ALL) ;
+		return result ;
+	}
+	private static int countWallsByIndex(Cells cells) {
+		int result = 0 ;
+		int n = cells.width * cells.height ;
+		for (int idx = 0; idx < n; idx++)
+			for (CardinalDirection cd : CardinalDirection.VALUES)
+				if (cells.hasWallAt(idx, cd))
+					result++ ;
+		return result ;
+	}
+
+	////////////////////////////// Distance computation /////////////////////////////////////
+	/**
+	 * Measures time and heap allocation per call of Distance.computeDistances 
+	 * for a maze of the size of skill level 15.
+	 * Allocation is measured with the per thread allocation counter of the HotSpot JVM.
+	 */
+	static void benchmarkDistance() {
+		MazeBuilder builder = prepare(new MazeBuilder(true), 300, 240) ;
+		builder.generatePathways() ;
+		Distance dists = builder.dists ;
+		for (int round = 0; round < WARMUP; round++)
+			dists.computeDistances(builder.cells) ;
+		// the measurement itself may allocate, so measure an empty interval as well
+		long overhead = -getAllocatedBytes() ;
+		overhead += getAllocatedBytes() ;
+		long bytes0 = getAllocatedBytes() ;
+		long t0 = System.nanoTime() ;
+		for (int round = 0; round < ROUNDS; round++)
+			dists.computeDistances(builder.cells) ;
+		long t1 = System.nanoTime() ;
+		long bytes1 = getAllocatedBytes() ;
+		System.out.printf("Distance.computeDistances 300x240: %.3f ms/op, %s bytes/op%n", (t1-t0)/1e6/ROUNDS, 
+				(bytes0 < 0) ? "n/a" : Long.toString((bytes1-bytes0-overhead)/ROUNDS)) ;
+	}
+
+	/**
+	 * Gives the number of bytes allocated by the current thread so far.
+	 * @return number of bytes or -1 if the JVM does not support the measurement
+	 */
+	static long getAllocatedBytes() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean() ;
+		if (bean instanceof com.sun.management.ThreadMXBean)
+			return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId()) ;
+		return -1 ;
+	}
+
+	/**
+	 * Compares incremental updates of distances after a wall is added or deleted with a computation from scratch
+	 * for mazes of increasing size. Mazes are perfect mazes with a tenth of their internal walls removed at random,
+	 * as in a perfect maze most walls cut off a large part of the maze. Each update changes a random internal wall
+	 * and the next update changes it back, such that the maze remains the same on average.
+	 * Reports the average number of positions whose distance changed, the time per update and per changed position, 
+	 * the latter is independent of the size of the maze if the update is proportional to the changed area.
+	 * @param updates number of updates for each maze
+	 */
+	static void benchmarkWallUpdates(int updates) {
+		final int[] sizes = { 100, 500, 2000 } ;
+		for (int size : sizes) {
+			MazeBuilder builder = prepare(new MazeBuilder(true), size, size) ;
+			builder.generatePathways() ;
+			final Cells cells = builder.cells ;
+			final Distance dists = builder.dists ;
+			java.util.SplittableRandom random = new java.util.SplittableRandom(size) ;
+			Wall wall = new Wall(0, 0, CardinalDirection.East) ;
+			for (int i = 0; i < size*size/10; i++) {
+				wall.setWall(1 + random.nextInt(size - 2), 1 + random.nextInt(size - 2), CardinalDirection.VALUES[random.nextInt(4)]) ;
+				cells.deleteWall(wall) ;
+			}
+			long t0 = System.nanoTime() ;
+			dists.computeDistances(cells) ;
+			final long full = System.nanoTime() - t0 ;
+			long changed = 0 ;
+			long time = 0 ;
+			for (int round = -10*WARMUP; round < updates; round += 2) {
+				int x, y ;
+				CardinalDirection cd ;
+				do {
+					x = random.nextInt(size) ;
+					y = random.nextInt(size) ;
+					cd = CardinalDirection.VALUES[random.nextInt(4)] ;
+				} while (x + cd.dx() < 0 || x + cd.dx() >= size || y + cd.dy() < 0 || y + cd.dy() >= size) ;
+				wall.setWall(x, y, cd) ;
+				// same steps as MazeContainer.addWall and deleteWall, which do not report the number of changes
+				final boolean present = cells.hasWall(x, y, cd) ;
+				for (int i = 0; i < 2; i++) {
+					t0 = System.nanoTime() ;
+					int n ;
+					if (present == (0 == i)) {
+						cells.deleteWall(wall) ;
+						n = dists.updateAfterDeletingWall(cells, x, y, cd) ;
+					}
+					else {
+						cells.addWall(wall, true) ;
+						n = dists.updateAfterAddingWall(cells, x, y, cd) ;
+					}
+					final long t1 = System.nanoTime() ;
+					if (round >= 0) {
+						time += t1 - t0 ;
+						changed += n ;
+					}
+				}
+			}
+			System.out.printf("Wall updates %dx%d: %.1f positions changed per update, %.4f ms/update, %.1f ns per changed position, computation from scratch %.1f ms%n",
+					size, size, (double) changed/updates, time/1e6/updates, (0 == changed) ? 0 : (double) time/changed, full/1e6) ;
+		}
+	}
+
+	////////////////////////////// Generation of pathways /////////////////////////////////////
+	/**
+	 * Measures the time the given builder needs to generate pathways for mazes of the given sizes.
+	 * Each maze is checked to be perfect, i.e. it is connected and has exactly width*height-1 
+	 * walls less than at the start, which means it is a spanning tree.
+	 * @param builder to run
+	 * @param sizes array of (width,height) pairs
+	 */
+	static void benchmarkPathways(MazeBuilder builder, int[][] sizes) {
+		String name = builder.getClass().getSimpleName() ;
+		// warm up on a small maze
+		for (int round = 0; round < WARMUP; round++) {
+			prepare(builder, 300, 240) ;
+			builder.generatePathways() ;
+		}
+		for (int[] size : sizes) {
+			int w = size[0] ;
+			int h = size[1] ;
+			prepare(builder, w, h) ;
+			int before = countWalls(builder.cells) ;
+			long t0 = System.nanoTime() ;
+			builder.generatePathways() ;
+			long t1 = System.nanoTime() ;
+			int deleted = before - countWalls(builder.cells) ;
+			builder.dists.computeDistances(builder.cells) ; // asserts that all cells are reachable
+			System.out.printf("%s %dx%d: %.1f ms, %.1f ns/cell, spanning tree: %b%n", name, w, h, 
+					(t1-t0)/1e6, (double)(t1-t0)/w/h, deleted == w*h-1) ;
+		}
+	}
+	/**
+	 * Counts the internal walls of a maze, each wall is counted once.
+	 */
+	private static int countWalls(Cells cells) {
+		int result = 0 ;
+		for (int y = 0; y < cells.height; y++)
+			for (int x = 0; x < cells.width; x++) {
+				if (x < cells.width-1 && cells.hasWall(x, y, CardinalDirection.East))
+					result++ ;
+				if (y < cells.height-1 && cells.hasWall(x, y, CardinalDirection.South))
+					result++ ;
+			}
+		return result ;
+	}
+
+	////////////////////////////// Extraction of wall sequences /////////////////////////////////////
+	/**
+	 * Compares two ways to find all continuous sequences of walls in a maze of the size of skill level 15:
+	 * an iterator of Cells for each row and column as used for BSP construction before, 
+	 * and a single Cells.forEachWallRun call per orientation with one scratch array for both orientations.
+	 * Reports time and allocated bytes per extraction of all sequences and checks that both find the same sequences.
+	 */
+	static void benchmarkSegments() {
+		MazeBuilder builder = prepare(new MazeBuilder(true), 300, 240) ;
+		builder.generatePathways() ;
+		final Cells cells = builder.cells ;
+		final long[] sum = new long[1] ;
+		final Cells.WallRunSink sink = (cd, line, start, end) -> sum[0] += 31*(31*(31*sum[0] + cd.ordinal()) + line) + 7*start + end ;
+		final long[] bits = new long[cells.getWallRunScratchLength()] ; // reused for all extractions
+		long iteratorSum = 0 ;
+		long runSum = 0 ;
+		final int factor = 10 ; // an extraction takes about a millisecond, so use more rounds than usual
+		long overhead = -getAllocatedBytes() ; // bytes allocated by the measurement itself
+		overhead += getAllocatedBytes() ;
+		for (int mode = 0; mode < 2; mode++) {
+			long time = 0 ;
+			long bytes = 0 ;
+			for (int round = 0; round < factor*(WARMUP + ROUNDS); round++) {
+				sum[0] = 0 ;
+				long bytes0 = getAllocatedBytes() ;
+				long t0 = System.nanoTime() ;
+				if (mode == 0)
+					iterateWallRuns(cells, sink) ;
+				else {
+					cells.forEachWallRun(true, bits, sink) ;
+					cells.forEachWallRun(false, bits, sink) ;
+				}
+				if (round >= factor*WARMUP) {
+					time += System.nanoTime() - t0 ;
+					bytes += getAllocatedBytes() - bytes0 - overhead ;
+				}
+			}
+			if (mode == 0)
+				iteratorSum = sum[0] ;
+			else
+				runSum = sum[0] ;
+			System.out.printf("Wall sequences 300x240 with %s: %.3f ms/op, %d bytes/op%n", 
+					(mode == 0) ? "Cells.iterator" : "Cells.forEachWallRun", time/1e6/(factor*ROUNDS), bytes/(factor*ROUNDS)) ;
+		}
+		System.out.println("Same sequences: " + (iteratorSum == runSum)) ;
+	}
+	/**
+	 * Delivers all sequences of walls to the sink in the same order as Cells.forEachWallRun
+	 * but with an iterator for each row and column.
+	 */
+	private static void iterateWallRuns(Cells cells, Cells.WallRunSink sink) {
+		for (int y = 0; y < cells.height; y++)
+			for (CardinalDirection cd : new CardinalDirection[] {CardinalDirection.North, CardinalDirection.South}) {
+				java.util.Iterator<int[]> it = cells.iterator(0, y, cd) ;
+				while (it.hasNext()) {
+					int[] run = it.next() ;
+					sink.wallRun(cd, y, run[0], run[1]) ;
+				}
+			}
+		for (int x = 0; x < cells.width; x++)
+			for (CardinalDirection cd : new CardinalDirection[] {CardinalDirection.West, CardinalDirection.East}) {
+				java.util.Iterator<int[]> it = cells.iterator(x, 0, cd) ;
+				while (it.hasNext()) {
+					int[] run = it.next() ;
+					sink.wallRun(cd, x, run[0], run[1]) ;
+				}
+			}
+	}
+
+	////////////////////////////// BSP tree construction /////////////////////////////////////
+	/**
+	 * Measures the time to build the BSP tree for a maze of the given skill level
+	 * with grading of partition candidates on the calling thread only and on pools with 1, 2, 4, ...
+	 * threads up to the number of available processors.
+	 * Checks that all runs deliver the same tree as the sequential one.
+	 * For the sequential construction, the allocated memory is reported as well.
+	 * @param skill level of the maze
+	 */
+	static void benchmarkBSP(int skill) {
+		final int w = Constants.SKILL_X[skill] ;
+		final int h = Constants.SKILL_Y[skill] ;
+		MazeBuilder builder = prepare(new MazeBuilder(true), w, h) ;
+		builder.generate() ;
+		final int processors = Runtime.getRuntime().availableProcessors() ;
+		long expected = 0 ;
+		for (int threads = 0; threads <= processors; threads = (threads == 0) ? 1 : 2*threads) {
+			ForkJoinPool pool = (threads == 0) ? null : new ForkJoinPool(threads) ;
+			long signature = 0 ;
+			long total = 0 ;
+			long bytes = 0 ;
+			for (int round = 0; round < 2 + 5; round++) { // 2 rounds to warm up, 5 to measure
+				BSPBuilder b = new BSPBuilder(null, builder.dists, builder.cells, w, h, 0, Constants.SKILL_PARTCT[skill]) ;
+				b.setGradingPool(pool) ;
+				long bytes0 = getAllocatedBytes() ;
+				long t0 = System.nanoTime() ;
+				BSPNode root ;
+				try {
+					root = b.generateBSPNodes() ;
+				} catch (InterruptedException e) {
+					return ;
+				}
+				if (round >= 2) {
+					total += System.nanoTime() - t0 ;
+					bytes += getAllocatedBytes() - bytes0 ;
+				}
+				signature = signature(root) ;
+			}
+			if (threads == 0)
+				expected = signature ;
+			System.out.printf("BSPBuilder skill %d (%dx%d), %s: %.1f ms%s, same tree as sequential: %b%n", skill, w, h,
+					(threads == 0) ? "sequential" : threads + " thread(s)", total/5/1e6, 
+					(threads == 0) ? ", " + (bytes/5 >> 10) + " KB allocated" : "", signature == expected) ;
+			if (null != pool)
+				pool.shutdown() ;
+		}
+	}
+	/**
+	 * Computes a hash value over the partitions and segments of a BSP tree in pre-order.
+	 */
+	private static long signature(BSPNode node) {
+		if (node.isIsleaf()) {
+			long result = 1 ;
+			for (Seg seg : ((BSPLeaf) node).getSlist())
+				result = 31*result + 31L*(31*(31*seg.getStartPositionX() + seg.getStartPositionY()) + seg.getExtensionX()) + seg.getExtensionY() ;
+			return result ;
+		}
+		BSPBranch branch = (BSPBranch) node ;
+		long result = 31L*(31*(31*branch.getX() + branch.getY()) + branch.getDx()) + branch.getDy() ;
+		result = 31*result + signature(branch.getLeftBranch()) ;
+		return 31*result + signature(branch.getRightBranch()) ;
+	}
+
+	////////////////////////////// Batch generation /////////////////////////////////////
+	/**
+	 * Measures the throughput of the BatchMazeFactory for small mazes of all builder algorithms,
+	 * once with a single worker thread and once with a worker thread per available processor.
+	 * Also checks that a maze is reproducible for a given seed.
+	 */
+	static void benchmarkBatch() {
+		final int mazes = 200 ;
+		final int processors = Runtime.getRuntime().availableProcessors() ;
+		for (int threads : new int[] {1, processors}) {
+			BatchMazeFactory factory = new BatchMazeFactory(threads, 4*threads) ;
+			ArrayList<CompletableFuture<MazeConfiguration>> futures = new ArrayList<CompletableFuture<MazeConfiguration>>() ;
+			long t0 = System.nanoTime() ;
+			try {
+				for (Order.Builder algorithm : Order.Builder.values())
+					for (int skill = 0; skill < 4; skill++)
+						for (int i = 0; i < mazes; i++)
+							futures.add(factory.submit(new BenchmarkOrder(algorithm, skill))) ;
+			} catch (InterruptedException e) {
+				return ;
+			}
+			factory.waitTillDelivered() ;
+			long t1 = System.nanoTime() ;
+			int failed = 0 ; // e.g. assertions on generated mazes with -ea, failed mazes are not counted in the metrics
+			for (CompletableFuture<MazeConfiguration> future : futures)
+				if (future.isCompletedExceptionally())
+					failed++ ;
+			System.out.printf("BatchMazeFactory %d thread(s): %.1f mazes/sec overall, %d failed%n", threads, 
+					4 * mazes * Order.Builder.values().length * 1e9 / (t1-t0), failed) ;
+			for (Map.Entry<String, BatchMazeFactory.Throughput> entry : factory.getMetrics().entrySet())
+				System.out.println("  " + entry.getKey() + ": " + entry.getValue()) ;
+			factory.shutdown() ;
+		}
+		// same seed, same maze
+		BatchMazeFactory factory = new BatchMazeFactory(2, 2) ;
+		try {
+			CompletableFuture<MazeConfiguration> a = factory.submit(new BenchmarkOrder(Order.Builder.Prim, 3), 42) ;
+			CompletableFuture<MazeConfiguration> b = factory.submit(new BenchmarkOrder(Order.Builder.Prim, 3), 42) ;
+			System.out.println("BatchMazeFactory: same seed gives same maze: " 
+					+ a.get().getMazecells().equals(b.get().getMazecells())) ;
+		} catch (Exception e) {
+			System.out.println("BatchMazeFactory: " + e) ;
+		}
+		factory.shutdown() ;
+	}
+	/**
+	 * Orders a maze of the given skill level from a MazeFactory and waits for it
+	 * @param builder algorithm to generate the maze with
+	 * @param skill level of the maze
+	 * @return maze configuration with cells, distances and tree of BSPNodes
+	 */
+	static MazeConfiguration orderMaze(Order.Builder builder, int skill) {
+		final MazeConfiguration[] result = new MazeConfiguration[1] ;
+		MazeFactory factory = new MazeFactory(true) ;
+		factory.order(new BenchmarkOrder(builder, skill) {
+			@Override
+			public void deliver(MazeConfiguration mazeConfig) {
+				result[0] = mazeConfig ;
+			}
+		}) ;
+		factory.waitTillDelivered() ;
+		return result[0] ;
+	}
+	/**
+	 * Order that ignores delivery and progress, used for benchmarks
+	 */
+	private static class BenchmarkOrder implements Order {
+		private final Builder builder ;
+		private final int skill ;
+
+		BenchmarkOrder(Builder builder, int skill) {
+			this.builder = builder ;
+			this.skill = skill ;
+		}
+		@Override
+		public int getSkillLevel() {
+			return skill ;
+		}
+		@Override
+		public Builder getBuilder() {
+			return builder ;
+		}
+		@Override
+		public boolean isPerfect() {
+			return false ;
+		}
+		@Override
+		public void deliver(MazeConfiguration mazeConfig) {
+			// nothing to do
+		}
+		@Override
+		public void updateProgress(int percentage) {
+			// nothing to do
+		}
+	}
+
+	////////////////////////////// Maze files /////////////////////////////////////
+	/**
+	 * Compares the XML and the binary file format of the MazeFileWriter for a maze of the given skill level.
+	 * Reports file sizes and times to write and read each file, data read from each file is
+	 * compared with the original maze, the MazeFileReader prints a message for each mismatch.
+	 * Finally reports times for repeated loads of the same file with the MazeCache, 
+	 * where only the cells are read and tree and distances come from the cache.
+	 * @param skill level of the maze
+	 */
+	static void benchmarkFiles(int skill) {
+		MazeConfiguration maze = orderMaze(Order.Builder.DFS, skill) ;
+		final int rooms = Constants.SKILL_ROOMS[skill] ;
+		final int partiters = Constants.SKILL_PARTCT[skill] ;
+		final int[][] dists = maze.getMazedists().getDists() ;
+		final int[] start = maze.getStartingPosition() ;
+		File xml, binary ;
+		try {
+			xml = File.createTempFile("maze", ".xml") ;
+			binary = File.createTempFile("maze", ".maze") ;
+		} catch (IOException e) {
+			e.printStackTrace() ;
+			return ;
+		}
+		long t0 = System.nanoTime() ;
+		MazeFileWriter.store(xml.getPath(), maze.getWidth(), maze.getHeight(), rooms, partiters, 
+				maze.getRootnode(), maze.getMazecells(), dists, start[0], start[1]) ;
+		long t1 = System.nanoTime() ;
+		MazeFileWriter.storeBinary(binary.getPath(), maze.getWidth(), maze.getHeight(), rooms, partiters, 
+				maze.getRootnode(), maze.getMazecells(), dists, start[0], start[1]) ;
+		long t2 = System.nanoTime() ;
+		MazeFileReader xmlReader = new MazeFileReader(xml.getPath(), false) ;
+		long t3 = System.nanoTime() ;
+		MazeFileReader binaryReader = new MazeFileReader(binary.getPath(), false) ;
+		long t4 = System.nanoTime() ;
+		System.out.printf("Maze files skill %d (%dx%d): XML %d bytes, write %.1f ms, read %.1f ms; binary %d bytes, write %.1f ms, read %.1f ms%n",
+				skill, maze.getWidth(), maze.getHeight(), xml.length(), (t1-t0)/1e6, (t3-t2)/1e6, binary.length(), (t2-t1)/1e6, (t4-t3)/1e6) ;
+		System.out.println("Compare XML file") ;
+		xmlReader.compare(maze.getWidth(), maze.getHeight(), rooms, partiters, maze.getRootnode(), maze.getMazecells(), dists, start[0], start[1]) ;
+		System.out.println("Compare binary file") ;
+		binaryReader.compare(maze.getWidth(), maze.getHeight(), rooms, partiters, maze.getRootnode(), maze.getMazecells(), dists, start[0], start[1]) ;
+		// repeated loads, first load of each file puts its tree into the cache
+		MazeCache cache = MazeCache.getInstance() ;
+		cache.clear() ;
+		for (String filename : new String[] {xml.getPath(), binary.getPath()}) {
+			long uncached = 0, cached = 0 ;
+			for (int i = 0; i < WARMUP + ROUNDS; i++) {
+				t0 = System.nanoTime() ;
+				new MazeFileReader(filename, false) ;
+				t1 = System.nanoTime() ;
+				new MazeFileReader(filename, true) ;
+				t2 = System.nanoTime() ;
+				if (i >= WARMUP) {
+					uncached += t1 - t0 ;
+					cached += t2 - t1 ;
+				}
+			}
+			System.out.printf("Repeated loads of %s: uncached %.2f ms, cached %.2f ms%n", 
+					filename.endsWith(".xml") ? "XML" : "binary", uncached/1e6/ROUNDS, cached/1e6/ROUNDS) ;
+		}
+		System.out.println(cache) ;
+		System.out.println("Compare cached binary file") ;
+		new MazeFileReader(binary.getPath(), true).compare(maze.getWidth(), maze.getHeight(), rooms, partiters, maze.getRootnode(), maze.getMazecells(), dists, start[0], start[1]) ;
+		xml.delete() ;
+		binary.delete() ;
+	}
+
+	////////////////////////////// Solution paths /////////////////////////////////////
+	/**
+	 * Compares following the solution from positions all over the maze to the exit by scanning the neighbors
+	 * of each position with following the precomputed table of next steps, see NextHopTable.
+	 * Large mazes start from every n-th position only, such that there are about a million steps per round.
+	 * Reports the time per step and the bytes allocated per step for both, as well as the
+	 * time to build the table and its size. Both walks must visit the same positions.
+	 * @param skill level of maze
+	 */
+	static void benchmarkSolution(int skill) {
+		MazeBuilder builder = prepare(new MazeBuilder(true), Constants.SKILL_X[skill], Constants.SKILL_Y[skill]) ;
+		builder.generatePathways() ;
+		builder.dists.computeDistances(builder.cells) ;
+		final int w = builder.width ;
+		final int h = builder.height ;
+		MazeContainer maze = new MazeContainer() ;
+		maze.setWidth(w) ;
+		maze.setHeight(h) ;
+		maze.setMazecells(builder.cells) ;
+		maze.setMazedists(builder.dists) ;
+		final long[] checksum = new long[1] ;
+		final NextHopTable.PositionSink sink = (x, y) -> checksum[0] = 31*checksum[0] + y*w + x ;
+		long total = 0 ;
+		for (int y = 0; y < h; y++)
+			for (int x = 0; x < w; x++)
+				total += maze.getDistanceToExit(x, y) ;
+		final int stride = (int) Math.max(1, total/1000000) ;
+		long steps = 0 ;
+		for (int i = 0; i < w*h; i += stride)
+			steps += maze.getDistanceToExit(i % w, i / w) ;
+		// scanning neighbors, the former getNeighborCloserToExit
+		long scanTime = 0 ;
+		long scanBytes = 0 ;
+		long scanChecksum = 0 ;
+		for (int round = -WARMUP; round < ROUNDS; round++) {
+			checksum[0] = 0 ;
+			final long bytes0 = getAllocatedBytes() ;
+			final long t0 = System.nanoTime() ;
+			for (int i = 0; i < w*h; i += stride) {
+				int[] pos = {i % w, i / w} ;
+				sink.position(pos[0], pos[1]) ;
+				for (int d = maze.getDistanceToExit(pos[0], pos[1]); d > 1; d--) {
+					pos = maze.getNeighborCloserToExit(pos[0], pos[1]) ;
+					sink.position(pos[0], pos[1]) ;
+				}
+			}
+			final long t1 = System.nanoTime() ;
+			final long bytes1 = getAllocatedBytes() ;
+			if (round >= 0) {
+				scanTime += t1 - t0 ;
+				scanBytes += bytes1 - bytes0 ;
+			}
+			scanChecksum = checksum[0] ;
+		}
+		// table of next steps
+		final long b0 = System.nanoTime() ;
+		maze.buildNextHopTable() ;
+		final long build = System.nanoTime() - b0 ;
+		long tableTime = 0 ;
+		long tableBytes = 0 ;
+		long tableChecksum = 0 ;
+		for (int round = -WARMUP; round < ROUNDS; round++) {
+			checksum[0] = 0 ;
+			final long bytes0 = getAllocatedBytes() ;
+			final long t0 = System.nanoTime() ;
+			for (int i = 0; i < w*h; i += stride)
+				maze.forEachPositionToExit(i % w, i / w, sink) ;
+			final long t1 = System.nanoTime() ;
+			final long bytes1 = getAllocatedBytes() ;
+			if (round >= 0) {
+				tableTime += t1 - t0 ;
+				tableBytes += bytes1 - bytes0 ;
+			}
+			tableChecksum = checksum[0] ;
+		}
+		System.out.printf("Solution paths skill %d (%dx%d), %d steps from every %d. position: scan %.2f ns/step %.1f bytes/step, table %.2f ns/step %.1f bytes/step, table built in %.3f ms with %d bytes, %s%n",
+				skill, w, h, steps, stride, (double) scanTime/ROUNDS/steps, (double) scanBytes/ROUNDS/steps,
+				(double) tableTime/ROUNDS/steps, (double) tableBytes/ROUNDS/steps, build/1e6, 
+				maze.getNextHopTable().getSizeInBytes(), (scanChecksum == tableChecksum) ? "same paths" : "DIFFERENT PATHS") ;
+	}
+
+	////////////////////////////// Memory-mapped maze store /////////////////////////////////////
+	/**
+	 * Generates a maze of the given dimensions into a MappedMazeStore, reopens the file
+	 * and follows the path from the starting position to the exit with getNeighborCloserToExit.
+	 * Reports times for generation, opening the file and walking the path, as well as the peak heap use
+	 * during generation to show that cells, distances and the working sets of the builder are not kept on the heap.
+	 * The peak is the sum of the peaks of all heap memory pools, an upper bound as pools may peak at different times.
+	 * @param w width of maze
+	 * @param h height of maze
+	 */
+	static void benchmarkMapped(int w, int h) {
+		File file ;
+		try {
+			file = File.createTempFile("maze", ".mapped") ;
+		} catch (IOException e) {
+			e.printStackTrace() ;
+			return ;
+		}
+		try {
+			System.gc() ;
+			for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+				if (MemoryType.HEAP == pool.getType())
+					pool.resetPeakUsage() ;
+			long t0 = System.nanoTime() ;
+			try (MappedMazeStore store = MappedMazeStore.create(file.getPath(), w, h)) {
+				store.generate(new MazeBuilder(true)) ;
+			}
+			long t1 = System.nanoTime() ;
+			long heap = 0 ;
+			for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+				if (MemoryType.HEAP == pool.getType())
+					heap += pool.getPeakUsage().getUsed() ;
+			long t2 = System.nanoTime() ;
+			try (MappedMazeStore store = MappedMazeStore.open(file.getPath(), false)) {
+				MazeConfiguration maze = store.getMazeConfiguration() ;
+				long t3 = System.nanoTime() ;
+				int[] pos = maze.getStartingPosition() ;
+				final int d = maze.getDistanceToExit(pos[0], pos[1]) ;
+				int steps = 0 ;
+				while (null != pos && !maze.getMazedists().isExitPosition(pos[0], pos[1])) {
+					pos = maze.getNeighborCloserToExit(pos[0], pos[1]) ;
+					steps++ ;
+				}
+				long t4 = System.nanoTime() ;
+				System.out.printf("Mapped maze %dx%d: file %d MB, generate %.1f ms, peak heap during generation %d MB, open %.3f ms, path to exit %d steps (distance %d) in %.1f ms%n",
+						w, h, file.length() >> 20, (t1-t0)/1e6, heap >> 20, (t3-t2)/1e6, steps, d, (t4-t3)/1e6) ;
+			}
+		} catch (IOException e) {
+			e.printStackTrace() ;
+		} finally {
+			file.delete() ;
+		}
+	}
+}
@@ -33,9 +33,10 @@ public class MazeBuilder implements Runnable {
 	// class internal local variables
 	protected SingleRandom random ; // random number stream, used to make randomized decisions, e.g for direction to go
 	Order order; // describes what is wanted, e.g. a perfect maze or not
+	private boolean headless ; // if true, no intermediate progress is reported to the order, e.g. for batch generation
+	private final boolean seeded ; // true if the random number stream was set up with a fixed seed by the constructor
 	
 	// constants
-	static final long SLEEP_INTERVAL = 100 ; //constant used for brief breaks to recognize interrupted signal, unit is millisecond
 	static final int MAX_TRIES = 250 ; // room generation: max number of tries to find a random location for a room
 	static final int MIN_ROOM_DIMENSION = 3; // room generation: min dimension
 	static final int MAX_ROOM_DIMENSION = 8; // room generation: max dimension
@@ -44,6 +45,7 @@ public class MazeBuilder implements Runnable {
 	 * Constructor for a randomized maze generation
 	 */
 	public MazeBuilder(){
+		seeded = false ;
 		random = SingleRandom.getRandom();
 	}
 	/**
@@ -54,8 +56,8 @@ public class MazeBuilder implements Runnable {
 		{
 			// Control random number generation
 			SingleRandom.setSeed(301);
-			System.out.println("Set the seed success.");
 		}
+		seeded = deterministic ;
 		random = SingleRandom.getRandom();
 	}
 
@@ -65,6 +67,14 @@ public class MazeBuilder implements Runnable {
 	 */
 	public void buildOrder(Order order) {
 		this.order = order;
+		// a batch of mazes in headless mode would flood the console
+		if (!headless) {
+			if (seeded)
+				System.out.println("Set the seed success.");
+			final String description = getDescription() ;
+			if (null != description)
+				System.out.println(description);
+		}
 		int skill = order.getSkillLevel() ;
 		// derive parameters
 		width = Constants.SKILL_X[skill];
@@ -90,29 +100,31 @@ public class MazeBuilder implements Runnable {
 			if (rooms > 0)
 				generateRooms();
 			
-			Thread.sleep(SLEEP_INTERVAL) ; // test if thread has been interrupted, i.e. notified to stop
+			checkForInterruption() ; // test if thread has been interrupted, i.e. notified to stop
 
 			// put pathways into the maze, determine its starting and end position and calculate distances
 			generate();
 
-			Thread.sleep(SLEEP_INTERVAL) ; // test if thread has been interrupted, i.e. notified to stop
+			checkForInterruption() ; // test if thread has been interrupted, i.e. notified to stop
 
 			final int colchange = random.nextIntWithinInterval(0, 255); // used in the constructor for Segments  class Seg
-			final BSPBuilder b = new BSPBuilder(order, dists, cells, width, height, colchange, expectedPartiters) ;
+			// in headless mode the BSPBuilder gets no order and does not report progress
+			final BSPBuilder b = new BSPBuilder(headless ? null : order, dists, cells, width, height, colchange, expectedPartiters) ;
 			BSPNode root = b.generateBSPNodes(); // takes a long time, updates progressbar, 
 			// it also internally checks for cancel requests
 			// and throws an interrupted exception if that happens
 
-			Thread.sleep(SLEEP_INTERVAL) ; // test if thread has been interrupted, i.e. notified to stop
+			checkForInterruption() ; // test if thread has been interrupted, i.e. notified to stop
 
 			// communicate results back to MazeController
-			MazeConfiguration mazeConfig = new MazeContainer();
+			MazeContainer mazeConfig = new MazeContainer();
 			mazeConfig.setHeight(height);
 			mazeConfig.setWidth(width);
 			mazeConfig.setMazecells(cells);
 			mazeConfig.setMazedists(dists);
 			mazeConfig.setRootnode(root);
 			mazeConfig.setStartingPosition(startx, starty);
+			mazeConfig.buildNextHopTable(); // distances are final, so is the solution from each position
 			order.deliver(mazeConfig);
 			order.updateProgress(100); // Order interface promises to communicate 100% upon delivery
 			// reset order and other fields for safe repeated operation and garbage collection
@@ -128,6 +140,53 @@ public class MazeBuilder implements Runnable {
 			reset();
 		}
 	}
+	/**
+	 * Replaces the random number stream of this builder with an independent one for the given seed,
+	 * such that the builder does not share the single instance of SingleRandom with other builders.
+	 * @param seed is the seed value for the random number stream
+	 */
+	public void setSeed(long seed) {
+		random = SingleRandom.newInstance(seed) ;
+	}
+	/**
+	 * Replaces the random number stream of this builder. All randomized decisions of the builder,
+	 * i.e. placement of rooms and doors, generation of pathways and the colors of segments, 
+	 * are taken with numbers from this stream.
+	 * @param random is the random number stream, must not be shared with builders that run concurrently
+	 */
+	public void setRandom(SingleRandom random) {
+		assert (null != random) : "MazeBuilder.setRandom: random number stream must not be null" ;
+		this.random = random ;
+	}
+	/**
+	 * Describes the algorithm of this builder, printed when an order is taken unless in headless mode
+	 * @return description, null if there is nothing to say
+	 */
+	protected String getDescription() {
+		return null ;
+	}
+	/**
+	 * Turns intermediate progress reporting on or off. 
+	 * In headless mode the order only receives the final 100% update upon delivery,
+	 * which saves the overhead of progress updates if there is no progress bar to show them,
+	 * and buildOrder does not print anything.
+	 * Call this method before buildOrder.
+	 * The setting is kept across orders.
+	 * @param headless true to turn progress reporting off, false to turn it on (default)
+	 */
+	public void setHeadless(boolean headless) {
+		this.headless = headless ;
+	}
+	/**
+	 * Checks if the current thread has been interrupted, i.e. notified to stop.
+	 * The check is cooperative and does not add any latency, in contrast to 
+	 * a brief sleep that serves the same purpose. The interrupted status is cleared.
+	 * @throws InterruptedException if the current thread has been interrupted
+	 */
+	static void checkForInterruption() throws InterruptedException {
+		if (Thread.interrupted())
+			throw new InterruptedException() ;
+	}
 	/**
 	 * Reset all fields to initial values
 	 */
@@ -198,7 +257,7 @@ public class MazeBuilder implements Runnable {
 			return false ;
 		// since the area is available, mark it for this room and remove all walls
 		// from this on it is clear that we can place the room on the maze
-		cells.markAreaAsRoom(rw, rh, rx, ry, rxl, ryl); 
+		cells.markAreaAsRoom(rw, rh, rx, ry, rxl, ryl, random); 
 		return true;
 	}
 
@@ -238,7 +297,8 @@ public class MazeBuilder implements Runnable {
 		final int firstx = x; 
 		final int firsty = y;
 		
-		CardinalDirection[][] origcds = new CardinalDirection[width][height]; 
+		// the direction each cell was entered with is kept in the cells, see Cells.setBackDirection,
+		// such that cells kept in a file need no matrix of directions on the heap
 		CardinalDirection cd = CardinalDirection.East;
 		CardinalDirection origcd = cd;
 		
@@ -251,27 +311,26 @@ public class MazeBuilder implements Runnable {
 				if (origcd == cd) {				
 					if (x == firstx && y == firsty)
 						break; 			
-					int[] dxy = origcds[x][y].getDirection();
-					x -= dxy[0];
-					y -= dxy[1];
-					if (null == origcds[x][y]) {
-						// Happens at starting position
-						assert (x == firstx && y == firsty) : "catching null elsewhere than starting position" ;
-						cd = cd.randomDirection() ;
+					final CardinalDirection back = cells.getBackDirection(x, y);
+					cells.clearBackDirection(x, y); // cell is done, leave its value as without generation
+					x -= back.dx();
+					y -= back.dy();
+					if (x == firstx && y == firsty) {
+						// starting position was not entered from anywhere
+						cd = cd.randomDirection(random) ;
 					}
 					else
-						cd = origcds[x][y] ;
+						cd = cells.getBackDirection(x, y) ;
 					cd = cd.rotateClockwise();
 					origcd = cd;
 				}
 			} else {
 				cells.deleteWall(wall);
-				int[] dxy = cd.getDirection();
-				x += dxy[0];
-				y += dxy[1];
+				x += cd.dx();
+				y += cd.dy();
 				cells.setCellAsVisited(x, y);
-				origcds[x][y] = cd;
-				cd = cd.randomDirection();
+				cells.setBackDirection(x, y, cd);
+				cd = cd.randomDirection(random);
 				origcd = cd;
 			}
 		}
@@ -14,7 +14,6 @@ public class MazeBuilderEller extends MazeBuilder implements Runnable {
 	 */
 	public MazeBuilderEller() {
 		super();
-		System.out.println("MazeBuilderEller uses Eller's algorithm to generate maze.");
 	}
 	/**
 	 * Constructor for deterministic input
@@ -22,7 +21,10 @@ public class MazeBuilderEller extends MazeBuilder implements Runnable {
 	 */
 	public MazeBuilderEller(boolean det) {
 		super(det);
-		System.out.println("MazeBuilderEller uses Eller's algorithm to generate maze.");
+	}
+	@Override
+	protected String getDescription() {
+		return "MazeBuilderEller uses Eller's algorithm to generate maze.";
 	}
 	
 	@Override
@@ -0,0 +1,201 @@
+package generation;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * This class has the responsibility to create a maze of given dimensions (width, height)
+ * together with a solution based on a distance matrix.
+ * The MazeBuilder implements Runnable such that it can be run a separate thread.
+ * The MazeFactory has a MazeBuilder and handles the thread management.
+ *
+ * The maze is built with a randomized version of Kruskal's algorithm.
+ * All internal walls are considered in random order and a wall is taken down
+ * if the cells on both of its sides are not connected yet. Connected cells
+ * are kept in a disjoint set (union-find) data structure.
+ * Algorithm leaves walls in tact that carry the border flag such that
+ * rooms retain their outside walls and only get connected through their doors.
+ *
+ * Walls and the disjoint set are kept in int arrays to handle large mazes:
+ * a wall is encoded as 2*index+0 for the wall on the east side of the cell with the given index
+ * and 2*index+1 for the wall on its south side, see Cells.index(x,y).
+ */
+public class MazeBuilderKruskal extends MazeBuilder implements Runnable {
+
+	// disjoint set of cells, indexed by cell index.
+	// For a representative the entry is negative and encodes -(rank+1),
+	// for any other cell the entry is the index of its parent.
+	private int[] parent ;
+
+	public MazeBuilderKruskal() {
+		super();
+	}
+
+	public MazeBuilderKruskal(boolean det) {
+		super(det);
+	}
+
+	@Override
+	protected String getDescription() {
+		return "MazeBuilderKruskal uses Kruskal's algorithm to generate maze.";
+	}
+
+	/**
+	 * This method generates pathways into the maze by using Kruskal's algorithm to generate a spanning tree for an undirected graph.
+	 * The cells are the nodes of the graph, internal walls that do not carry a border flag are the candidate edges.
+	 * Candidates are considered in random order and a wall is deleted if it separates two cells
+	 * that are not connected yet.
+	 */
+	@Override
+	protected void generatePathways() {
+		final int n = width*height ;
+		parent = new int[n] ;
+		Arrays.fill(parent, -1) ;
+		// cells within a room are already connected as there are no walls inside a room
+		int components = n - joinCellsWithoutWalls() ;
+		// collect all walls that can be taken down and shuffle them
+		int[] walls = new int[2*n] ;
+		int count = 0 ;
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				if (x < width-1 && cells.hasWall(x, y, CardinalDirection.East) && !cells.hasBorder(x, y, CardinalDirection.East))
+					walls[count++] = 2*cells.index(x, y) ;
+				if (y < height-1 && cells.hasWall(x, y, CardinalDirection.South) && !cells.hasBorder(x, y, CardinalDirection.South))
+					walls[count++] = 2*cells.index(x, y) + 1 ;
+			}
+		}
+		walls = shuffle(walls, count) ;
+		// take down walls between cells that are not connected yet,
+		// stop as soon as all cells are connected
+		final Wall wall = new Wall(0, 0, CardinalDirection.East) ;
+		for (int i = 0; i < count && components > 1; i++) {
+			final int idx = walls[i] >>> 1 ;
+			final boolean south = (walls[i] & 1) != 0 ;
+			final int neighbor = south ? idx + width : idx + 1 ;
+			if (union(idx, neighbor)) {
+				wall.setWall(idx % width, idx / width, south ? CardinalDirection.South : CardinalDirection.East) ;
+				cells.deleteWall(wall) ;
+				components-- ;
+			}
+		}
+		parent = null ;
+	}
+
+	/**
+	 * Joins all adjacent cells that are not separated by a wall, i.e. the cells inside of rooms.
+	 * @return number of successful joins
+	 */
+	private int joinCellsWithoutWalls() {
+		int result = 0 ;
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				final int idx = cells.index(x, y) ;
+				if (x < width-1 && cells.hasNoWall(x, y, CardinalDirection.East) && union(idx, idx+1))
+					result++ ;
+				if (y < height-1 && cells.hasNoWall(x, y, CardinalDirection.South) && union(idx, idx+width))
+					result++ ;
+			}
+		}
+		return result ;
+	}
+
+	/**
+	 * Puts the first count entries of the given array into a random order.
+	 * For large arrays a Fisher-Yates shuffle spends most of its time on cache misses
+	 * as it swaps entries at random positions. So entries are first distributed into 
+	 * BUCKETS buckets at random and then each bucket, which is small enough to fit into 
+	 * the cache, is shuffled with Fisher-Yates (Rao-Sandelius). 
+	 * The result is a uniformly distributed random permutation as well.
+	 * Random numbers for the shuffle come from a local generator that is seeded from 
+	 * the random number stream of the builder, so results are reproducible for a given seed
+	 * but the shuffle does not pay for the synchronization of that stream for each entry.
+	 * @param values to shuffle
+	 * @param count number of entries to consider
+	 * @return array with shuffled entries, may be the given one
+	 */
+	private int[] shuffle(int[] values, int count) {
+		final SplittableRandom generator = new SplittableRandom(((long)random.nextInt() << 32) ^ (random.nextInt() & 0xffffffffL)) ;
+		if (count <= SMALL_SHUFFLE) {
+			shuffle(values, 0, count, generator) ;
+			return values ;
+		}
+		// pick a random bucket for each entry and count bucket sizes
+		final byte[] bucketOf = new byte[count] ;
+		final int[] start = new int[BUCKETS+1] ;
+		for (int i = 0; i < count; i++) {
+			final int b = generator.nextInt(BUCKETS) ;
+			bucketOf[i] = (byte) b ;
+			start[b+1]++ ;
+		}
+		for (int b = 0; b < BUCKETS; b++)
+			start[b+1] += start[b] ;
+		// distribute entries into buckets, this writes sequentially into each bucket
+		final int[] result = new int[values.length] ;
+		final int[] next = Arrays.copyOf(start, BUCKETS) ;
+		for (int i = 0; i < count; i++)
+			result[next[bucketOf[i] & 0xff]++] = values[i] ;
+		// shuffle each bucket
+		for (int b = 0; b < BUCKETS; b++)
+			shuffle(result, start[b], start[b+1], generator) ;
+		return result ;
+	}
+	/**
+	 * Puts the entries in range [from,to) of the given array into a random order (Fisher-Yates shuffle).
+	 * @param values to shuffle
+	 * @param from first index of range
+	 * @param to first index after range
+	 * @param generator provides random numbers
+	 */
+	private void shuffle(int[] values, int from, int to, SplittableRandom generator) {
+		for (int i = to-1; i > from; i--) {
+			final int j = from + generator.nextInt(i - from + 1) ;
+			final int tmp = values[i] ;
+			values[i] = values[j] ;
+			values[j] = tmp ;
+		}
+	}
+	// number of buckets for shuffling large arrays, fits into a byte
+	private static final int BUCKETS = 256 ;
+	// arrays up to this size are shuffled directly
+	private static final int SMALL_SHUFFLE = 1 << 16 ;
+
+	/**
+	 * Finds the representative of the set that contains the given cell.
+	 * Applies path halving such that each visited cell points to its grandparent afterwards.
+	 * @param idx cell index
+	 * @return index of representative
+	 */
+	private int find(int idx) {
+		while (parent[idx] >= 0) {
+			final int p = parent[idx] ;
+			if (parent[p] < 0)
+				return p ;
+			parent[idx] = parent[p] ;
+			idx = parent[p] ;
+		}
+		return idx ;
+	}
+
+	/**
+	 * Merges the sets of the two given cells by rank.
+	 * @param a cell index
+	 * @param b cell index
+	 * @return true if both cells were in different sets, false if they were connected already
+	 */
+	private boolean union(int a, int b) {
+		a = find(a) ;
+		b = find(b) ;
+		if (a == b)
+			return false ;
+		// entries of representatives are -(rank+1), so a smaller entry means a higher rank
+		if (parent[a] > parent[b]) {
+			final int tmp = a ;
+			a = b ;
+			b = tmp ;
+		}
+		if (parent[a] == parent[b])
+			parent[a]-- ; // increase rank
+		parent[b] = a ;
+		return true ;
+	}
+}
@@ -1,6 +1,6 @@
 package generation;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
   * This class has the responsibility to create a maze of given dimensions (width, height) 
@@ -22,14 +22,22 @@ public class MazeBuilderPrim extends MazeBuilder implements Runnable {
 	
 	public MazeBuilderPrim() {
 		super();
-		System.out.println("MazeBuilderPrim uses Prim's algorithm to generate maze.");
 	}
 	
 	public MazeBuilderPrim(boolean det) {
 		super(det);
-		System.out.println("MazeBuilderPrim uses Prim's algorithm to generate maze.");
+	}
+	
+	@Override
+	protected String getDescription() {
+		return "MazeBuilderPrim uses Prim's algorithm to generate maze.";
 	}
 
+	// candidate set of walls, each wall is packed into a single int as (cell index << 2 | ordinal of its direction), 
+	// see Cells.index(x,y) and CardinalDirection.ordinal(), the first size entries are valid
+	private int[] candidates ;
+	private int size ;
+	
 	/**
 	 * This method generates pathways into the maze by using Prim's algorithm to generate a spanning tree for an undirected graph.
 	 * The cells are the nodes of the graph and the spanning tree. An edge represents that one can move from one cell to an adjacent cell.
@@ -40,18 +48,22 @@ public class MazeBuilderPrim extends MazeBuilder implements Runnable {
 		// pick initial position (x,y) at some random position on the maze
 		int x = random.nextIntWithinInterval(0, width-1);
 		int y = random.nextIntWithinInterval(0, height-1);
+		cells.setCellAsVisited(x, y); // the spanning tree starts here, so no wall must lead back to it
 		// create an initial list of all walls that could be removed
 		// those walls lead to adjacent cells that are not part of the spanning tree yet.
-		final ArrayList<Wall> candidates = new ArrayList<Wall>();
-		updateListOfWalls(x, y, candidates);
+		candidates = new int[64] ;
+		size = 0 ;
+		final Wall curWall = new Wall(x, y, CardinalDirection.East) ;
+		updateListOfWalls(x, y, curWall);
 		
-		Wall curWall;
 		// we need to consider each candidate wall and consider it only once
-		while(!candidates.isEmpty()){
+		while(size > 0){
 			// in order to have a randomized algorithm,
 			// we randomly select and extract a wall from our candidate set
 			// this also reduces the set to make sure we terminate the loop
-			curWall = extractWallFromCandidateSetRandomly(candidates);
+			final int candidate = extractWallFromCandidateSetRandomly();
+			final int idx = candidate >>> 2 ;
+			curWall.setWall(idx % width, idx / width, CardinalDirection.fromOrdinal(candidate & 3));
 			// check if wall leads to a new cell that is not connected to the spanning tree yet
 			if (cells.canGo(curWall))
 			{
@@ -62,18 +74,22 @@ public class MazeBuilderPrim extends MazeBuilder implements Runnable {
 				y = curWall.getNeighborY();
 				
 				cells.setCellAsVisited(x, y); // the flag is never reset, so this ensure we never go to (x,y) again
-				updateListOfWalls(x, y, candidates); // checks to see if it has walls to new cells, if it does it adds them to the list
+				updateListOfWalls(x, y, curWall); // checks to see if it has walls to new cells, if it does it adds them to the list
 				// note that each wall can get added at most once. This is important for termination and efficiency
 			}
 		}
+		candidates = null ;
 	}
 	/**
-	 * Pick a random position in the list of candidates, remove the candidate from the list and return it
-	 * @param candidates
+	 * Pick a random position in the list of candidates, remove the candidate from the list and return it.
+	 * The last candidate moves into the free position such that removal takes constant time.
 	 * @return candidate from the list, randomly chosen
 	 */
-	private Wall extractWallFromCandidateSetRandomly(final ArrayList<Wall> candidates) {
-		return candidates.remove(random.nextIntWithinInterval(0, candidates.size()-1)); 
+	private int extractWallFromCandidateSetRandomly() {
+		final int i = random.nextIntWithinInterval(0, size-1) ;
+		final int result = candidates[i] ;
+		candidates[i] = candidates[--size] ;
+		return result ;
 	}
 	
 
@@ -81,16 +97,18 @@ public class MazeBuilderPrim extends MazeBuilder implements Runnable {
 	 * Updates a list of all walls that could be removed from the maze based on walls towards new cells
 	 * @param x
 	 * @param y
+	 * @param wall is used to check walls, its values are overwritten
 	 */
-	private void updateListOfWalls(int x, int y, ArrayList<Wall> walls) {
-		Wall wall = new Wall(x, y, CardinalDirection.East) ;
-		for (CardinalDirection cd : CardinalDirection.values()) {
+	private void updateListOfWalls(int x, int y, Wall wall) {
+		for (CardinalDirection cd : CardinalDirection.VALUES) {
 			wall.setWall(x, y, cd);
 			if (cells.canGo(wall)) // 
 			{
-				walls.add(new Wall(x, y, cd));
+				if (size == candidates.length)
+					candidates = Arrays.copyOf(candidates, 2*size) ;
+				candidates[size++] = (cells.index(x, y) << 2) | cd.ordinal() ;
 			}
 		}
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,195 @@
+package generation;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * This class keeps the tree of BSPNodes and the distances for recently used mazes,
+ * such that loading the same maze again does not need to read or build them again.
+ * Mazes are identified by the content of their cells, see Cells.hashCode and Cells.equals.
+ *
+ * The cache is bounded by an estimate of the memory that its entries need,
+ * least recently used entries are evicted first.
+ *
+ * Cached trees and distances are shared by all users of the same maze and must not be changed.
+ * This holds for trees as state of a session like segments that have been seen is kept
+ * by segment id outside of the tree, see Seg.getId and MazeController.
+ * All methods are synchronized, so the cache can be used from several threads.
+ * Design implements Singleton pattern as in SingleRandom.
+ */
+public final class MazeCache {
+	/**
+	 * A cached maze: the tree of BSPNodes and distances.
+	 */
+	public static final class Entry {
+		private final BSPNode root ;
+		private final Distance dists ;
+		private final long bytes ; // estimated memory for this entry including its key
+
+		private Entry(BSPNode root, Distance dists, long bytes) {
+			this.root = root ;
+			this.dists = dists ;
+			this.bytes = bytes ;
+		}
+		/**
+		 * @return root of the tree of BSPNodes, shared, must not be changed
+		 */
+		public BSPNode getRootnode() {
+			return root ;
+		}
+		/**
+		 * @return distances, shared, must not be changed
+		 */
+		public Distance getMazedists() {
+			return dists ;
+		}
+	}
+
+	// estimates for the memory of objects on a 64 bit JVM with compressed references
+	static final int NODE_BYTES = 48 ; // BSPBranch or BSPLeaf
+	static final int LIST_BYTES = 40 ; // ArrayList of a leaf without its array
+	static final int SEG_BYTES = 56 ; // Seg plus reference in list
+	static final int ARRAY_BYTES = 16 ; // header of an array
+
+	/** the single instance of this class */
+	private static final MazeCache instance = new MazeCache(Math.min(64L << 20, Runtime.getRuntime().maxMemory() / 8)) ;
+
+	// entries in access order, the first entry is the least recently used one
+	private final LinkedHashMap<Cells, Entry> entries = new LinkedHashMap<Cells, Entry>(16, 0.75f, true) ;
+	private long capacity ; // upper bound for estimated memory in bytes
+	private long size ; // estimated memory of all entries in bytes
+	private long hits ;
+	private long misses ;
+
+	/**
+	 * Constructor
+	 * @param capacity upper bound for the estimated memory of all entries in bytes
+	 */
+	MazeCache(long capacity) {
+		this.capacity = capacity ;
+	}
+	/**
+	 * Delivers the single instance of the cache.
+	 * @return cache for the whole process
+	 */
+	public static MazeCache getInstance() {
+		return instance ;
+	}
+	/**
+	 * Gets the entry for a maze with the given cells.
+	 * @param cells of maze, only read
+	 * @return entry or null if the maze is not in the cache
+	 */
+	public synchronized Entry get(Cells cells) {
+		Entry result = entries.get(cells) ;
+		if (null == result)
+			misses++ ;
+		else
+			hits++ ;
+		return result ;
+	}
+	/**
+	 * Puts the tree and distances for a maze with the given cells into the cache.
+	 * The cache keeps a copy of the cells as a key, as cells are changed during a game.
+	 * Nothing happens if the entry alone would exceed the capacity.
+	 * @param cells of maze, only read
+	 * @param root of tree of BSPNodes, must not be changed afterwards
+	 * @param dists distances, must not be changed afterwards
+	 */
+	public synchronized void put(Cells cells, BSPNode root, Distance dists) {
+		final long bytes = estimateBytes(cells, root, dists) ;
+		if (bytes > capacity)
+			return ;
+		// compute lazily determined positions now, such that readers do not update the shared object
+		dists.getStartPosition() ;
+		dists.getExitPosition() ;
+		dists.share() ; // users that change walls work on a copy, see MazeContainer.addWall
+		Entry old = entries.put(new Cells(cells), new Entry(root, dists, bytes)) ;
+		if (null != old)
+			size -= old.bytes ;
+		size += bytes ;
+		evict() ;
+	}
+	/**
+	 * Sets the upper bound for the estimated memory of all entries, evicts entries as needed.
+	 * @param capacity in bytes, 0 to turn caching off
+	 */
+	public synchronized void setCapacity(long capacity) {
+		this.capacity = capacity ;
+		evict() ;
+	}
+	/**
+	 * Removes all entries
+	 */
+	public synchronized void clear() {
+		entries.clear() ;
+		size = 0 ;
+	}
+	/**
+	 * @return number of entries
+	 */
+	public synchronized int getCount() {
+		return entries.size() ;
+	}
+	/**
+	 * @return estimated memory of all entries in bytes
+	 */
+	public synchronized long getSize() {
+		return size ;
+	}
+	/**
+	 * @return number of calls of get that found an entry
+	 */
+	public synchronized long getHits() {
+		return hits ;
+	}
+	/**
+	 * @return number of calls of get that did not find an entry
+	 */
+	public synchronized long getMisses() {
+		return misses ;
+	}
+	/**
+	 * Removes least recently used entries till the size is within the capacity
+	 */
+	private void evict() {
+		Iterator<Entry> it = entries.values().iterator() ;
+		while (size > capacity && it.hasNext()) {
+			size -= it.next().bytes ;
+			it.remove() ;
+		}
+	}
+	/**
+	 * Estimates the memory for an entry: a copy of the cells as key, distances and the tree
+	 */
+	static long estimateBytes(Cells cells, BSPNode root, Distance dists) {
+		final long n = (long) cells.width*cells.height ;
+		long result = ARRAY_BYTES + 4*n ; // key
+		result += (long) cells.width*ARRAY_BYTES + 4*n ; // distances as a matrix
+		// walk the tree without recursion, trees can be deep
+		ArrayList<BSPNode> stack = new ArrayList<BSPNode>() ;
+		stack.add(root) ;
+		while (!stack.isEmpty()) {
+			BSPNode node = stack.remove(stack.size()-1) ;
+			result += NODE_BYTES ;
+			if (node instanceof BSPLeaf) {
+				final int segs = ((BSPLeaf) node).getSlist().size() ;
+				result += LIST_BYTES + ARRAY_BYTES + (long) segs*SEG_BYTES ;
+			}
+			else if (node instanceof BSPBranch) {
+				stack.add(((BSPBranch) node).getLeftBranch()) ;
+				stack.add(((BSPBranch) node).getRightBranch()) ;
+			}
+		}
+		return result ;
+	}
+	/**
+	 * Provides a summary for debugging
+	 */
+	@Override
+	public synchronized String toString() {
+		return "MazeCache: " + entries.size() + " entries, " + (size >> 10) + " of " + (capacity >> 10)
+				+ " KB, " + hits + " hits, " + misses + " misses" ;
+	}
+}
@@ -98,6 +98,29 @@ public interface MazeConfiguration {
 	 * @return true if (x,y) is valid and there is a wall in the given direction, false otherwise
 	 */
 	public boolean hasWall(int x, int y, CardinalDirection dir) ;
+	/**
+	 * Adds a wall between position (x,y) and its neighbor in the given direction,
+	 * e.g. for a maze editor. Distances to the exit are updated such that
+	 * getDistanceToExit stays consistent with the walls, positions that cannot reach
+	 * the exit anymore have a distance of Integer.MAX_VALUE. 
+	 * Nothing happens if there is a wall already.
+	 * @param x is on the horizontal axis, 0 <= x < width
+	 * @param y is on the vertical axis, 0 <= y < height
+	 * @param dir is the direction in terms of North, East, South, West
+	 * @precondition the neighbor is inside the maze, i.e., the wall is not on the border
+	 */
+	public void addWall(int x, int y, CardinalDirection dir) ;
+	/**
+	 * Deletes the wall between position (x,y) and its neighbor in the given direction,
+	 * e.g. for a maze editor. Distances to the exit are updated such that
+	 * getDistanceToExit stays consistent with the walls.
+	 * Nothing happens if there is no wall.
+	 * @param x is on the horizontal axis, 0 <= x < width
+	 * @param y is on the vertical axis, 0 <= y < height
+	 * @param dir is the direction in terms of North, East, South, West
+	 * @precondition the neighbor is inside the maze, i.e., the wall is not on the border
+	 */
+	public void deleteWall(int x, int y, CardinalDirection dir) ;
 	/**
 	 * Provides coordinates of a position adjacent to the given (x,y)
 	 * position that has a distance to the exit that is less than
@@ -109,6 +132,23 @@ public interface MazeConfiguration {
 	 * @return int array of length 2 with (x',y') coordinates for neighbor
 	 */
 	public int[] getNeighborCloserToExit(int x, int y);
+	/**
+	 * Provides the direction from the given (x,y) position towards
+	 * the neighbor that getNeighborCloserToExit gives, without allocating memory.
+	 * @param x is on the horizontal axis, 0 <= x < width
+	 * @param y is on the vertical axis, 0 <= y < height
+	 * @return direction towards a neighbor closer to the exit, null at the exit or if there is no such neighbor
+	 */
+	public CardinalDirection getDirectionToExit(int x, int y);
+	/**
+	 * Delivers all positions on the path from the given (x,y) position
+	 * to the exit, both included, in that order.
+	 * @param x is on the horizontal axis, 0 <= x < width
+	 * @param y is on the vertical axis, 0 <= y < height
+	 * @param sink receives the positions
+	 * @return number of delivered positions, 0 if there is no path to the exit
+	 */
+	public int forEachPositionToExit(int x, int y, NextHopTable.PositionSink sink);
 	/**
 	 * Provides coordinates (x,y) of the starting position for this maze.
 	 * Maze generation algorithms are expected to use the position
@@ -20,6 +20,7 @@ public class MazeContainer implements MazeConfiguration {
 	// a subset of segments need to be quickly identified for drawing
 	// the BSP tree partitions the set of all segments and provides a binary search tree for the partitions
 	private int[] start ;
+	private volatile NextHopTable nextHops ; // directions towards the exit, null if not built or outdated
 	/**
 	 * 
 	 */
@@ -52,6 +53,7 @@ public class MazeContainer implements MazeConfiguration {
 	 */
 	public void setMazecells(Cells mazecells) {
 		this.mazecells = mazecells;
+		nextHops = null ;
 	}
 
 	/**
@@ -69,6 +71,7 @@ public class MazeContainer implements MazeConfiguration {
 	 */
 	public void setMazedists(Distance mazedists) {
 		this.mazedists = mazedists;
+		nextHops = null ;
 	}
 
 	/**
@@ -114,7 +117,70 @@ public class MazeContainer implements MazeConfiguration {
 	public boolean hasWall(int x, int y, CardinalDirection dir) {
 		return this.mazecells.hasWall(x, y, dir) ;
 	}
+	/**
+	 * Adds a wall and updates the distances incrementally, see Distance.updateAfterAddingWall.
+	 * The tree of BSPNodes is not updated, the first person view keeps showing the walls
+	 * the tree was built for. The table of next steps towards the exit is dropped,
+	 * see buildNextHopTable.
+	 */
+	public void addWall(int x, int y, CardinalDirection dir) {
+		checkInternalWall(x, y, dir) ;
+		if (hasWall(x, y, dir))
+			return ;
+		mazecells.addWall(new Wall(x, y, dir), true) ;
+		getChangeableMazedists().updateAfterAddingWall(mazecells, x, y, dir) ;
+		nextHops = null ;
+	}
+	/**
+	 * Deletes a wall and updates the distances incrementally, see Distance.updateAfterDeletingWall.
+	 * The tree of BSPNodes is not updated, the first person view keeps showing the walls
+	 * the tree was built for. The table of next steps towards the exit is dropped,
+	 * see buildNextHopTable.
+	 */
+	public void deleteWall(int x, int y, CardinalDirection dir) {
+		checkInternalWall(x, y, dir) ;
+		if (!hasWall(x, y, dir))
+			return ;
+		mazecells.deleteWall(new Wall(x, y, dir)) ;
+		getChangeableMazedists().updateAfterDeletingWall(mazecells, x, y, dir) ;
+		nextHops = null ;
+	}
+	/**
+	 * Checks that a wall is between two positions inside the maze
+	 */
+	private void checkInternalWall(int x, int y, CardinalDirection dir) {
+		if (!isValidPosition(x, y) || !isValidPosition(x + dir.dx(), y + dir.dy()))
+			throw new IllegalArgumentException("MazeContainer: no internal wall at (" + x + "," + y + ") in direction " + dir) ;
+	}
+	/**
+	 * Gives distances that can be changed. Distances that are shared, e.g. by the MazeCache,
+	 * are replaced by a copy first (copy on write), later changes work on this copy.
+	 * @return distances of this maze that are not shared
+	 */
+	private Distance getChangeableMazedists() {
+		if (mazedists.isShared())
+			mazedists = new Distance(mazedists) ;
+		return mazedists ;
+	}
 
+	/**
+	 * Builds the table with the next step towards the exit for each position, see NextHopTable.
+	 * Afterwards getNeighborCloserToExit, getDirectionToExit and forEachPositionToExit take constant time
+	 * per position. Without a table they scan the neighbors of each position instead, which is what
+	 * mazes kept in a file do, see MappedMazeStore, as the table would be on the heap.
+	 * Changing walls or distances drops the table, call this method again to get a new one.
+	 * @precondition cells and distances are set and distances have been computed for the cells
+	 */
+	public void buildNextHopTable() {
+		nextHops = new NextHopTable(width, height, mazecells, mazedists) ;
+	}
+	/**
+	 * Gives the table with the next steps towards the exit.
+	 * @return the table, null if it has not been built or walls changed since
+	 */
+	public NextHopTable getNextHopTable() {
+		return nextHops ;
+	}
 	/**
 	 * Gives a (x',y') neighbor for given (x,y) that is closer to exit
 	 * if it exists. 
@@ -123,32 +189,70 @@ public class MazeContainer implements MazeConfiguration {
 	 * @return array with neighbor coordinates if neighbor exists, null otherwise
 	 */
 	public int[] getNeighborCloserToExit(int x, int y) {
-		//System.out.println("new getNeighborCloserToExit at: " + x + ", "+ y ) ;
+		CardinalDirection cd = getDirectionToExit(x, y) ;
+		if (null == cd)
+		{
+			System.out.println("ERROR: MazeContainer.getNeighborCloserToExit cannot identify direction towards solution: stuck at: " + x + ", "+ y ) ;
+			// TODO: perform proper error handling here
+			return null ;
+		}
+		return new int[] {x+cd.dx(), y+cd.dy()} ;
+	}
+	/**
+	 * Gives the direction from (x,y) to a neighbor that is closer to the exit.
+	 * Takes constant time and does not allocate memory if the table of next steps has been built.
+	 * @param x is on the horizontal axis, 0 <= x < width
+	 * @param y is on the vertical axis, 0 <= y < height
+	 * @return direction towards the neighbor, null at the exit or if there is no such neighbor
+	 */
+	public CardinalDirection getDirectionToExit(int x, int y) {
+		final NextHopTable table = nextHops ;
+		if (null != table)
+			return table.getDirection(x, y) ;
 		// find best candidate
-		int dnext = getDistanceToExit(x, y) ;
-		int[] result = new int[2] ;
-		int[] dir;
-		for (CardinalDirection cd: CardinalDirection.values()) {
+		final int d = getDistanceToExit(x, y) ;
+		if (d <= 1)
+			return null ; // at the exit, its opening leads out of the maze
+		int dnext = d ;
+		CardinalDirection result = null ;
+		for (CardinalDirection cd: CardinalDirection.VALUES) {
 			if (hasWall(x, y, cd)) 
 				continue; // there is a wall
 			// no wall, let's check the distance
-			dir = cd.getDirection();
-			int dn = getDistanceToExit(x+dir[0], y+dir[1]);
+			int dn = getDistanceToExit(x+cd.dx(), y+cd.dy());
 			if (dn < dnext) {
-				// update neighbor position with min distance
-				result[0] = x+dir[0] ;
-				result[1] = y+dir[1] ;
+				// update neighbor with min distance
+				result = cd ;
 				dnext = dn ;
 			}	
 		}
-		
-		if (getDistanceToExit(x, y) <= dnext)
-		{
-			System.out.println("ERROR: MazeContainer.getNeighborCloserToExit cannot identify direction towards solution: stuck at: " + x + ", "+ y ) ;
-			// TODO: perform proper error handling here
-			return null ;
+		return result ;
+	}
+	/**
+	 * Delivers all positions on the path from (x,y) to the exit, both included, in that order.
+	 * Does not allocate memory if the table of next steps has been built.
+	 * @param x is on the horizontal axis, 0 <= x < width
+	 * @param y is on the vertical axis, 0 <= y < height
+	 * @param sink receives the positions
+	 * @return number of delivered positions, 0 if there is no path to the exit
+	 */
+	public int forEachPositionToExit(int x, int y, NextHopTable.PositionSink sink) {
+		final NextHopTable table = nextHops ;
+		if (null != table)
+			return table.forEachPosition(x, y, sink) ;
+		final int d = getDistanceToExit(x, y) ;
+		if (Distance.INFINITY == d)
+			return 0 ;
+		sink.position(x, y) ;
+		for (int i = 1; i < d; i++) {
+			CardinalDirection cd = getDirectionToExit(x, y) ;
+			if (null == cd)
+				return i ; // distances are inconsistent with walls
+			x += cd.dx() ;
+			y += cd.dy() ;
+			sink.position(x, y) ;
 		}
-		return result;
+		return d ;
 	}
 
 	/**
@@ -14,6 +14,8 @@ import generation.Order;
 public class MazeFactory implements Factory {
 	// generation can be deterministic, i.e. same maze is generated each time for a given size
 	private boolean deterministic;
+	// headless generation does not report intermediate progress, e.g. if there is no progress bar to show it
+	private boolean headless;
 	// factory keeps track of the current order, takes at most one order at a time
 	private Order currentOrder;
 	// factory has a MazeBuilder to do the work
@@ -37,6 +39,15 @@ public class MazeFactory implements Factory {
 		this.deterministic = deterministic;
 	}
 	
+	/**
+	 * Turns intermediate progress reporting of maze builders on or off for subsequent orders.
+	 * Orders still receive the final 100% progress update upon delivery.
+	 * @param headless true to turn progress reporting off
+	 */
+	public void setHeadless(boolean headless) {
+		this.headless = headless;
+	}
+	
 	//////////////////////// Factory interface //////////////////////////////////
 	@Override
 	public boolean order(Order order) {
@@ -49,23 +60,12 @@ public class MazeFactory implements Factory {
 		// idle, so accept order
 		currentOrder = order;
 		// set builder according to order
-		switch (order.getBuilder()) {
-		case DFS :
-			builder = deterministic? new MazeBuilder(true) : new MazeBuilder();
-			buildOrder();
-			break;
-		case Prim:
-			builder = deterministic? new MazeBuilderPrim(true) : new MazeBuilderPrim();
-			buildOrder();
-			break;
-		case Eller:
-			builder = deterministic? new MazeBuilderEller(true) : new MazeBuilderEller();
-			buildOrder();
-			break;
-		default:
+		builder = createBuilder(order.getBuilder(), deterministic);
+		if (null == builder) {
 			System.out.println("MazeFactory.order: missing implementation for requested algorithm: " + order.getBuilder());
 			return false;
 		}
+		buildOrder();
 		return true ;
 	}
 	@Override
@@ -98,13 +98,35 @@ public class MazeFactory implements Factory {
 		currentOrder = null;
 	}
 	///////////////////////// private methods ///////////////////////////////////
+	/**
+	 * Provides a maze builder for the requested algorithm
+	 * @param algorithm requested by an order
+	 * @param deterministic true if maze generation is deterministic
+	 * @return new maze builder, null if there is no implementation for the given algorithm
+	 */
+	static MazeBuilder createBuilder(Order.Builder algorithm, boolean deterministic) {
+		switch (algorithm) {
+		case DFS :
+			return deterministic? new MazeBuilder(true) : new MazeBuilder();
+		case Prim:
+			return deterministic? new MazeBuilderPrim(true) : new MazeBuilderPrim();
+		case Eller:
+			return deterministic? new MazeBuilderEller(true) : new MazeBuilderEller();
+		case Kruskal:
+			return deterministic? new MazeBuilderKruskal(true) : new MazeBuilderKruskal();
+		default:
+			return null;
+		}
+	}
 	/**
 	 * Provide the builder with necessary input and start its execution
 	 */
 	private void buildOrder() { 
 		if (null == builder)
 			return;
-		System.out.println("MazeFactory.buildOrder: started") ;
+		if (!headless)
+			System.out.println("MazeFactory.buildOrder: started") ;
+		builder.setHeadless(headless);
 		builder.buildOrder(currentOrder);
 		buildThread = new Thread(builder);
 		buildThread.start();
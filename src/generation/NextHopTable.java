@@ -0,0 +1,134 @@
+package generation;
+
+/**
+ * This class keeps for each position of a maze the direction of the next step on a shortest path to the exit.
+ * Directions are derived once from the distances of a maze and stored with 2 bits per position
+ * in row-major order as in Cells, i.e. 32 positions per long value.
+ * A maze of 300x240 needs 18 KB, the solution from any position can then be followed
+ * without looking at walls or distances of neighbors.
+ *
+ * For each position the direction is the first one in the order of CardinalDirection.VALUES
+ * that leads through an opening to a neighbor with the smallest distance, the same choice
+ * as a scan of the four neighbors. 2 bits can not tell that there is no such direction,
+ * this is decided by the distance of the position itself: there is no next step at the exit
+ * and for positions that can not reach the exit.
+ *
+ * A table describes the walls and distances at the time it is built, it is not updated if walls change.
+ * The table itself is not changed after construction, so it can be used by several threads.
+ *
+ * Collaborators: Cells, Distance, MazeContainer
+ */
+public class NextHopTable {
+	private final int width ;
+	private final int height ;
+	private final Distance dists ; // decides where a path ends
+	private final long[] hops ; // 2 bits per position with the ordinal of the CardinalDirection
+
+	/**
+	 * Constructor, builds the table with a single pass over all positions.
+	 * @param width of maze
+	 * @param height of maze
+	 * @param cells with walls of maze
+	 * @param dists with distances to the exit for the given cells
+	 * @precondition dists.computeDistances(cells) was called before
+	 */
+	public NextHopTable(int width, int height, Cells cells, Distance dists) {
+		this.width = width ;
+		this.height = height ;
+		this.dists = dists ;
+		hops = new long[(int) (((long) width*height + 31) >>> 5)] ;
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				final int d = dists.getDistance(x, y) ;
+				if (d <= 1 || Distance.INFINITY == d)
+					continue ; // exit or no path to the exit, nothing to store
+				final CardinalDirection cd = findDirection(cells, x, y, d) ;
+				assert null != cd : "NextHopTable: no neighbor closer to exit at (" + x + "," + y + ")" ;
+				if (null == cd)
+					continue ;
+				final int idx = y*width + x ;
+				hops[idx >>> 5] |= (long) cd.ordinal() << ((idx & 31) << 1) ;
+			}
+		}
+	}
+	/**
+	 * Finds the direction towards the neighbor with the smallest distance.
+	 * Distances of neighbors differ by at most one, so the first neighbor with distance d-1 is the one.
+	 * @return direction, null if no neighbor is closer to the exit
+	 */
+	private CardinalDirection findDirection(Cells cells, int x, int y, int d) {
+		for (CardinalDirection cd : CardinalDirection.VALUES) {
+			if (cells.hasWall(x, y, cd))
+				continue ;
+			final int nx = x + cd.dx() ;
+			final int ny = y + cd.dy() ;
+			if (0 <= nx && nx < width && 0 <= ny && ny < height && dists.getDistance(nx, ny) == d - 1)
+				return cd ;
+		}
+		return null ;
+	}
+
+	/**
+	 * Gives the direction of the next step towards the exit.
+	 * The method takes constant time and does not allocate memory.
+	 * @param x is on the horizontal axis, 0 <= x < width
+	 * @param y is on the vertical axis, 0 <= y < height
+	 * @return direction of the next step, null at the exit or if there is no path to the exit
+	 */
+	public CardinalDirection getDirection(int x, int y) {
+		final int d = dists.getDistance(x, y) ;
+		if (d <= 1 || Distance.INFINITY == d)
+			return null ;
+		return CardinalDirection.VALUES[getOrdinal(y*width + x)] ;
+	}
+	/**
+	 * @return ordinal of the stored direction for the position at the given row-major index
+	 */
+	private int getOrdinal(int idx) {
+		return (int) (hops[idx >>> 5] >>> ((idx & 31) << 1)) & 3 ;
+	}
+
+	///////////////////////// streaming of paths ////////////////////////////////////////
+	/**
+	 * Receives the positions on a path, see forEachPosition.
+	 */
+	public interface PositionSink {
+		/**
+		 * Receives the next position on a path
+		 * @param x is on the horizontal axis
+		 * @param y is on the vertical axis
+		 */
+		void position(int x, int y) ;
+	}
+	/**
+	 * Delivers all positions on the path from the given position to the exit, both included, in that order.
+	 * Only the distance of the given position is looked up, it tells the length of the path,
+	 * every further position follows from the stored directions.
+	 * The method does not allocate memory.
+	 * @param x is on the horizontal axis, 0 <= x < width
+	 * @param y is on the vertical axis, 0 <= y < height
+	 * @param sink receives the positions
+	 * @return number of delivered positions, 0 if there is no path to the exit
+	 */
+	public int forEachPosition(int x, int y, PositionSink sink) {
+		final int d = dists.getDistance(x, y) ;
+		if (Distance.INFINITY == d)
+			return 0 ;
+		sink.position(x, y) ;
+		int idx = y*width + x ;
+		for (int i = 1; i < d; i++) {
+			final int ordinal = getOrdinal(idx) ;
+			x += CardinalDirection.DX[ordinal] ;
+			y += CardinalDirection.DY[ordinal] ;
+			idx += CardinalDirection.DX[ordinal] + CardinalDirection.DY[ordinal]*width ;
+			sink.position(x, y) ;
+		}
+		return d ;
+	}
+	/**
+	 * @return number of bytes used for the directions
+	 */
+	public long getSizeInBytes() {
+		return 8L*hops.length ;
+	}
+}
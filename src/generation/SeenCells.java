@@ -0,0 +1,102 @@
+package generation;
+
+import java.util.Arrays;
+
+/**
+ * This class keeps track of the walls that have been seen by the user on its path through the maze.
+ * It replaces a Cells object for this purpose: the FirstPersonDrawer only adds walls on top (North)
+ * and on the left (West) of a cell for each segment it draws, see Cells.addWallsForSegment,
+ * and the MapDrawer only asks for these two walls.
+ * So two bits per cell are sufficient instead of an integer per cell.
+ *
+ * Bits are kept in a long array, cell (x,y) uses bits 2*(y*width+x) for North and 2*(y*width+x)+1 for West.
+ * An object belongs to a single session, together with the set of seen segments in the MazeController,
+ * such that several sessions can share the same maze and its tree of BSPNodes.
+ */
+public class SeenCells {
+	private final int width ;
+	private final int height ;
+	private final long[] bits ;
+
+	/**
+	 * Constructor
+	 * @param w width
+	 * @param h height
+	 * @precondition 0 < w, 0 < h
+	 */
+	public SeenCells(int w, int h) {
+		width = w ;
+		height = h ;
+		bits = new long[(int) ((2L*w*h + 63) >>> 6)] ;
+	}
+	/**
+	 * Computes the bit index for a wall
+	 * @param x coordinate of cell
+	 * @param y coordinate of cell
+	 * @param dir must be North or West
+	 * @return index of bit
+	 */
+	private int bit(int x, int y, CardinalDirection dir) {
+		assert (0 <= x && x < width) : "SeenCells: x out of range: " + x ;
+		assert (0 <= y && y < height) : "SeenCells: y out of range: " + y ;
+		return 2*(y*width + x) + ((CardinalDirection.North == dir) ? 0 : 1) ;
+	}
+	/**
+	 * Tells if the wall at the given position and direction has been seen.
+	 * @param x coordinate of cell
+	 * @param y coordinate of cell
+	 * @param dir gives the cardinal direction
+	 * @return true if wall has been seen, always false for East and South
+	 */
+	public boolean hasWall(int x, int y, CardinalDirection dir) {
+		if (CardinalDirection.North != dir && CardinalDirection.West != dir)
+			return false ;
+		final int b = bit(x, y, dir) ;
+		return (bits[b >>> 6] & (1L << b)) != 0 ;
+	}
+	/**
+	 * Marks the wall at the given position and direction as seen
+	 * @param x coordinate of cell
+	 * @param y coordinate of cell
+	 * @param dir must be North or West
+	 */
+	public void addWall(int x, int y, CardinalDirection dir) {
+		assert (CardinalDirection.North == dir || CardinalDirection.West == dir) : "SeenCells: unsupported direction " + dir ;
+		final int b = bit(x, y, dir) ;
+		bits[b >>> 6] |= 1L << b ;
+	}
+	/**
+	 * Marks all walls of a segment as seen, same as Cells.addWallsForSegment
+	 * @param seg segment, only read
+	 * @param map_unit scaling factor of segment coordinates
+	 */
+	public void addWallsForSegment(Seg seg, int map_unit) {
+		final int sdsx = MazeBuilder.getSign(seg.getExtensionX()); // 0: vertical, -1,1: horizontal
+		final int sdsy = MazeBuilder.getSign(seg.getExtensionY()); // 0: horizontal, -1,1: vertical
+		int sx = seg.getStartPositionX() / map_unit;
+		if (sdsx < 0)
+			sx--;
+		int sy = seg.getStartPositionY() / map_unit;
+		if (sdsy < 0)
+			sy--;
+		final CardinalDirection cd = (sdsx != 0) ? CardinalDirection.North : CardinalDirection.West ;
+		final int len = seg.getLength() / map_unit;
+		for (int i = 0; i < len; i++) {
+			addWall(sx, sy, cd) ;
+			sx += sdsx;
+			sy += sdsy;
+		}
+	}
+	/**
+	 * Forgets all walls that have been seen
+	 */
+	public void clear() {
+		Arrays.fill(bits, 0L) ;
+	}
+	public int getWidth() {
+		return width ;
+	}
+	public int getHeight() {
+		return height ;
+	}
+}
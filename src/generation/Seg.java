@@ -67,8 +67,16 @@ public class Seg {
     /**
      * seen flag tells if the segment has been seen
      * by the user on its path through the maze.
+     * Only kept for the file formats, seen segments of a session are kept
+     * in a BitSet indexed by id as trees may be shared, see MazeCache.
      */
     private boolean seen;
+    /**
+     * id of segment, unique within its tree of BSPNodes, used as an index
+     * for state that is kept per session like the set of seen segments.
+     * -1 if not assigned, see BSPNode.assignSegmentIds.
+     */
+    private int id;
 
     /**
      * Constructor assigns parameter values to instance variables.
@@ -111,6 +119,7 @@ public class Seg {
         // initialize boolean flags as false
         partition = false;
         seen = false;
+        id = -1;
         // determine color
         initColor(distance, cc);
         // all fields initialized
@@ -358,6 +367,21 @@ public class Seg {
         this.seen = seen;
     }
 
+    /**
+     * @return the id, -1 if not assigned
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @param id
+     *            the id to set, only set once the tree of BSPNodes is complete
+     */
+    void setId(final int id) {
+        this.id = id;
+    }
+
     /**
      * @return the color
      */
@@ -365,6 +389,13 @@ public class Seg {
         return col;
     }
 
+    /**
+     * @return the case number that selects the color scheme in the first person view
+     */
+    public int getCaseNumber() {
+        return caseNumber;
+    }
+
     public int[] getRGB() {
     	int[] colorData = {col, caseNumber};
     	return colorData;
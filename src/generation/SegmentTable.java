@@ -0,0 +1,317 @@
+package generation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * This class keeps segments for the construction of a BSP tree in primitive arrays,
+ * one array per attribute, instead of a list of Seg objects.
+ * A segment is identified by its row number in the table.
+ *
+ * Lists of segments are kept as ranges of row numbers on a stack of row numbers.
+ * When a list is split into a left and a right part, both parts are pushed on top of the stack
+ * in the same relative order as in the given list, and removed once both subtrees are complete.
+ * The order matters as candidates for partitions and the segments to grade them are sampled by position.
+ *
+ * Seg objects are only created for the leaves of the tree, see toList.
+ * The color of a segment is not stored as the Seg constructor derives it from the distance, the direction
+ * and the colchange value.
+ *
+ * A table is used by a single thread at a time. Flags are bytes such that
+ * setting the partition flag of one segment does not affect its neighbors in memory.
+ */
+class SegmentTable {
+	static final byte PARTITION = 1 ; // flag: segment has been used as a partition or lies on the border
+	static final byte SEEN = 2 ; // flag: segment has been seen, not used during construction
+
+	// attributes of segments, same meaning as in Seg
+	private int[] x ;
+	private int[] y ;
+	private int[] dx ;
+	private int[] dy ;
+	private int[] dist ;
+	private byte[] flags ;
+	private int size ; // number of segments
+
+	// stack of row numbers, a list of segments is a range on this stack
+	private int[] ids ;
+	private int top ; // number of entries on stack
+	// scratch space to collect the right part of a list while the left part is pushed on the stack
+	private int[] scratch ;
+	// scratch space for candidates for a partition and their grades
+	private int[] candidates = new int[128] ;
+	private int[] grades = new int[128] ;
+	// scratch space for the bit sets of Cells.forEachWallRun, sized on first use
+	private long[] wallBits = new long[0] ;
+
+	/**
+	 * Constructor
+	 * @param capacity initial number of segments, the table grows as needed
+	 */
+	SegmentTable(int capacity) {
+		capacity = Math.max(capacity, 16) ;
+		x = new int[capacity] ;
+		y = new int[capacity] ;
+		dx = new int[capacity] ;
+		dy = new int[capacity] ;
+		dist = new int[capacity] ;
+		flags = new byte[capacity] ;
+		ids = new int[2*capacity] ;
+		scratch = new int[capacity] ;
+	}
+	/**
+	 * Adds a segment without flags, parameters as for the Seg constructor
+	 * @return row number of the new segment
+	 */
+	int add(int psx, int psy, int pdx, int pdy, int distance) {
+		return add(psx, psy, pdx, pdy, distance, (byte) 0) ;
+	}
+	/**
+	 * Adds a segment, parameters as for the Seg constructor
+	 * @param flag initial flags, see PARTITION and SEEN
+	 * @return row number of the new segment
+	 */
+	int add(int psx, int psy, int pdx, int pdy, int distance, byte flag) {
+		if (size == x.length) {
+			final int capacity = 2*size ;
+			x = Arrays.copyOf(x, capacity) ;
+			y = Arrays.copyOf(y, capacity) ;
+			dx = Arrays.copyOf(dx, capacity) ;
+			dy = Arrays.copyOf(dy, capacity) ;
+			dist = Arrays.copyOf(dist, capacity) ;
+			flags = Arrays.copyOf(flags, capacity) ;
+		}
+		x[size] = psx ;
+		y[size] = psy ;
+		dx[size] = pdx ;
+		dy[size] = pdy ;
+		dist[size] = distance ;
+		flags[size] = flag ;
+		return size++ ;
+	}
+	/**
+	 * @return number of segments in table
+	 */
+	int size() {
+		return size ;
+	}
+	/**
+	 * Tells if the given table has the same segments in the same rows, flags are not compared
+	 * @param other table to compare with
+	 * @return true if both tables have the same segments
+	 */
+	boolean hasSameSegments(SegmentTable other) {
+		if (size != other.size)
+			return false ;
+		for (int i = 0; i < size; i++) {
+			if (x[i] != other.x[i] || y[i] != other.y[i] || dx[i] != other.dx[i] || dy[i] != other.dy[i] || dist[i] != other.dist[i])
+				return false ;
+		}
+		return true ;
+	}
+	/**
+	 * Pushes a row number on the stack
+	 * @param id row number
+	 */
+	void push(int id) {
+		if (top == ids.length)
+			ids = Arrays.copyOf(ids, 2*top) ;
+		ids[top++] = id ;
+	}
+	/**
+	 * @return number of entries on the stack, i.e. the end of the last range pushed
+	 */
+	int top() {
+		return top ;
+	}
+	/**
+	 * Removes all entries from the stack starting at the given position
+	 * @param newTop new number of entries
+	 */
+	void pop(int newTop) {
+		top = newTop ;
+	}
+	/**
+	 * @param pos position on stack
+	 * @return row number of segment at the given position
+	 */
+	int id(int pos) {
+		return ids[pos] ;
+	}
+	/**
+	 * Provides scratch space for at least n row numbers, the content is not preserved
+	 */
+	int[] scratch(int n) {
+		if (scratch.length < n)
+			scratch = new int[Math.max(n, 2*scratch.length)] ;
+		return scratch ;
+	}
+	/**
+	 * Provides scratch space for at least n candidates for a partition, the content is not preserved
+	 */
+	int[] candidates(int n) {
+		if (candidates.length < n)
+			candidates = new int[Math.max(n, 2*candidates.length)] ;
+		return candidates ;
+	}
+	/**
+	 * Provides scratch space for at least n grades of candidates, the content is not preserved
+	 */
+	int[] grades(int n) {
+		if (grades.length < n)
+			grades = new int[Math.max(n, 2*grades.length)] ;
+		return grades ;
+	}
+	/**
+	 * Provides scratch space for at least n long values for the extraction of wall sequences, 
+	 * see Cells.forEachWallRun, the content is not preserved
+	 */
+	long[] wallBits(int n) {
+		if (wallBits.length < n)
+			wallBits = new long[Math.max(n, 2*wallBits.length)] ;
+		return wallBits ;
+	}
+	int getStartPositionX(int id) {
+		return x[id] ;
+	}
+	int getStartPositionY(int id) {
+		return y[id] ;
+	}
+	int getExtensionX(int id) {
+		return dx[id] ;
+	}
+	int getExtensionY(int id) {
+		return dy[id] ;
+	}
+	int getEndPositionX(int id) {
+		return x[id] + dx[id] ;
+	}
+	int getEndPositionY(int id) {
+		return y[id] + dy[id] ;
+	}
+	int getDistance(int id) {
+		return dist[id] ;
+	}
+	byte getFlags(int id) {
+		return flags[id] ;
+	}
+	boolean isPartition(int id) {
+		return (flags[id] & PARTITION) != 0 ;
+	}
+	void setPartition(int id) {
+		flags[id] |= PARTITION ;
+	}
+	/**
+	 * Sets the partition flag for segments on the border of the maze, same as Seg.updatePartitionIfBorderCase
+	 * @param id row number of segment
+	 * @param width width of maze * Constants.MAP_UNIT
+	 * @param height height of maze * Constants.MAP_UNIT
+	 */
+	void updatePartitionIfBorderCase(int id, int width, int height) {
+		if (((x[id] == 0 || x[id] == width) && dx[id] == 0) || ((y[id] == 0 || y[id] == height) && dy[id] == 0))
+			setPartition(id) ;
+	}
+	/**
+	 * Computes the direction of a segment as in Seg
+	 * @return one of {-2,-1,1,2}, opposite directions have opposite signs
+	 */
+	int getDir(int id) {
+		if (dx[id] != 0)
+			return (dx[id] < 0) ? 1 : -1 ;
+		return (dy[id] < 0) ? 2 : -2 ;
+	}
+	/**
+	 * Counts segments in the given range of the stack where the partition flag is not set
+	 * @param from first position
+	 * @param to position after last one
+	 * @return number of segments
+	 */
+	int countNonPartitions(int from, int to) {
+		int result = 0 ;
+		for (int i = from; i < to; i++) {
+			if (!isPartition(ids[i]))
+				result++ ;
+		}
+		return result ;
+	}
+	/**
+	 * Computes the grade for a segment as a partition for the list of segments in the given range,
+	 * same as Seg.calculateGrade. Only reads the table, so several grades can be computed concurrently.
+	 * @param pe row number of candidate segment
+	 * @param from first position of list on stack
+	 * @param to position after last one
+	 * @return grade, smaller is better
+	 */
+	int calculateGrade(int pe, int from, int to) {
+		final int px = x[pe] ;
+		final int py = y[pe] ;
+		final int nx = dy[pe] ;
+		final int ny = -dx[pe] ;
+		final int pdir = getDir(pe) ;
+		final int n = to - from ;
+		final int inc = (n >= 100) ? n / 50 : 1 ; // increment for iteration below
+		int lcount = 0, rcount = 0, splits = 0;
+		for (int i = from; i < to; i += inc) {
+			final int se = ids[i] ;
+			int dot1 = (x[se] - px) * nx + (y[se] - py) * ny ;
+			int dot2 = (x[se] + dx[se] - px) * nx + (y[se] + dy[se] - py) * ny ;
+			if (BSPBuilder.getSign(dot1) != BSPBuilder.getSign(dot2)) {
+				if (dot1 == 0)
+					dot1 = dot2;
+				else if (dot2 != 0) {
+					splits++;
+					continue;
+				}
+			}
+			if (dot1 > 0 || (dot1 == 0 && getDir(se) == pdir)) {
+				rcount++;
+			} else if (dot1 < 0 || (dot1 == 0 && getDir(se) == -pdir)) {
+				lcount++;
+			} else {
+				BSPBuilder.dbg("grade_partition problem: dot1 = "+dot1+", dot2 = "+dot2);
+			}
+		}
+		return Math.abs(lcount-rcount) + splits * 3;
+	}
+	/**
+	 * Creates a Seg object for a segment
+	 * @param id row number
+	 * @param colchange value to determine the color of the segment, see Seg constructor
+	 * @return new segment with the same position, extension, distance and flags
+	 */
+	Seg toSeg(int id, int colchange) {
+		Seg result = new Seg(x[id], y[id], dx[id], dy[id], dist[id], colchange) ;
+		result.setPartition(isPartition(id)) ;
+		result.setSeen((flags[id] & SEEN) != 0) ;
+		return result ;
+	}
+	/**
+	 * Creates Seg objects for the segments in the given range of the stack
+	 * @param from first position
+	 * @param to position after last one
+	 * @param colchange value to determine the color of segments, see Seg constructor
+	 * @return list of segments in the order of the range
+	 */
+	ArrayList<Seg> toList(int from, int to, int colchange) {
+		ArrayList<Seg> result = new ArrayList<Seg>(to - from) ;
+		for (int i = from; i < to; i++)
+			result.add(toSeg(ids[i], colchange)) ;
+		return result ;
+	}
+	/**
+	 * Creates a new table that holds a copy of the segments in the given range of the stack,
+	 * such that the list can be processed by another thread.
+	 * The new table has the list on its stack at positions 0 to to-from.
+	 * @param from first position
+	 * @param to position after last one
+	 * @return new table
+	 */
+	SegmentTable copy(int from, int to) {
+		SegmentTable result = new SegmentTable(to - from) ;
+		for (int i = from; i < to; i++) {
+			final int id = ids[i] ;
+			result.push(result.add(x[id], y[id], dx[id], dy[id], dist[id], flags[id])) ;
+		}
+		return result ;
+	}
+}
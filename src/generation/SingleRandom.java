@@ -1,32 +1,49 @@
 package generation;
 
 import java.util.Random;
+import java.util.SplittableRandom;
 
 /**
  * This class implements the generation of pseudo random numbers with a single instance of a random number generator.
  * It is possible to set the seed of the generator by calling setSeed before the internal random number generator is initialized. 
  * This happens when getRandom is called for the first time. Any subsequent call to setSeed resets the seed of the existing generator.
  * Design implements Singleton pattern.
+ * In addition, newInstance delivers independent generators for maze builders that run concurrently,
+ * such that builders do not contend on the single instance and are reproducible from their own seed.
  * 
  * @author Kemper
  *
  */
 public final class SingleRandom {
-	/**  internal internal random number generator. This should NOT be made accessible. */
+	/**  internal internal random number generator. This should NOT be made accessible. 
+	 * Used by the single instance, null for independent instances. */
 	private transient final Random generator;
-	/** the single instance of this class. */
-	private static SingleRandom instance = null ;
+	/** internal random number generator of an independent instance, null for the single instance. */
+	private transient final SplittableRandom splittable;
+	/** the single instance of this class, volatile for double checked locking in getRandom. */
+	private static volatile SingleRandom instance = null ;
 	/** optional: a seed value can be set to be able to reproduce a sequence of random numbers. */
 	private static int theSeed;
 	/** optional: flag to show if seed value can be used or not. */
 	private static boolean validSeed = false;
-	/** lock to make the private constructor thread safe, one could have used the class object as well */
+	/** lock to make the creation of the single instance thread safe, one could have used the class object as well */
 	private static final Object LOCK = new Object() ;
 	/**
 	 * The constructor for a class that allows for a single instance must be private.
 	 */
 	private SingleRandom() {
 		generator = validSeed ? new Random(theSeed) : new Random();
+		splittable = null;
+	}
+	/**
+	 * Constructor for an independent instance with a given seed, see newInstance.
+	 * @param seed is the seed value for the random number generator
+	 */
+	private SingleRandom(long seed) {
+		// a SplittableRandom is not thread safe and does not need to be as it is not shared,
+		// so it avoids the atomic update of the seed that a java.util.Random performs for each number
+		generator = null;
+		splittable = new SplittableRandom(seed);
 	}
 
 	/**
@@ -34,16 +51,34 @@ public final class SingleRandom {
 	 * @return instance of random number generator
 	 */
 	public static SingleRandom getRandom() {
-		synchronized(LOCK)
+		// double checked locking: only the creation of the instance needs synchronization,
+		// subsequent calls just read the volatile field
+		SingleRandom result = instance;
+		if (null == result)
 		{
-			// check the instance being null needs synchronization to be thread safe
-			if (null == instance)
+			synchronized(LOCK)
 			{
-				// create the one and only instance of the random number generator on demand
-				instance = new SingleRandom();
+				result = instance;
+				if (null == result)
+				{
+					// create the one and only instance of the random number generator on demand
+					instance = result = new SingleRandom();
+				}
 			}
 		}
-		return instance;
+		return result;
+	}
+	
+	/**
+	 * Delivers a new random number generator that is independent of the single instance
+	 * and of the seed set with setSeed. This supports builders that run concurrently
+	 * and need to reproduce their own sequence of random numbers.
+	 * The new instance must not be shared between threads.
+	 * @param seed is the seed value for the new random number generator
+	 * @return new instance of a random number generator
+	 */
+	public static SingleRandom newInstance(long seed) {
+		return new SingleRandom(seed);
 	}
 	
 	/**
@@ -51,7 +86,7 @@ public final class SingleRandom {
 	 * @return random integer value
 	 */
 	public int nextInt() {
-		return generator.nextInt();
+		return (null != splittable) ? splittable.nextInt() : generator.nextInt();
 	}
 	/**
 	 * Generate an integer random number in interval [lowerBound,upperBound] 
@@ -63,7 +98,8 @@ public final class SingleRandom {
 		// nextInt(x) delivers uniformly distributed value in [0,x-1]
 		// say d = upperBound-lowerBound, then we want a result lowerBound + uniform(0,d) and uniform(0,d) is delivered by nextInt(d+1)
 		assert(lowerBound <= upperBound) : "parameter error, lowerbound " + lowerBound + "> upper bound" + upperBound ;
-		return lowerBound + generator.nextInt(upperBound - lowerBound + 1) ;
+		final int bound = upperBound - lowerBound + 1 ;
+		return lowerBound + ((null != splittable) ? splittable.nextInt(bound) : generator.nextInt(bound)) ;
 	}
 
 	/**